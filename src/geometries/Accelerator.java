@@ -0,0 +1,27 @@
+package geometries;
+
+import geometries.Intersectable.GeoPoint;
+import primitives.Ray;
+
+import java.util.List;
+
+/**
+ * A spatial acceleration structure over the geometries of a collection, which tests a ray only against the
+ * geometries near it.
+ */
+interface Accelerator {
+    /**
+     * Finds the intersections of a ray with the geometries of the structure.
+     *
+     * @param ray the ray
+     * @return the intersections, or null if there are none
+     */
+    List<GeoPoint> findGeoIntersections(Ray ray);
+
+    /**
+     * Returns the box of all the geometries of the structure.
+     *
+     * @return the box: min x, min y, min z, max x, max y, max z
+     */
+    double[] bounds();
+}
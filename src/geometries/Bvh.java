@@ -0,0 +1,548 @@
+package geometries;
+
+import primitives.BoundingBox;
+import primitives.Ray;
+import profiling.ScenePreparationEvent;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import geometries.Intersectable.GeoPoint;
+
+/**
+ * Bounding volume hierarchy over the geometries of a collection, built by the binned surface area
+ * heuristic (SAH). The geometries' boxes and centroids are gathered once into primitive arrays; every node
+ * bins its geometries' centroids into {@value #BINS} slabs along each axis and splits at the slab boundary
+ * with the lowest expected cost, where the probability of a ray hitting a child is the ratio of the surface
+ * areas of the child's box and the node's box.
+ * <p>
+ * The subtrees of large nodes are built in parallel on the common {@link ForkJoinPool}, so the build of a
+ * mesh of many triangles scales with the cores. A ray is tested only against the geometries in the leaves
+ * whose boxes it hits, walking a flat layout of the nodes (see {@link FlatBvh}) rather than the node objects.
+ * </p>
+ */
+class Bvh implements Accelerator {
+    /**
+     * The number of centroid bins along each axis
+     */
+    private static final int BINS = 16;
+    /**
+     * Nodes with at most this many geometries are always leaves
+     */
+    private static final int MIN_LEAF = 2;
+    /**
+     * Nodes with more geometries than this are split even if the heuristic prefers a leaf
+     */
+    private static final int MAX_LEAF = 8;
+    /**
+     * Nodes with more geometries than this build their subtrees in parallel
+     */
+    private static final int PARALLEL_THRESHOLD = 4096;
+    /**
+     * The cost of testing a ray against a node's box, relative to testing a geometry
+     */
+    static final double TRAVERSAL_COST = 0.5;
+
+    /**
+     * A subtree whose expected cost (relative to its box) grew by this factor since it was built is rebuilt
+     * by a refit
+     */
+    private static final double REBUILD_COST_FACTOR = 1.3;
+
+    /**
+     * A node of the hierarchy: an inner node with two children, or a leaf. Every node covers a consecutive
+     * range of the geometries array.
+     */
+    static final class Node {
+        /**
+         * The box of the node: min x, min y, min z, max x, max y, max z
+         */
+        final double[] box = emptyBox();
+        /**
+         * The SAH cost of the subtree, not normalized: the sum of the areas of its inner nodes' boxes times
+         * the traversal cost and of its leaves' boxes times their geometry counts
+         */
+        double cost;
+        /**
+         * The SAH cost of the subtree divided by the area of its box, when the subtree was built
+         */
+        double buildCost;
+        /**
+         * The children of an inner node, null in a leaf
+         */
+        Node left, right;
+        /**
+         * The index of the first geometry of the node in the geometries array
+         */
+        int first;
+        /**
+         * The number of geometries of the node
+         */
+        int count;
+
+        /**
+         * Checks whether the node is a leaf.
+         *
+         * @return true for a leaf
+         */
+        boolean isLeaf() {
+            return left == null;
+        }
+    }
+
+    /**
+     * The geometries, ordered so that every leaf's geometries are consecutive
+     */
+    final Intersectable[] geometries;
+    /**
+     * The boxes of the geometries (6 values per geometry, in the order of {@link Node#box})
+     */
+    final double[] boxes;
+    /**
+     * The root of the hierarchy
+     */
+    final Node root;
+    /**
+     * The statistics of the last build or refit
+     */
+    BvhStats stats;
+    /**
+     * The layout of the nodes traversed by the rays, updated by every build and refit
+     */
+    private FlatBvh flat;
+
+    /**
+     * Builds a hierarchy over bounded geometries.
+     *
+     * @param geometries the geometries, all with bounding boxes
+     */
+    Bvh(List<Intersectable> geometries) {
+        ScenePreparationEvent event = new ScenePreparationEvent();
+        event.begin();
+        long start = System.nanoTime();
+        int n = geometries.size();
+        this.geometries = geometries.toArray(new Intersectable[0]);
+        boxes = new double[6 * n];
+        for (int i = 0; i < n; ++i) setBox(boxes, i, this.geometries[i].getBoundingBox());
+        root = build(0, n);
+        stats = BvhStats.of(root, System.nanoTime() - start);
+        flat = new FlatBvh(root, stats.nodes());
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = "acceleration build";
+            event.subject = "BVH " + stats;
+            event.objects = n;
+            event.commit();
+        }
+    }
+
+    /**
+     * Builds the subtree of a range of the geometries array, and reorders the range (and its boxes) so that
+     * every node of the subtree covers a consecutive range.
+     *
+     * @param from the first index of the range
+     * @param to   the index after the range
+     * @return the root of the subtree
+     */
+    private Node build(int from, int to) {
+        int n = to - from;
+        double[] rangeBoxes = Arrays.copyOfRange(boxes, 6 * from, 6 * to);
+        int[] order = new int[n];
+        Node node = buildTree(rangeBoxes, order, from);
+        Intersectable[] rangeGeometries = Arrays.copyOfRange(geometries, from, to);
+        for (int i = 0; i < n; ++i) {
+            geometries[from + i] = rangeGeometries[order[i]];
+            System.arraycopy(rangeBoxes, 6 * order[i], boxes, 6 * (from + i), 6);
+        }
+        return node;
+    }
+
+    /**
+     * Builds a hierarchy over boxes, for geometries that are not stored as objects (see {@link Mesh}).
+     * The nodes cover ranges of the order array, which receives the box indexes in the order of the leaves.
+     *
+     * @param boxes  the boxes of the geometries, 6 values per geometry
+     * @param order  the array receiving the box indexes, as long as the number of boxes
+     * @param offset the index of the first geometry in the nodes' ranges
+     * @return the root of the hierarchy
+     */
+    static Node buildTree(double[] boxes, int[] order, int offset) {
+        int n = order.length;
+        double[] centroids = new double[3 * n];
+        for (int i = 0; i < n; ++i) {
+            order[i] = i;
+            for (int a = 0; a < 3; ++a)
+                centroids[3 * i + a] = (boxes[6 * i + a] + boxes[6 * i + a + 3]) / 2;
+        }
+        return ForkJoinPool.commonPool().invoke(new BuildTask(boxes, centroids, order, 0, n, offset));
+    }
+
+    /**
+     * Partitions a range of geometries by the cheapest binned split, one step of a build (see
+     * {@link LazyBvh}).
+     *
+     * @param boxes     the boxes of the geometries, 6 values per geometry
+     * @param centroids the centroids of the geometries' boxes, 3 values per geometry
+     * @param order     the geometry indexes, partitioned in place
+     * @param from      the first index of the range in the order array
+     * @param to        the index after the range in the order array
+     * @param box       the box of the range
+     * @return the index in the order array of the first geometry of the right part, or -1 if the range should
+     * be a leaf
+     */
+    static int split(double[] boxes, double[] centroids, int[] order, int from, int to, double[] box) {
+        int count = to - from;
+        if (count <= MIN_LEAF) return -1;
+        double[] centroidBox = emptyBox();
+        for (int i = from; i < to; ++i)
+            for (int a = 0; a < 3; ++a) {
+                centroidBox[a] = Math.min(centroidBox[a], centroids[3 * order[i] + a]);
+                centroidBox[a + 3] = Math.max(centroidBox[a + 3], centroids[3 * order[i] + a]);
+            }
+        return binnedSplit(boxes, centroids, order, from, to, box, centroidBox);
+    }
+
+    /**
+     * Updates the boxes of the hierarchy bottom-up after geometries moved or changed their size, without
+     * changing its structure. Subtrees whose expected cost grew by more than {@value #REBUILD_COST_FACTOR}
+     * times their cost when built are rebuilt, the smallest first, so that a few moved geometries cost a
+     * local rebuild while a scattered scene is rebuilt entirely.
+     */
+    void refit() {
+        long start = System.nanoTime();
+        for (int i = 0; i < geometries.length; ++i) {
+            if (geometries[i] instanceof Geometries nested) nested.refit();
+            setBox(boxes, i, geometries[i].getBoundingBox());
+        }
+        refit(root);
+        repair(root);
+        stats = BvhStats.of(root, System.nanoTime() - start);
+        flat = new FlatBvh(root, stats.nodes());
+    }
+
+    /**
+     * Updates the boxes and the costs of a subtree bottom-up.
+     *
+     * @param node the root of the subtree
+     */
+    private void refit(Node node) {
+        double[] box = node.box;
+        if (node.isLeaf()) {
+            Arrays.fill(box, 0, 3, Double.POSITIVE_INFINITY);
+            Arrays.fill(box, 3, 6, Double.NEGATIVE_INFINITY);
+            for (int i = node.first; i < node.first + node.count; ++i) grow(box, boxes, i);
+            node.cost = area(box) * node.count;
+            return;
+        }
+        refit(node.left);
+        refit(node.right);
+        updateInner(node);
+    }
+
+    /**
+     * Updates the box and the cost of an inner node from its children.
+     *
+     * @param node the inner node
+     */
+    private static void updateInner(Node node) {
+        System.arraycopy(node.left.box, 0, node.box, 0, 6);
+        union(node.box, node.right.box);
+        node.cost = TRAVERSAL_COST * area(node.box) + node.left.cost + node.right.cost;
+    }
+
+    /**
+     * Checks whether the expected cost of a subtree grew too much since it was built.
+     *
+     * @param node the root of the subtree
+     * @return true if the subtree should be rebuilt
+     */
+    private static boolean degraded(Node node) {
+        double area = area(node.box);
+        return area > 0 && node.cost / area > node.buildCost * REBUILD_COST_FACTOR;
+    }
+
+    /**
+     * Rebuilds the degraded parts of a subtree: first the degraded subtrees of its children, then the
+     * subtree itself if it is still degraded.
+     *
+     * @param node the root of the subtree
+     */
+    private void repair(Node node) {
+        if (node.isLeaf() || !degraded(node)) return;
+        repair(node.left);
+        repair(node.right);
+        updateInner(node);
+        if (!degraded(node)) return;
+
+        Node rebuilt = build(node.first, node.first + node.count);
+        System.arraycopy(rebuilt.box, 0, node.box, 0, 6);
+        node.cost = rebuilt.cost;
+        node.buildCost = rebuilt.buildCost;
+        node.left = rebuilt.left;
+        node.right = rebuilt.right;
+    }
+
+    /**
+     * Stores a bounding box in a boxes array.
+     *
+     * @param boxes the array
+     * @param index the index of the box in the array
+     * @param box   the box
+     */
+    static void setBox(double[] boxes, int index, BoundingBox box) {
+        boxes[6 * index] = box.getMinX();
+        boxes[6 * index + 1] = box.getMinY();
+        boxes[6 * index + 2] = box.getMinZ();
+        boxes[6 * index + 3] = box.getMaxX();
+        boxes[6 * index + 4] = box.getMaxY();
+        boxes[6 * index + 5] = box.getMaxZ();
+    }
+
+    /**
+     * Returns the surface area of a box.
+     *
+     * @param box the box (6 values)
+     * @return the surface area, 0 for an empty box
+     */
+    static double area(double[] box) {
+        double dx = box[3] - box[0], dy = box[4] - box[1], dz = box[5] - box[2];
+        return dx < 0 ? 0 : 2 * (dx * dy + dy * dz + dz * dx);
+    }
+
+    /**
+     * Builds the subtree of a range of geometries, forking the subtrees of large ranges.
+     * Fork-join tasks are serializable, but a build task is never serialized.
+     */
+    @SuppressWarnings("serial")
+    private static class BuildTask extends RecursiveTask<Node> {
+        /**
+         * The boxes of the geometries
+         */
+        private final double[] boxes;
+        /**
+         * The centroids of the geometries' boxes (3 values per geometry)
+         */
+        private final double[] centroids;
+        /**
+         * The geometry indexes, partitioned in place by the build
+         */
+        private final int[] order;
+        /**
+         * The range of the subtree in the order array
+         */
+        private final int from, to;
+        /**
+         * The index in the geometries array of the first geometry of the built range
+         */
+        private final int offset;
+
+        /**
+         * Constructs the build of a subtree.
+         *
+         * @param boxes     the boxes of the geometries
+         * @param centroids the centroids of the geometries' boxes
+         * @param order     the geometry indexes
+         * @param from      the first index of the range in the order array
+         * @param to        the index after the range in the order array
+         * @param offset    the index in the geometries array of the first geometry of the built range
+         */
+        BuildTask(double[] boxes, double[] centroids, int[] order, int from, int to, int offset) {
+            this.boxes = boxes;
+            this.centroids = centroids;
+            this.order = order;
+            this.from = from;
+            this.to = to;
+            this.offset = offset;
+        }
+
+        @Override
+        protected Node compute() {
+            Node node = new Node();
+            double[] box = node.box;
+            double[] centroidBox = emptyBox();
+            for (int i = from; i < to; ++i) {
+                int g = order[i];
+                for (int a = 0; a < 3; ++a) {
+                    box[a] = Math.min(box[a], boxes[6 * g + a]);
+                    box[a + 3] = Math.max(box[a + 3], boxes[6 * g + a + 3]);
+                    centroidBox[a] = Math.min(centroidBox[a], centroids[3 * g + a]);
+                    centroidBox[a + 3] = Math.max(centroidBox[a + 3], centroids[3 * g + a]);
+                }
+            }
+            int count = to - from;
+            node.first = offset + from;
+            node.count = count;
+            if (count <= MIN_LEAF) return leaf(node);
+
+            int mid = binnedSplit(boxes, centroids, order, from, to, box, centroidBox);
+            if (mid < 0) return leaf(node);
+
+            BuildTask left = new BuildTask(boxes, centroids, order, from, mid, offset);
+            BuildTask right = new BuildTask(boxes, centroids, order, mid, to, offset);
+            if (count > PARALLEL_THRESHOLD) {
+                right.fork();
+                node.left = left.compute();
+                node.right = right.join();
+            } else {
+                node.left = left.compute();
+                node.right = right.compute();
+            }
+            updateInner(node);
+            node.buildCost = normalizedCost(node);
+            return node;
+        }
+
+        /**
+         * Completes a node as a leaf.
+         *
+         * @param node the node, covering the range
+         * @return the leaf
+         */
+        private static Node leaf(Node node) {
+            node.cost = area(node.box) * node.count;
+            node.buildCost = normalizedCost(node);
+            return node;
+        }
+
+        /**
+         * Returns the cost of a subtree divided by the area of its box.
+         *
+         * @param node the root of the subtree
+         * @return the normalized cost, the geometry count for a degenerate box
+         */
+        private static double normalizedCost(Node node) {
+            double area = area(node.box);
+            return area > 0 ? node.cost / area : node.count;
+        }
+    }
+
+    /**
+     * Chooses the cheapest binned split of the range and partitions the range by it.
+     *
+     * @param boxes       the boxes of the geometries, 6 values per geometry
+     * @param centroids   the centroids of the geometries' boxes, 3 values per geometry
+     * @param order       the geometry indexes, partitioned in place
+     * @param from        the first index of the range in the order array
+     * @param to          the index after the range in the order array
+     * @param box         the box of the range
+     * @param centroidBox the box of the centroids of the range
+     * @return the index of the first geometry of the right part, or -1 if a leaf is cheaper
+     */
+    private static int binnedSplit(double[] boxes, double[] centroids, int[] order, int from, int to, double[] box,
+                                   double[] centroidBox) {
+        int count = to - from;
+        double parentArea = area(box);
+        double bestCost = Double.POSITIVE_INFINITY;
+        int bestAxis = -1, bestBin = 0;
+        int[] binCounts = new int[BINS];
+        double[][] binBoxes = new double[BINS][];
+        double[] rightAreas = new double[BINS];
+        for (int axis = 0; axis < 3; ++axis) {
+            double low = centroidBox[axis], extent = centroidBox[axis + 3] - low;
+            if (extent <= 0) continue;
+            double scale = BINS / extent;
+            Arrays.fill(binCounts, 0);
+            for (int b = 0; b < BINS; ++b) binBoxes[b] = emptyBox();
+            for (int i = from; i < to; ++i) {
+                int g = order[i];
+                int b = Math.min(BINS - 1, (int) ((centroids[3 * g + axis] - low) * scale));
+                ++binCounts[b];
+                grow(binBoxes[b], boxes, g);
+            }
+
+            double[] right = emptyBox();
+            for (int b = BINS - 1; b > 0; --b) {
+                union(right, binBoxes[b]);
+                rightAreas[b] = area(right);
+            }
+            double[] left = emptyBox();
+            int leftCount = 0;
+            for (int b = 0; b < BINS - 1; ++b) {
+                union(left, binBoxes[b]);
+                leftCount += binCounts[b];
+                if (leftCount == 0 || leftCount == count) continue;
+                double cost = area(left) * leftCount + rightAreas[b + 1] * (count - leftCount);
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestAxis = axis;
+                    bestBin = b;
+                }
+            }
+        }
+
+        if (bestAxis < 0) // all the centroids coincide
+            return count > MAX_LEAF ? from + count / 2 : -1;
+        double splitCost = TRAVERSAL_COST + (parentArea > 0 ? bestCost / parentArea : count);
+        if (splitCost >= count && count <= MAX_LEAF) return -1;
+
+        double low = centroidBox[bestAxis];
+        double scale = BINS / (centroidBox[bestAxis + 3] - low);
+        int i = from, j = to - 1;
+        while (i <= j) {
+            int g = order[i];
+            if (Math.min(BINS - 1, (int) ((centroids[3 * g + bestAxis] - low) * scale)) <= bestBin) ++i;
+            else {
+                order[i] = order[j];
+                order[j--] = g;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Returns an empty box, which any union makes the other box.
+     *
+     * @return the empty box
+     */
+    static double[] emptyBox() {
+        double inf = Double.POSITIVE_INFINITY;
+        return new double[]{inf, inf, inf, -inf, -inf, -inf};
+    }
+
+    /**
+     * Grows a box to contain a box of a boxes array.
+     *
+     * @param box   the box to grow
+     * @param boxes the boxes array
+     * @param index the index of the contained box
+     */
+    static void grow(double[] box, double[] boxes, int index) {
+        for (int a = 0; a < 3; ++a) {
+            box[a] = Math.min(box[a], boxes[6 * index + a]);
+            box[a + 3] = Math.max(box[a + 3], boxes[6 * index + a + 3]);
+        }
+    }
+
+    /**
+     * Grows a box to contain another box.
+     *
+     * @param box   the box to grow
+     * @param other the contained box
+     */
+    static void union(double[] box, double[] other) {
+        for (int a = 0; a < 3; ++a) {
+            box[a] = Math.min(box[a], other[a]);
+            box[a + 3] = Math.max(box[a + 3], other[a + 3]);
+        }
+    }
+
+    @Override
+    public double[] bounds() {
+        return root.box;
+    }
+
+    /**
+     * Finds the intersections of a ray with the geometries whose leaves' boxes the ray hits, by the flat
+     * layout of the hierarchy.
+     *
+     * @param ray the ray
+     * @return the intersections, or null if there are none
+     */
+    @Override
+    public List<GeoPoint> findGeoIntersections(Ray ray) {
+        return flat.findGeoIntersections(ray, geometries);
+    }
+}
@@ -0,0 +1,57 @@
+package geometries;
+
+/**
+ * The build (or refit) time and the quality of a bounding volume hierarchy.
+ *
+ * @param buildNanos      the time of the last build or refit in nanoseconds
+ * @param nodes           the number of nodes (inner nodes and leaves)
+ * @param leaves          the number of leaves
+ * @param maxDepth        the depth of the deepest leaf (0 for a single leaf)
+ * @param averageLeafSize the average number of geometries in a leaf
+ * @param sahCost         the expected cost of a ray hitting the root box, by the surface area heuristic, in units of
+ *                        geometry intersection tests (a flat list of n geometries costs n)
+ */
+public record BvhStats(long buildNanos, int nodes, int leaves, int maxDepth, double averageLeafSize,
+                       double sahCost) {
+    /**
+     * Measures a hierarchy.
+     *
+     * @param root       the root of the hierarchy
+     * @param buildNanos the build time in nanoseconds
+     * @return the statistics of the hierarchy
+     */
+    static BvhStats of(Bvh.Node root, long buildNanos) {
+        int[] counts = new int[4]; // nodes, leaves, max depth, geometries
+        double rootArea = Bvh.area(root.box);
+        double cost = measure(root, 0, rootArea, counts);
+        return new BvhStats(buildNanos, counts[0], counts[1], counts[2], (double) counts[3] / counts[1], cost);
+    }
+
+    /**
+     * Measures a subtree.
+     *
+     * @param node     the root of the subtree
+     * @param depth    the depth of the node
+     * @param rootArea the surface area of the root box
+     * @param counts   the counters of nodes, leaves, maximal depth and geometries, updated by the measure
+     * @return the SAH cost of the subtree
+     */
+    private static double measure(Bvh.Node node, int depth, double rootArea, int[] counts) {
+        ++counts[0];
+        double probability = rootArea > 0 ? Bvh.area(node.box) / rootArea : 1;
+        if (node.isLeaf()) {
+            ++counts[1];
+            counts[2] = Math.max(counts[2], depth);
+            counts[3] += node.count;
+            return probability * node.count;
+        }
+        return probability * Bvh.TRAVERSAL_COST + measure(node.left, depth + 1, rootArea, counts)
+                + measure(node.right, depth + 1, rootArea, counts);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d nodes, %d leaves, depth %d, %.1f per leaf, SAH cost %.2f, %.1f ms to build",
+                nodes, leaves, maxDepth, averageLeafSize, sahCost, buildNanos / 1e6);
+    }
+}
@@ -31,6 +31,25 @@ public class Cylinder extends Tube {
         this.height = height;
     }
 
+    /**
+     * Returns the bounding box of the cylinder: the box of its axis segment, extended on every axis by the
+     * extent of the base circles along it.
+     *
+     * @return the bounding box of the cylinder
+     */
+    @Override
+    public BoundingBox getBoundingBox() {
+        Point bottom = axis.getHead();
+        Vector direction = axis.getDirection();
+        Point top = axis.getPoint(height);
+        double ex = radius * Math.sqrt(Math.max(0, 1 - direction.getX() * direction.getX()));
+        double ey = radius * Math.sqrt(Math.max(0, 1 - direction.getY() * direction.getY()));
+        double ez = radius * Math.sqrt(Math.max(0, 1 - direction.getZ() * direction.getZ()));
+        return new BoundingBox(Math.min(bottom.getX(), top.getX()) - ex, Math.min(bottom.getY(), top.getY()) - ey,
+                Math.min(bottom.getZ(), top.getZ()) - ez, Math.max(bottom.getX(), top.getX()) + ex,
+                Math.max(bottom.getY(), top.getY()) + ey, Math.max(bottom.getZ(), top.getZ()) + ez);
+    }
+
     /**
      * Retrieves the normal vector to the cylinder at a given point on its surface.
      *
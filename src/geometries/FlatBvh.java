@@ -0,0 +1,203 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import geometries.Intersectable.GeoPoint;
+
+/**
+ * The nodes of a bounding volume hierarchy laid out in two primitive arrays, for traversal. A tree of node
+ * objects scatters the nodes over the heap, and every step of a traversal follows a reference to another
+ * cache line; the flat layout stores the nodes in depth-first order, so the left child of a node follows it
+ * immediately and a traversal mostly reads consecutive memory.
+ * <p>
+ * Every node takes 6 floats of box (rounded outward, so that the box stays conservative) and 2 ints: the
+ * index of the right child and 0 for an inner node, or the index of the first geometry and the number of
+ * geometries for a leaf. The traversal keeps the pending right children on a per-thread stack of ints, so
+ * it allocates nothing but the list of intersections.
+ * </p>
+ */
+final class FlatBvh {
+    /**
+     * The boxes of the nodes, 6 values per node
+     */
+    private final float[] bounds;
+    /**
+     * The links of the nodes, 2 values per node
+     */
+    private final int[] links;
+
+    /**
+     * The traversal stack of a thread, shared by the nested hierarchies the thread traverses at once: every
+     * traversal pushes its pending nodes above those of the traversals it is nested in.
+     */
+    static final class Stack {
+        /**
+         * The pending nodes
+         */
+        int[] nodes = new int[64];
+        /**
+         * The number of pending nodes
+         */
+        int top = 0;
+
+        /**
+         * Pushes a pending node.
+         *
+         * @param node the index of the node
+         */
+        void push(int node) {
+            if (top == nodes.length) nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+            nodes[top++] = node;
+        }
+    }
+
+    /**
+     * The traversal stacks of the threads
+     */
+    private static final ThreadLocal<Stack> stacks = ThreadLocal.withInitial(Stack::new);
+
+    /**
+     * Returns the traversal stack of the current thread.
+     *
+     * @return the stack
+     */
+    static Stack stack() {
+        return stacks.get();
+    }
+
+    /**
+     * Lays out a hierarchy.
+     *
+     * @param root  the root of the hierarchy
+     * @param nodes the number of nodes of the hierarchy
+     */
+    FlatBvh(Bvh.Node root, int nodes) {
+        bounds = new float[6 * nodes];
+        links = new int[2 * nodes];
+        layout(root, 0);
+    }
+
+    /**
+     * Lays out a subtree in depth-first order.
+     *
+     * @param node  the root of the subtree
+     * @param index the index of the root in the layout
+     * @return the index after the subtree
+     */
+    private int layout(Bvh.Node node, int index) {
+        for (int a = 0; a < 3; ++a) {
+            bounds[6 * index + a] = Math.nextDown((float) node.box[a]);
+            bounds[6 * index + a + 3] = Math.nextUp((float) node.box[a + 3]);
+        }
+        if (node.isLeaf()) {
+            links[2 * index] = node.first;
+            links[2 * index + 1] = node.count;
+            return index + 1;
+        }
+        int right = layout(node.left, index + 1);
+        links[2 * index] = right;
+        return layout(node.right, right);
+    }
+
+    /**
+     * Returns the size of the layout.
+     *
+     * @return the size of the arrays in bytes
+     */
+    long bytes() {
+        return 4L * (bounds.length + links.length);
+    }
+
+    /**
+     * Finds the intersections of a ray with the geometries whose leaves' boxes the ray hits.
+     *
+     * @param ray        the ray
+     * @param geometries the geometries of the hierarchy, in the order of the leaves
+     * @return the intersections, or null if there are none
+     */
+    List<GeoPoint> findGeoIntersections(Ray ray, Intersectable[] geometries) {
+        Point head = ray.getHead();
+        Vector direction = ray.getDirection();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+        double ix = 1 / direction.getX(), iy = 1 / direction.getY(), iz = 1 / direction.getZ();
+
+        Stack stack = stacks.get();
+        int base = stack.top;
+        List<GeoPoint> result = null;
+        try {
+            int node = 0;
+            while (true) {
+                if (hits(node, ox, oy, oz, ix, iy, iz)) {
+                    int count = links[2 * node + 1];
+                    if (count == 0) { // an inner node: visit the left child, the right one is pending
+                        stack.push(links[2 * node]);
+                        ++node;
+                        continue;
+                    }
+                    for (int i = links[2 * node]; i < links[2 * node] + count; ++i) {
+                        List<GeoPoint> intersections = geometries[i].findGeoIntersections(ray);
+                        if (intersections != null && !intersections.isEmpty()) {
+                            if (result == null) result = new LinkedList<>(intersections);
+                            else result.addAll(intersections);
+                        }
+                    }
+                }
+                if (stack.top == base) return result;
+                node = stack.nodes[--stack.top];
+            }
+        } finally {
+            stack.top = base;
+        }
+    }
+
+    /**
+     * The slab test of a ray against the box of a node, in front of the ray head.
+     *
+     * @param node the index of the node
+     * @param ox   the x coordinate of the ray head
+     * @param oy   the y coordinate of the ray head
+     * @param oz   the z coordinate of the ray head
+     * @param ix   the inverse of the x coordinate of the ray direction
+     * @param iy   the inverse of the y coordinate of the ray direction
+     * @param iz   the inverse of the z coordinate of the ray direction
+     * @return true if the ray hits the box
+     */
+    private boolean hits(int node, double ox, double oy, double oz, double ix, double iy, double iz) {
+        int b = 6 * node;
+        double near = 0, far = Double.POSITIVE_INFINITY;
+        // comparisons (rather than min and max) ignore the NaN of a ray parallel to a face and on its plane
+        double t0 = (bounds[b] - ox) * ix, t1 = (bounds[b + 3] - ox) * ix;
+        if (t0 > t1) {
+            double t = t0;
+            t0 = t1;
+            t1 = t;
+        }
+        if (t0 > near) near = t0;
+        if (t1 < far) far = t1;
+        t0 = (bounds[b + 1] - oy) * iy;
+        t1 = (bounds[b + 4] - oy) * iy;
+        if (t0 > t1) {
+            double t = t0;
+            t0 = t1;
+            t1 = t;
+        }
+        if (t0 > near) near = t0;
+        if (t1 < far) far = t1;
+        t0 = (bounds[b + 2] - oz) * iz;
+        t1 = (bounds[b + 5] - oz) * iz;
+        if (t0 > t1) {
+            double t = t0;
+            t0 = t1;
+            t1 = t;
+        }
+        if (t0 > near) near = t0;
+        if (t1 < far) far = t1;
+        return near <= far;
+    }
+}
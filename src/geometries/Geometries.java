@@ -1,10 +1,18 @@
 package geometries;
 
+import primitives.BoundingBox;
+import primitives.Color;
+import primitives.Material;
 import primitives.Point;
 import primitives.Ray;
+import profiling.ScenePreparationEvent;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * The {@code Geometries} class represents a collection of geometric objects that can be intersected by rays.
@@ -14,12 +22,70 @@ import java.util.List;
  * </p>
  */
 public class Geometries extends Intersectable {
+    /**
+     * The acceleration structures a collection can be built with
+     */
+    public enum Acceleration {
+        /**
+         * No acceleration: every ray is tested against every geometry
+         */
+        NONE,
+        /**
+         * A bounding volume hierarchy (see {@link #buildHierarchy()}), for geometries of any sizes and
+         * distribution, such as meshes
+         */
+        BVH,
+        /**
+         * A uniform grid (see {@link #buildGrid(boolean)}), for many similar small geometries spread evenly,
+         * such as particle clouds
+         */
+        GRID,
+        /**
+         * A uniform grid with nested grids in its crowded cells, for small geometries of uneven density
+         */
+        TWO_LEVEL_GRID,
+        /**
+         * A bounding volume hierarchy split on demand (see {@link #buildLazyHierarchy()}), for quick previews
+         * of huge scenes
+         */
+        LAZY_BVH
+    }
+
+    /**
+     * At least this many triangles of the same material are merged into a mesh by {@link #compile()}
+     */
+    private static final int MESH_THRESHOLD = 16;
+    /**
+     * A compiled collection of at least this many geometries is accelerated by a hierarchy, unless the
+     * original collection chose its acceleration
+     */
+    private static final int HIERARCHY_THRESHOLD = 8;
 
     /**
      * A list of geometries to be intersected, initialized as an empty {@link LinkedList}.
      */
     //private
     final List<Intersectable> geometries = new LinkedList<>();
+    /**
+     * The acceleration structure over the geometries, or null if the collection is not accelerated
+     */
+    private Accelerator accelerator = null;
+    /**
+     * The unbounded geometries, tested against every ray alongside the acceleration structure
+     */
+    private List<Intersectable> unbounded = List.of();
+    /**
+     * Whether the collection was made by {@link #compile()}, and can't be changed
+     */
+    private boolean compiled = false;
+    /**
+     * The number of changes of the geometries or of the acceleration structure
+     */
+    private long modifications = 0;
+    /**
+     * The number of requested refits of the hierarchy
+     */
+    private long refits = 0;
 
     /**
      * Default constructor that initializes an empty list of geometries.
@@ -42,15 +108,309 @@ public class Geometries extends Intersectable {
      * @param geometries the geometric objects to add
      */
     public void add(Intersectable... geometries) {
+        if (compiled) throw new UnsupportedOperationException("A compiled collection can't be changed");
         for (Intersectable geometry : geometries) {
             this.geometries.add(geometry);
         }
+        accelerator = null;
+        unbounded = List.of();
+        ++modifications;
+    }
+
+    /**
+     * Builds a bounding volume hierarchy over the geometries (see {@link Bvh}), so that a ray is tested
+     * only against the geometries near it. The build runs in parallel for large collections. Adding
+     * geometries afterward drops the hierarchy until it is built again.
+     * <p>
+     * Unbounded geometries (planes, tubes) are kept out of the structure and tested against every ray.
+     * </p>
+     *
+     * @return the build statistics, or null if the collection can't be accelerated
+     */
+    public BvhStats buildHierarchy() {
+        List<Intersectable> bounded = bounded();
+        if (bounded == null) return null;
+        Bvh bvh = new Bvh(bounded);
+        accelerator = bvh;
+        return bvh.stats;
+    }
+
+    /**
+     * Prepares a bounding volume hierarchy over the geometries that is split on demand (see {@link LazyBvh}):
+     * a node is split only when a ray first reaches it, so rendering starts after a single pass over the
+     * geometries' boxes, and the regions no ray reaches are never refined. Adding geometries afterward drops
+     * the hierarchy until it is prepared again.
+     * <p>
+     * Unbounded geometries (planes, tubes) are kept out of the structure and tested against every ray.
+     * </p>
+     *
+     * @return this collection
+     */
+    public Geometries buildLazyHierarchy() {
+        List<Intersectable> bounded = bounded();
+        if (bounded != null) accelerator = new LazyBvh(bounded);
+        return this;
+    }
+
+    /**
+     * Builds a uniform grid over the geometries (see {@link Grid}), so that a ray is tested only against the
+     * geometries in the cells it crosses. The grid builds faster than a hierarchy, and traverses faster for
+     * many small geometries of similar sizes. Adding geometries afterward drops the grid until it is built
+     * again.
+     * <p>
+     * Unbounded geometries (planes, tubes) are kept out of the structure and tested against every ray.
+     * </p>
+     *
+     * @param twoLevel whether crowded cells get nested grids, for geometries of uneven density
+     * @return the build statistics, or null if the collection can't be accelerated
+     */
+    public GridStats buildGrid(boolean twoLevel) {
+        List<Intersectable> bounded = bounded();
+        if (bounded == null) return null;
+        Grid grid = Grid.build(bounded, twoLevel);
+        accelerator = grid;
+        return grid.stats;
+    }
+
+    /**
+     * Drops the current acceleration structure, and separates the bounded geometries from the unbounded ones.
+     *
+     * @return the bounded geometries, or null if there are fewer than two, so that the collection isn't worth
+     * accelerating
+     */
+    private List<Intersectable> bounded() {
+        accelerator = null;
+        unbounded = List.of();
+        ++modifications;
+        List<Intersectable> bounded = new LinkedList<>();
+        List<Intersectable> rest = new LinkedList<>();
+        for (Intersectable geometry : geometries)
+            (geometry.getBoundingBox() == null ? rest : bounded).add(geometry);
+        if (bounded.size() < 2) return null;
+        unbounded = rest;
+        return bounded;
+    }
+
+    /**
+     * Builds the chosen acceleration structure over the geometries, dropping the current one.
+     *
+     * @param acceleration the acceleration structure
+     * @return this collection
+     */
+    public Geometries setAcceleration(Acceleration acceleration) {
+        switch (acceleration) {
+            case NONE -> {
+                accelerator = null;
+                unbounded = List.of();
+                ++modifications;
+            }
+            case BVH -> buildHierarchy();
+            case GRID -> buildGrid(false);
+            case TWO_LEVEL_GRID -> buildGrid(true);
+            case LAZY_BVH -> buildLazyHierarchy();
+        }
+        return this;
+    }
+
+    /**
+     * Returns the acceleration structure the geometries are currently built with.
+     *
+     * @return the acceleration structure, {@link Acceleration#NONE} if the collection is not accelerated
+     */
+    public Acceleration getAcceleration() {
+        return switch (accelerator) {
+            case Bvh ignored -> Acceleration.BVH;
+            case Grid grid -> grid.twoLevel ? Acceleration.TWO_LEVEL_GRID : Acceleration.GRID;
+            case LazyBvh ignored -> Acceleration.LAZY_BVH;
+            case null, default -> Acceleration.NONE;
+        };
+    }
+
+    /**
+     * Returns the statistics of the hierarchy over the geometries.
+     *
+     * @return the build statistics, or null if the collection is not accelerated by a hierarchy
+     */
+    public BvhStats getHierarchyStats() {
+        return accelerator instanceof Bvh bvh ? bvh.stats : null;
+    }
+
+    /**
+     * Returns the statistics of the grid over the geometries.
+     *
+     * @return the build statistics, or null if the collection is not accelerated by a grid
+     */
+    public GridStats getGridStats() {
+        return accelerator instanceof Grid grid ? grid.stats : null;
+    }
+
+    /**
+     * Updates the hierarchy after geometries moved (e.g. by {@link Sphere#setCenter(Point)}) between the
+     * frames of an animation, in a single pass over the geometries instead of a full build. The structure of
+     * the hierarchy is kept, unless the moves degraded it enough to rebuild its worst parts. Accelerated
+     * collections nested in this one are updated first, also when this collection is not accelerated.
+     * <p>
+     * The request is recorded even if the collection is not accelerated by a hierarchy, so that a compiled copy
+     * (see {@link #compile()}) that is accelerated is updated as well.
+     * </p>
+     *
+     * @return the refit statistics, or null if the collection is not accelerated by a hierarchy
+     */
+    public BvhStats refitHierarchy() {
+        ++refits;
+        return refit();
+    }
+
+    /**
+     * Updates the hierarchy and the collections nested in this one, without recording a request, so that
+     * refitting a hierarchy over shared nested collections (such as a compiled copy) doesn't count as a
+     * change of them.
+     *
+     * @return the refit statistics, or null if the collection is not accelerated by a hierarchy
+     */
+    BvhStats refit() {
+        if (accelerator instanceof Bvh bvh) {
+            bvh.refit();
+            return bvh.stats;
+        }
+        for (Intersectable geometry : geometries)
+            if (geometry instanceof Geometries nested) nested.refit();
+        return null;
+    }
+
+    /**
+     * Returns the number of changes of the collection and of the collections nested in it: geometries added
+     * or replaced, and acceleration structures built or dropped. The count only grows, so a structure derived
+     * from the collection (such as its compiled copy) is up to date as long as the count is unchanged.
+     *
+     * @return the number of changes
+     */
+    public long getModificationCount() {
+        long count = modifications;
+        for (Intersectable geometry : geometries)
+            if (geometry instanceof Geometries nested) count += nested.getModificationCount();
+        return count;
+    }
+
+    /**
+     * Returns the number of requested refits (see {@link #refitHierarchy()}) of the collection and of the
+     * collections nested in it.
+     *
+     * @return the number of refits
+     */
+    public long getRefitCount() {
+        long count = refits;
+        for (Intersectable geometry : geometries)
+            if (geometry instanceof Geometries nested) count += nested.getRefitCount();
+        return count;
+    }
+
+    /**
+     * Rebuilds the acceleration structure (if there is one) after the geometries were replaced in place.
+     */
+    void geometriesReplaced() {
+        ++modifications;
+        switch (accelerator) {
+            case Bvh ignored -> buildHierarchy();
+            case Grid grid -> buildGrid(grid.twoLevel);
+            case LazyBvh ignored -> buildLazyHierarchy();
+            case null, default -> {
+            }
+        }
+    }
+
+    /**
+     * Compiles the collection for rendering into a flat, optimized copy, leaving this collection as it is:
+     * <ul>
+     * <li>nested collections are inlined, so that empty ones are dropped and singletons are replaced by their
+     * geometry, unless they are accelerated (their structure is kept, and shared with the copy);</li>
+     * <li>the triangles sharing the same material object and the same emission object (neither
+     * {@link Material} nor {@link Color} compares by value) are merged into {@link Mesh meshes}, so the
+     * triangles to merge must be given the same instances, as mesh loaders do;</li>
+     * <li>the copy is accelerated like this collection, or by a hierarchy if this collection is not
+     * accelerated and the copy is large enough.</li>
+     * </ul>
+     * The copy can't be changed: geometries are added to the original collection, which is compiled again
+     * (see {@link #getModificationCount()}).
+     *
+     * @return the compiled collection
+     */
+    public Geometries compile() {
+        ScenePreparationEvent event = new ScenePreparationEvent();
+        event.begin();
+        // Material and Color don't override equals, so the groups compare their components by identity
+        record Group(Material material, Color emission) {
+        }
+        Map<Group, List<Triangle>> groups = new LinkedHashMap<>();
+        Geometries result = new Geometries();
+        inline(this, result.geometries, triangle -> groups
+                .computeIfAbsent(new Group(triangle.getMaterial(), triangle.getEmission()), group -> new ArrayList<>())
+                .add(triangle));
+        for (Map.Entry<Group, List<Triangle>> group : groups.entrySet()) {
+            List<Triangle> triangles = group.getValue();
+            if (triangles.size() < MESH_THRESHOLD) result.geometries.addAll(triangles);
+            else result.geometries.add(Mesh.of(triangles, false)
+                    .setMaterial(group.getKey().material()).setEmission(group.getKey().emission()));
+        }
+        Acceleration acceleration = getAcceleration();
+        if (acceleration == Acceleration.NONE && result.geometries.size() >= HIERARCHY_THRESHOLD)
+            acceleration = Acceleration.BVH;
+        result.setAcceleration(acceleration);
+        result.compiled = true;
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = "scene compile";
+            event.subject = "geometries " + result.getAcceleration();
+            event.objects = result.geometries.size();
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Adds the geometries of a collection to a flat list, inlining the nested collections that are not
+     * accelerated, and setting the plain triangles aside.
+     *
+     * @param source    the collection
+     * @param target    the flat list
+     * @param triangles the consumer of the plain triangles
+     */
+    private static void inline(Geometries source, List<Intersectable> target, Consumer<Triangle> triangles) {
+        for (Intersectable geometry : source.geometries) {
+            if (geometry instanceof Geometries nested && nested.accelerator == null)
+                inline(nested, target, triangles);
+            else if (geometry.getClass() == Triangle.class) triangles.accept((Triangle) geometry);
+            else target.add(geometry);
+        }
+    }
+
+    /**
+     * Returns the bounding box of all the geometries in the list.
+     *
+     * @return the union of the geometries' boxes, or null if the list is empty or any geometry is unbounded
+     */
+    @Override
+    public BoundingBox getBoundingBox() {
+        if (accelerator != null && unbounded.isEmpty()) {
+            double[] box = accelerator.bounds();
+            return new BoundingBox(box[0], box[1], box[2], box[3], box[4], box[5]);
+        }
+        BoundingBox box = null;
+        for (Intersectable geometry : geometries) {
+            BoundingBox child = geometry.getBoundingBox();
+            if (child == null) return null;
+            box = box == null ? child : box.union(child);
+        }
+        return box;
     }
 
     /**
      * Finds the intersections of a given ray with all the geometries in the list.
      * <p>
-     * This method iterates through all the geometries and collects all intersection points.
+     * This method iterates through all the geometries and collects all intersection points. In an
+     * accelerated collection, the acceleration structure finds the intersections with the bounded geometries,
+     * and only the unbounded ones are iterated.
      * If no intersections are found, it returns {@code null}.
      * </p>
      *
@@ -60,7 +420,12 @@ public class Geometries extends Intersectable {
     @Override
     protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
         List<GeoPoint> result = null;
-        for (Intersectable geometry : geometries) {
+        List<Intersectable> tested = geometries;
+        if (accelerator != null) {
+            result = accelerator.findGeoIntersections(ray);
+            tested = unbounded;
+        }
+        for (Intersectable geometry : tested) {
             List<GeoPoint> intersections = geometry.findGeoIntersections(ray);
             if (intersections != null) {
                 if (result == null)
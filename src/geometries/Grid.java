@@ -0,0 +1,429 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+import profiling.ScenePreparationEvent;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import geometries.Intersectable.GeoPoint;
+
+/**
+ * Uniform grid over the geometries of a collection. The box of the geometries is divided into cells of equal
+ * size, about {@value #DENSITY} cells per geometry, and every cell lists the geometries whose boxes overlap
+ * it. A ray walks through the cells it crosses, in order, by the 3D digital differential analyzer (3D-DDA) of
+ * Amanatides and Woo, and is tested against the geometries of these cells only.
+ * <p>
+ * A geometry overlapping several cells is tested once per ray: every thread keeps a mailbox stamping the
+ * geometries already tested by its current ray. In the two level variant, cells holding more than
+ * {@value #NESTED_THRESHOLD} geometries (where the geometries are crowded, e.g. in a dense cluster of a
+ * sparse scene) get a nested grid of their own.
+ * </p>
+ * <p>
+ * The grid is built in a single pass over the geometries' boxes, much faster than a hierarchy, and suits
+ * scenes of many similar small geometries such as particle clouds.
+ * </p>
+ */
+class Grid implements Accelerator {
+    /**
+     * The number of cells per geometry
+     */
+    private static final int DENSITY = 3;
+    /**
+     * The maximal number of cells along an axis
+     */
+    private static final int MAX_RESOLUTION = 256;
+    /**
+     * In a two level grid, cells with more geometries than this get a nested grid
+     */
+    static final int NESTED_THRESHOLD = 16;
+    /**
+     * An axis shorter than this share of the longest axis is flat, and gets a single cell
+     */
+    private static final double FLAT = 1e-3;
+
+    /**
+     * The geometries tested by the current ray of a thread.
+     */
+    private static final class Mailbox {
+        /**
+         * The number of the last ray that tested each geometry
+         */
+        final int[] stamps;
+        /**
+         * The number of the current ray
+         */
+        int ray = 0;
+
+        /**
+         * Constructs an empty mailbox.
+         *
+         * @param size the number of geometries
+         */
+        Mailbox(int size) {
+            stamps = new int[size];
+        }
+    }
+
+    /**
+     * The geometries (shared by the nested grids)
+     */
+    private final Intersectable[] geometries;
+    /**
+     * The boxes of the geometries, 6 values per geometry (shared by the nested grids)
+     */
+    private final double[] boxes;
+    /**
+     * The mailboxes of the threads (shared by the nested grids)
+     */
+    private final ThreadLocal<Mailbox> mailboxes;
+    /**
+     * The box of the grid: min x, min y, min z, max x, max y, max z
+     */
+    private final double[] bounds;
+    /**
+     * The number of cells along each axis
+     */
+    private final int[] resolution = new int[3];
+    /**
+     * The size of a cell along each axis
+     */
+    private final double[] cellSize = new double[3];
+    /**
+     * The index in {@link #items} of the first geometry of every cell, followed by the number of items
+     */
+    private final int[] cellStart;
+    /**
+     * The geometry indexes of all the cells, cell after cell
+     */
+    private final int[] items;
+    /**
+     * The nested grids of the crowded cells, or null if there are none
+     */
+    private Grid[] nested = null;
+    /**
+     * Whether crowded cells get nested grids
+     */
+    final boolean twoLevel;
+    /**
+     * The statistics of the build
+     */
+    GridStats stats;
+
+    /**
+     * Builds a grid over bounded geometries.
+     *
+     * @param geometries the geometries, all with bounding boxes
+     * @param twoLevel   whether crowded cells get nested grids
+     * @return the grid
+     */
+    static Grid build(List<Intersectable> geometries, boolean twoLevel) {
+        ScenePreparationEvent event = new ScenePreparationEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Intersectable[] array = geometries.toArray(new Intersectable[0]);
+        int n = array.length;
+        double[] boxes = new double[6 * n];
+        double[] bounds = Bvh.emptyBox();
+        int[] subset = new int[n];
+        for (int i = 0; i < n; ++i) {
+            Bvh.setBox(boxes, i, array[i].getBoundingBox());
+            Bvh.grow(bounds, boxes, i);
+            subset[i] = i;
+        }
+        Grid grid = new Grid(array, boxes, ThreadLocal.withInitial(() -> new Mailbox(n)), subset, bounds, twoLevel);
+        grid.stats = GridStats.of(grid, System.nanoTime() - start);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = "acceleration build";
+            event.subject = "grid " + grid.stats;
+            event.objects = n;
+            event.commit();
+        }
+        return grid;
+    }
+
+    /**
+     * Builds a grid over some of the geometries.
+     *
+     * @param geometries all the geometries
+     * @param boxes      the boxes of all the geometries
+     * @param mailboxes  the mailboxes of the threads
+     * @param subset     the indexes of the geometries of the grid
+     * @param bounds     the box of the grid, padded by the construction if it is flat
+     * @param twoLevel   whether crowded cells get nested grids
+     */
+    private Grid(Intersectable[] geometries, double[] boxes, ThreadLocal<Mailbox> mailboxes, int[] subset,
+                 double[] bounds, boolean twoLevel) {
+        this.geometries = geometries;
+        this.boxes = boxes;
+        this.mailboxes = mailboxes;
+        this.bounds = bounds;
+        this.twoLevel = twoLevel;
+
+        double[] extent = new double[3];
+        boolean[] flat = new boolean[3];
+        double maxExtent = 0;
+        for (int a = 0; a < 3; ++a) maxExtent = Math.max(maxExtent, bounds[a + 3] - bounds[a]);
+        double pad = Math.max(maxExtent * FLAT, 1e-9);
+        double volume = 1;
+        int dimensions = 0;
+        for (int a = 0; a < 3; ++a) {
+            extent[a] = bounds[a + 3] - bounds[a];
+            if (extent[a] > maxExtent * FLAT) {
+                volume *= extent[a];
+                ++dimensions;
+            } else { // a flat axis gets a single cell, padded so that cells are never empty boxes
+                flat[a] = true;
+                bounds[a] -= pad;
+                bounds[a + 3] += pad;
+                extent[a] = bounds[a + 3] - bounds[a];
+            }
+        }
+        double cellsPerUnit = dimensions == 0 ? 0 : Math.pow(DENSITY * subset.length / volume, 1.0 / dimensions);
+        for (int a = 0; a < 3; ++a) {
+            resolution[a] = flat[a] ? 1
+                    : (int) Math.max(1, Math.min(MAX_RESOLUTION, Math.round(extent[a] * cellsPerUnit)));
+            cellSize[a] = extent[a] / resolution[a];
+        }
+
+        // count the geometries of every cell, then place them
+        int cells = resolution[0] * resolution[1] * resolution[2];
+        cellStart = new int[cells + 1];
+        int[] ranges = new int[6 * subset.length];
+        for (int i = 0; i < subset.length; ++i) {
+            cellRange(subset[i], ranges, 6 * i);
+            forEachCell(ranges, 6 * i, cell -> ++cellStart[cell + 1]);
+        }
+        for (int c = 0; c < cells; ++c) cellStart[c + 1] += cellStart[c];
+        items = new int[cellStart[cells]];
+        int[] cursor = Arrays.copyOf(cellStart, cells);
+        for (int i = 0; i < subset.length; ++i) {
+            int g = subset[i];
+            forEachCell(ranges, 6 * i, cell -> items[cursor[cell]++] = g);
+        }
+
+        if (twoLevel) nest();
+    }
+
+    /**
+     * Gives the crowded cells nested grids, bounded by the intersection of the cell and its geometries' boxes.
+     */
+    private void nest() {
+        int cells = cellStart.length - 1;
+        for (int c = 0; c < cells; ++c) {
+            int count = cellStart[c + 1] - cellStart[c];
+            if (count <= NESTED_THRESHOLD) continue;
+            int[] subset = Arrays.copyOfRange(items, cellStart[c], cellStart[c + 1]);
+            double[] cellBox = cellBox(c);
+            double[] box = Bvh.emptyBox();
+            for (int g : subset) Bvh.grow(box, boxes, g);
+            for (int a = 0; a < 3; ++a) {
+                box[a] = Math.max(box[a], cellBox[a]);
+                box[a + 3] = Math.min(box[a + 3], cellBox[a + 3]);
+            }
+            if (nested == null) nested = new Grid[cells];
+            nested[c] = new Grid(geometries, boxes, mailboxes, subset, box, false);
+        }
+    }
+
+    /**
+     * Returns the box of a cell.
+     *
+     * @param cell the index of the cell
+     * @return the box of the cell
+     */
+    private double[] cellBox(int cell) {
+        int[] index = {cell % resolution[0], cell / resolution[0] % resolution[1], cell / resolution[0] / resolution[1]};
+        double[] box = new double[6];
+        for (int a = 0; a < 3; ++a) {
+            box[a] = bounds[a] + index[a] * cellSize[a];
+            box[a + 3] = box[a] + cellSize[a];
+        }
+        return box;
+    }
+
+    /**
+     * Computes the range of the cells overlapped by the box of a geometry.
+     *
+     * @param geometry the index of the geometry
+     * @param ranges   the array receiving the range: the first cell and the last cell along each axis
+     * @param offset   the index of the range in the array
+     */
+    private void cellRange(int geometry, int[] ranges, int offset) {
+        for (int a = 0; a < 3; ++a) {
+            ranges[offset + a] = cellIndex(a, boxes[6 * geometry + a]);
+            ranges[offset + a + 3] = cellIndex(a, boxes[6 * geometry + a + 3]);
+        }
+    }
+
+    /**
+     * Returns the index along an axis of the cell containing a coordinate, clamped to the grid.
+     *
+     * @param axis       the axis
+     * @param coordinate the coordinate
+     * @return the index of the cell along the axis
+     */
+    private int cellIndex(int axis, double coordinate) {
+        int index = (int) ((coordinate - bounds[axis]) / cellSize[axis]);
+        return Math.max(0, Math.min(resolution[axis] - 1, index));
+    }
+
+    /**
+     * An action on the index of a cell.
+     */
+    private interface CellAction {
+        /**
+         * Acts on a cell.
+         *
+         * @param cell the index of the cell
+         */
+        void apply(int cell);
+    }
+
+    /**
+     * Applies an action on every cell of a range.
+     *
+     * @param ranges the array of ranges
+     * @param offset the index of the range in the array
+     * @param action the action
+     */
+    private void forEachCell(int[] ranges, int offset, CellAction action) {
+        for (int z = ranges[offset + 2]; z <= ranges[offset + 5]; ++z)
+            for (int y = ranges[offset + 1]; y <= ranges[offset + 4]; ++y)
+                for (int x = ranges[offset]; x <= ranges[offset + 3]; ++x)
+                    action.apply((z * resolution[1] + y) * resolution[0] + x);
+    }
+
+    @Override
+    public double[] bounds() {
+        return bounds;
+    }
+
+    /**
+     * Returns the number of cells along each axis.
+     *
+     * @return the resolution of the grid
+     */
+    int[] resolution() {
+        return resolution;
+    }
+
+    /**
+     * Returns the number of cells without geometries.
+     *
+     * @return the number of empty cells
+     */
+    int emptyCells() {
+        int empty = 0;
+        for (int c = 0; c + 1 < cellStart.length; ++c)
+            if (cellStart[c] == cellStart[c + 1]) ++empty;
+        return empty;
+    }
+
+    /**
+     * Returns the number of references from cells to geometries.
+     *
+     * @return the number of references
+     */
+    int references() {
+        return items.length;
+    }
+
+    /**
+     * Returns the number of nested grids.
+     *
+     * @return the number of nested grids
+     */
+    int nestedGrids() {
+        int count = 0;
+        if (nested != null)
+            for (Grid grid : nested) if (grid != null) ++count;
+        return count;
+    }
+
+    @Override
+    public List<GeoPoint> findGeoIntersections(Ray ray) {
+        Mailbox mailbox = mailboxes.get();
+        if (++mailbox.ray == 0) { // the ray numbers wrapped around
+            Arrays.fill(mailbox.stamps, 0);
+            mailbox.ray = 1;
+        }
+        Point head = ray.getHead();
+        Vector direction = ray.getDirection();
+        return traverse(ray, new double[]{head.getX(), head.getY(), head.getZ()},
+                new double[]{direction.getX(), direction.getY(), direction.getZ()}, mailbox, null);
+    }
+
+    /**
+     * Walks a ray through the cells of the grid by 3D-DDA, collecting the intersections of the geometries in
+     * the cells which the current ray has not tested yet.
+     *
+     * @param ray       the ray
+     * @param origin    the ray head coordinates
+     * @param direction the ray direction coordinates
+     * @param mailbox   the mailbox of the thread
+     * @param result    the intersections found so far, or null
+     * @return the intersections found so far, or null if there are none
+     */
+    private List<GeoPoint> traverse(Ray ray, double[] origin, double[] direction, Mailbox mailbox,
+                                    List<GeoPoint> result) {
+        // clip the ray by the box of the grid
+        double near = 0, far = Double.POSITIVE_INFINITY;
+        for (int a = 0; a < 3; ++a) {
+            if (direction[a] == 0) {
+                if (origin[a] < bounds[a] || origin[a] > bounds[a + 3]) return result;
+                continue;
+            }
+            double t0 = (bounds[a] - origin[a]) / direction[a], t1 = (bounds[a + 3] - origin[a]) / direction[a];
+            near = Math.max(near, Math.min(t0, t1));
+            far = Math.min(far, Math.max(t0, t1));
+        }
+        if (near > far) return result;
+
+        // the cell where the ray enters the grid, and the distances to the next cell boundary along each axis
+        int[] cell = new int[3], step = new int[3];
+        double[] next = new double[3], delta = new double[3];
+        for (int a = 0; a < 3; ++a) {
+            cell[a] = cellIndex(a, origin[a] + direction[a] * near);
+            if (direction[a] > 0) {
+                step[a] = 1;
+                delta[a] = cellSize[a] / direction[a];
+                next[a] = (bounds[a] + (cell[a] + 1) * cellSize[a] - origin[a]) / direction[a];
+            } else if (direction[a] < 0) {
+                step[a] = -1;
+                delta[a] = -cellSize[a] / direction[a];
+                next[a] = (bounds[a] + cell[a] * cellSize[a] - origin[a]) / direction[a];
+            } else {
+                next[a] = delta[a] = Double.POSITIVE_INFINITY;
+            }
+        }
+
+        while (true) {
+            int c = (cell[2] * resolution[1] + cell[1]) * resolution[0] + cell[0];
+            if (nested != null && nested[c] != null)
+                result = nested[c].traverse(ray, origin, direction, mailbox, result);
+            else
+                for (int i = cellStart[c]; i < cellStart[c + 1]; ++i) {
+                    int g = items[i];
+                    if (mailbox.stamps[g] == mailbox.ray) continue;
+                    mailbox.stamps[g] = mailbox.ray;
+                    List<GeoPoint> intersections = geometries[g].findGeoIntersections(ray);
+                    if (intersections != null && !intersections.isEmpty()) {
+                        if (result == null) result = new LinkedList<>(intersections);
+                        else result.addAll(intersections);
+                    }
+                }
+
+            int a = next[0] < next[1] ? (next[0] < next[2] ? 0 : 2) : (next[1] < next[2] ? 1 : 2);
+            if (next[a] > far) return result;
+            cell[a] += step[a];
+            if (cell[a] < 0 || cell[a] >= resolution[a]) return result;
+            next[a] += delta[a];
+        }
+    }
+}
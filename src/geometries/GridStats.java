@@ -0,0 +1,45 @@
+package geometries;
+
+/**
+ * The build time and the occupancy of a grid.
+ *
+ * @param buildNanos  the time of the build in nanoseconds
+ * @param resolutionX the number of cells along the x axis
+ * @param resolutionY the number of cells along the y axis
+ * @param resolutionZ the number of cells along the z axis
+ * @param references  the number of references from cells to geometries (a geometry overlapping several
+ *                    cells is referenced by each of them)
+ * @param emptyCells  the number of cells without geometries
+ * @param nestedGrids the number of crowded cells with nested grids of their own
+ */
+public record GridStats(long buildNanos, int resolutionX, int resolutionY, int resolutionZ, int references,
+                        int emptyCells, int nestedGrids) {
+    /**
+     * Measures a grid.
+     *
+     * @param grid       the grid
+     * @param buildNanos the build time in nanoseconds
+     * @return the statistics of the grid
+     */
+    static GridStats of(Grid grid, long buildNanos) {
+        int[] resolution = grid.resolution();
+        return new GridStats(buildNanos, resolution[0], resolution[1], resolution[2], grid.references(),
+                grid.emptyCells(), grid.nestedGrids());
+    }
+
+    /**
+     * Returns the number of cells of the grid.
+     *
+     * @return the number of cells
+     */
+    public int cells() {
+        return resolutionX * resolutionY * resolutionZ;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%dx%dx%d cells, %.0f%% empty, %d references, %d nested grids, %.1f ms to build",
+                resolutionX, resolutionY, resolutionZ, 100.0 * emptyCells / cells(), references, nestedGrids,
+                buildNanos / 1e6);
+    }
+}
@@ -0,0 +1,176 @@
+package geometries;
+
+import primitives.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An instance of a shared geometry placed in the scene by an affine transformation. The shared geometry
+ * (typically a mesh in its own accelerated {@link Geometries}) is stored once, however many instances
+ * reference it: rays are transformed into the space of the geometry instead of transforming the geometry.
+ * An instance may override the material and the emission of the geometry.
+ * <p>
+ * Instances are bounded, so a collection of instances can be accelerated as well - a two level hierarchy
+ * with a top level over the instances and a bottom level per shared mesh:
+ * <pre>{@code
+ * Geometries can = Stl.ConvertStlToGeometrys(...);
+ * can.buildHierarchy();
+ * for (int i = 0; i < 1000; ++i)
+ *     scene.geometries.add(new Instance(can, Transform.translation(i % 50 * 3, 0, i / 50 * 3)));
+ * scene.geometries.buildHierarchy();
+ * }</pre>
+ * </p>
+ */
+public class Instance extends Intersectable {
+    /**
+     * The shared geometry
+     */
+    private final Intersectable target;
+    /**
+     * The transformation from the space of the shared geometry to the scene
+     */
+    private final Transform transform;
+    /**
+     * The material overriding the material of the geometry, or null to keep it
+     */
+    private Material material = null;
+    /**
+     * The emission overriding the emission of the geometry, or null to keep it
+     */
+    private Color emission = null;
+
+    /**
+     * A geometry of the shared geometry as seen through the instance: the normal is transformed to the scene
+     * and the instance overrides are applied. A hit geometry is created for every intersection, so hit
+     * geometries of the same instance and geometry are equal.
+     */
+    private static final class Hit extends Geometry {
+        /**
+         * The instance
+         */
+        private final Instance instance;
+        /**
+         * The intersected geometry, in the space of the shared geometry
+         */
+        private final Geometry geometry;
+
+        /**
+         * Constructs the hit geometry of an intersection.
+         *
+         * @param instance the instance
+         * @param geometry the intersected geometry
+         */
+        Hit(Instance instance, Geometry geometry) {
+            this.instance = instance;
+            this.geometry = geometry;
+        }
+
+        @Override
+        public Vector getNormal(Point point) {
+            Transform transform = instance.transform;
+            return transform.applyToNormal(geometry.getNormal(transform.applyInverse(point)));
+        }
+
+        @Override
+        public Material getMaterial() {
+            return instance.material == null ? geometry.getMaterial() : instance.material;
+        }
+
+        @Override
+        public Color getEmission() {
+            return instance.emission == null ? geometry.getEmission() : instance.emission;
+        }
+
+        @Override
+        protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
+            throw new UnsupportedOperationException("The hit geometry of an instance is not intersectable");
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            return obj instanceof Hit other && instance == other.instance && geometry.equals(other.geometry);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(instance) + geometry.hashCode();
+        }
+    }
+
+    /**
+     * Constructs an instance of a shared geometry.
+     *
+     * @param target    the shared geometry
+     * @param transform the transformation from the space of the geometry to the scene
+     */
+    public Instance(Intersectable target, Transform transform) {
+        this.target = target;
+        this.transform = transform;
+    }
+
+    /**
+     * Returns the shared geometry.
+     *
+     * @return the shared geometry
+     */
+    public Intersectable getTarget() {
+        return target;
+    }
+
+    /**
+     * Returns the transformation of the instance.
+     *
+     * @return the transformation from the space of the shared geometry to the scene
+     */
+    public Transform getTransform() {
+        return transform;
+    }
+
+    /**
+     * Overrides the material of the shared geometry in this instance.
+     *
+     * @param material the material, or null to keep the material of the geometry
+     * @return this instance
+     */
+    public Instance setMaterial(Material material) {
+        this.material = material;
+        return this;
+    }
+
+    /**
+     * Overrides the emission of the shared geometry in this instance.
+     *
+     * @param emission the emission color, or null to keep the emission of the geometry
+     * @return this instance
+     */
+    public Instance setEmission(Color emission) {
+        this.emission = emission;
+        return this;
+    }
+
+    @Override
+    protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
+        Ray local = new Ray(transform.applyInverse(ray.getHead()), transform.applyInverseToVector(ray.getDirection()));
+        List<GeoPoint> intersections = target.findGeoIntersections(local);
+        if (intersections == null || intersections.isEmpty()) return null;
+
+        List<GeoPoint> result = new ArrayList<>(intersections.size());
+        for (GeoPoint gp : intersections)
+            result.add(new GeoPoint(new Hit(this, gp.geometry), transform.apply(gp.point)));
+        return result;
+    }
+
+    /**
+     * Returns the bounding box of the transformed shared geometry. The box is recomputed on every call,
+     * so an instance follows a shared geometry that has been changed and refitted.
+     *
+     * @return the bounding box, or null if the shared geometry is unbounded
+     */
+    @Override
+    public BoundingBox getBoundingBox() {
+        BoundingBox box = target.getBoundingBox();
+        return box == null ? null : transform.apply(box);
+    }
+}
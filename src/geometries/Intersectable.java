@@ -9,6 +9,41 @@ import java.util.List;
  * Implementations of this interface should define the specific intersection logic for the geometric shape.
  */
 public abstract class Intersectable {
+    /**
+     * The number of intersection tests performed by each thread, for cost diagnostics.
+     */
+    private static final ThreadLocal<long[]> intersectionTests = ThreadLocal.withInitial(() -> new long[1]);
+    /**
+     * The number of the clients currently counting the intersection tests
+     */
+    private static int testCounters = 0;
+    /**
+     * Whether the intersection tests are counted, so that renders that don't need the counts don't pay
+     * for them
+     */
+    private static volatile boolean countingTests = false;
+
+    /**
+     * Starts or stops counting the intersection tests for a client (e.g. a render in diagnostics mode).
+     * The tests are counted as long as any client counts them; every start must be followed by a stop.
+     *
+     * @param count true to start counting, false to stop
+     */
+    public static synchronized void countIntersectionTests(boolean count) {
+        testCounters = Math.max(0, testCounters + (count ? 1 : -1));
+        countingTests = testCounters > 0;
+    }
+
+    /**
+     * Returns the number of intersection tests (of geometries and of collections alike) the current thread
+     * has performed so far. The difference between two calls is the number of tests performed in between,
+     * while the tests are counted (see {@link #countIntersectionTests(boolean)}).
+     *
+     * @return the number of intersection tests performed by the current thread
+     */
+    public static long getIntersectionTests() {
+        return intersectionTests.get()[0];
+    }
 
     /**
      * Finds the intersection points of a given ray with the geometric object.
@@ -31,6 +66,7 @@ public abstract class Intersectable {
      * If there are no intersections, null is returned.
      */
     public final List<GeoPoint> findGeoIntersections(Ray ray) {
+        if (countingTests) ++intersectionTests.get()[0];
         return findGeoIntersectionsHelper(ray);
     }
 
@@ -44,6 +80,15 @@ public abstract class Intersectable {
      */
     protected abstract List<GeoPoint> findGeoIntersectionsHelper(Ray ray);
 
+    /**
+     * Returns the axis aligned bounding box of the object.
+     *
+     * @return the bounding box, or null if the object is unbounded (e.g. a plane or an infinite tube)
+     */
+    public BoundingBox getBoundingBox() {
+        return null;
+    }
+
     /**
      * Represents a geometric intersection point consisting of a geometry and a point in 3D space.
      */
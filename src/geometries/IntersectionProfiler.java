@@ -0,0 +1,233 @@
+package geometries;
+
+import primitives.BoundingBox;
+import primitives.Ray;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Attributes intersection cost to the individual geometries of a collection. The profiler replaces every
+ * geometry in the collection (and in its nested collections) by a probe counting the intersection tests
+ * and the hits of the geometry. One test out of {@value #SAMPLE_RATE} (of each thread) is also timed and
+ * tested against the geometry's bounding box, to estimate the intersection time and the tightness of the
+ * box at a small overhead.
+ * <p>
+ * The probes return the intersections of the geometries themselves, so rendering is not affected.
+ * The collection must not be rendered while it is being instrumented or restored.
+ * </p>
+ */
+public class IntersectionProfiler {
+    /**
+     * One test out of this many is timed (must be a power of 2)
+     */
+    static final int SAMPLE_RATE = 16;
+    /**
+     * The number of probe tests performed by each thread, for choosing the sampled tests
+     */
+    private static final ThreadLocal<long[]> probeTests = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * The intersection statistics of a geometry.
+     *
+     * @param geometry       the geometry
+     * @param tests          the number of intersection tests of the geometry
+     * @param hits           the number of tests that found intersections
+     * @param nanos          the estimated total intersection time in nanoseconds
+     * @param sampledHits    the number of sampled tests that found intersections
+     * @param sampledBoxHits the number of sampled tests whose ray hit the bounding box
+     */
+    public record Stats(Intersectable geometry, long tests, long hits, long nanos,
+                        long sampledHits, long sampledBoxHits) {
+        /**
+         * The fraction of the tests that found intersections
+         *
+         * @return the hit rate, 0 if the geometry was not tested
+         */
+        public double hitRate() {
+            return tests == 0 ? 0 : (double) hits / tests;
+        }
+
+        /**
+         * The fraction of the rays hitting the bounding box that hit the geometry as well.
+         * A loose box (e.g. of a long diagonal polygon) makes a bounding volume hierarchy test the geometry
+         * itself for many rays that miss it.
+         *
+         * @return the tightness of the bounding box, or NaN if the geometry is unbounded or no sampled ray
+         * hit the box
+         */
+        public double boxTightness() {
+            return sampledBoxHits == 0 ? Double.NaN : (double) sampledHits / sampledBoxHits;
+        }
+    }
+
+    /**
+     * A geometry wrapped with counters.
+     */
+    private static class Probe extends Intersectable {
+        /**
+         * The profiled geometry
+         */
+        private final Intersectable target;
+        /**
+         * The bounding box of the geometry, or null if it is unbounded
+         */
+        private final BoundingBox box;
+        /**
+         * The number of tests
+         */
+        private final LongAdder tests = new LongAdder();
+        /**
+         * The number of hits
+         */
+        private final LongAdder hits = new LongAdder();
+        /**
+         * The time of the sampled tests in nanoseconds
+         */
+        private final LongAdder sampledNanos = new LongAdder();
+        /**
+         * The number of sampled tests
+         */
+        private final LongAdder samples = new LongAdder();
+        /**
+         * The number of sampled tests that hit the geometry
+         */
+        private final LongAdder sampledHits = new LongAdder();
+        /**
+         * The number of sampled tests that hit the bounding box
+         */
+        private final LongAdder sampledBoxHits = new LongAdder();
+
+        /**
+         * Constructs a probe of a geometry.
+         *
+         * @param target the geometry
+         */
+        Probe(Intersectable target) {
+            this.target = target;
+            this.box = target.getBoundingBox();
+        }
+
+        @Override
+        protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
+            tests.increment();
+            if ((++probeTests.get()[0] & (SAMPLE_RATE - 1)) != 0) {
+                List<GeoPoint> intersections = target.findGeoIntersectionsHelper(ray);
+                if (isHit(intersections)) hits.increment();
+                return intersections;
+            }
+
+            long start = System.nanoTime();
+            List<GeoPoint> intersections = target.findGeoIntersectionsHelper(ray);
+            sampledNanos.add(System.nanoTime() - start);
+            samples.increment();
+            if (isHit(intersections)) {
+                hits.increment();
+                sampledHits.increment();
+            }
+            if (box != null && box.intersects(ray)) sampledBoxHits.increment();
+            return intersections;
+        }
+
+        @Override
+        public BoundingBox getBoundingBox() {
+            return box;
+        }
+
+        /**
+         * Checks whether a test found intersections (some geometries return an empty list for a miss).
+         *
+         * @param intersections the result of the test
+         * @return true if there are intersections
+         */
+        private static boolean isHit(List<GeoPoint> intersections) {
+            return intersections != null && !intersections.isEmpty();
+        }
+
+        /**
+         * Returns the statistics of the geometry so far.
+         *
+         * @return the statistics
+         */
+        Stats stats() {
+            long sampled = samples.sum();
+            long count = tests.sum();
+            long nanos = sampled == 0 ? 0 : Math.round((double) sampledNanos.sum() / sampled * count);
+            return new Stats(target, count, hits.sum(), nanos, sampledHits.sum(), sampledBoxHits.sum());
+        }
+    }
+
+    /**
+     * The profiled collection
+     */
+    private final Geometries root;
+    /**
+     * The probes of all the geometries
+     */
+    private final List<Probe> probes = new ArrayList<>();
+
+    /**
+     * Instruments every geometry of a collection, including the geometries of its nested collections.
+     *
+     * @param root the collection
+     */
+    public IntersectionProfiler(Geometries root) {
+        this.root = root;
+        instrument(root);
+    }
+
+    /**
+     * Replaces the geometries of a collection by probes, recursively.
+     *
+     * @param geometries the collection
+     */
+    private void instrument(Geometries geometries) {
+        for (ListIterator<Intersectable> iterator = geometries.geometries.listIterator(); iterator.hasNext(); ) {
+            Intersectable geometry = iterator.next();
+            if (geometry instanceof Geometries nested)
+                instrument(nested);
+            else if (!(geometry instanceof Probe)) {
+                Probe probe = new Probe(geometry);
+                probes.add(probe);
+                iterator.set(probe);
+            }
+        }
+        geometries.geometriesReplaced();
+    }
+
+    /**
+     * Returns the statistics of all the geometries, the most expensive first.
+     *
+     * @return the statistics of the geometries
+     */
+    public List<Stats> getStats() {
+        List<Stats> stats = new ArrayList<>();
+        for (Probe probe : probes) stats.add(probe.stats());
+        stats.sort(Comparator.comparingLong(Stats::nanos).reversed());
+        return stats;
+    }
+
+    /**
+     * Puts the original geometries back in place of the probes.
+     */
+    public void restore() {
+        restore(root);
+    }
+
+    /**
+     * Puts the original geometries of a collection back in place of the probes, recursively.
+     *
+     * @param geometries the collection
+     */
+    private static void restore(Geometries geometries) {
+        for (ListIterator<Intersectable> iterator = geometries.geometries.listIterator(); iterator.hasNext(); ) {
+            Intersectable geometry = iterator.next();
+            if (geometry instanceof Geometries nested) restore(nested);
+            else if (geometry instanceof Probe probe) iterator.set(probe.target);
+        }
+        geometries.geometriesReplaced();
+    }
+}
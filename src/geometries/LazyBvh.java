@@ -0,0 +1,214 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import geometries.Intersectable.GeoPoint;
+
+/**
+ * Bounding volume hierarchy built on demand: a node is split (by the binned SAH, as {@link Bvh} does) only
+ * when a ray first reaches it, so the preparation before the first pixel is a single pass over the
+ * geometries' boxes, and the regions no ray reaches are never refined. Quick previews of huge scenes start
+ * at once, while the regions in view converge to the hierarchy a full build would produce.
+ * <p>
+ * Rays of several threads may reach an unsplit node together: the first one splits it under the node's
+ * lock, reordering only the node's own range of geometries, and publishes the children by a volatile write,
+ * which the others read before they traverse the children.
+ * </p>
+ */
+class LazyBvh implements Accelerator {
+    /**
+     * The children of a leaf
+     */
+    private static final Node[] LEAF = new Node[0];
+
+    /**
+     * A node of the hierarchy, covering a consecutive range of the order array.
+     */
+    private static final class Node {
+        /**
+         * The box of the node
+         */
+        final double[] box;
+        /**
+         * The range of the node in the order array
+         */
+        final int from, to;
+        /**
+         * The two children of an inner node, {@link #LEAF} for a leaf, or null until the node is split
+         */
+        volatile Node[] children = null;
+
+        /**
+         * Constructs an unsplit node.
+         *
+         * @param box  the box of the node
+         * @param from the first index of the node's range
+         * @param to   the index after the node's range
+         */
+        Node(double[] box, int from, int to) {
+            this.box = box;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * The geometries
+     */
+    private final Intersectable[] geometries;
+    /**
+     * The boxes of the geometries, 6 values per geometry
+     */
+    private final double[] boxes;
+    /**
+     * The centroids of the geometries' boxes, 3 values per geometry
+     */
+    private final double[] centroids;
+    /**
+     * The geometry indexes, ordered so that every node's geometries are consecutive
+     */
+    private final int[] order;
+    /**
+     * The root of the hierarchy
+     */
+    private final Node root;
+    /**
+     * The number of nodes split so far
+     */
+    private final AtomicInteger splits = new AtomicInteger();
+
+    /**
+     * Prepares a hierarchy over bounded geometries, without splitting any node.
+     *
+     * @param geometries the geometries, all with bounding boxes
+     */
+    LazyBvh(List<Intersectable> geometries) {
+        this.geometries = geometries.toArray(new Intersectable[0]);
+        int n = this.geometries.length;
+        boxes = new double[6 * n];
+        centroids = new double[3 * n];
+        order = new int[n];
+        double[] box = Bvh.emptyBox();
+        for (int i = 0; i < n; ++i) {
+            Bvh.setBox(boxes, i, this.geometries[i].getBoundingBox());
+            Bvh.grow(box, boxes, i);
+            for (int a = 0; a < 3; ++a) centroids[3 * i + a] = (boxes[6 * i + a] + boxes[6 * i + a + 3]) / 2;
+            order[i] = i;
+        }
+        root = new Node(box, 0, n);
+    }
+
+    /**
+     * Returns the number of nodes split so far.
+     *
+     * @return the number of inner nodes
+     */
+    int splits() {
+        return splits.get();
+    }
+
+    @Override
+    public double[] bounds() {
+        return root.box;
+    }
+
+    /**
+     * Returns the children of a node, splitting it if no ray reached it before.
+     *
+     * @param node the node
+     * @return the two children, or {@link #LEAF} for a leaf
+     */
+    private Node[] children(Node node) {
+        Node[] children = node.children;
+        if (children != null) return children;
+        synchronized (node) {
+            if (node.children != null) return node.children;
+            int mid = Bvh.split(boxes, centroids, order, node.from, node.to, node.box);
+            if (mid < 0) children = LEAF;
+            else {
+                children = new Node[]{new Node(rangeBox(node.from, mid), node.from, mid),
+                        new Node(rangeBox(mid, node.to), mid, node.to)};
+                splits.incrementAndGet();
+            }
+            node.children = children;
+            return children;
+        }
+    }
+
+    /**
+     * Returns the box of a range of the order array.
+     *
+     * @param from the first index of the range
+     * @param to   the index after the range
+     * @return the box of the geometries of the range
+     */
+    private double[] rangeBox(int from, int to) {
+        double[] box = Bvh.emptyBox();
+        for (int i = from; i < to; ++i) Bvh.grow(box, boxes, order[i]);
+        return box;
+    }
+
+    @Override
+    public List<GeoPoint> findGeoIntersections(Ray ray) {
+        Point head = ray.getHead();
+        Vector direction = ray.getDirection();
+        double[] origin = {head.getX(), head.getY(), head.getZ()};
+        double[] inverse = {1 / direction.getX(), 1 / direction.getY(), 1 / direction.getZ()};
+        return intersect(root, ray, origin, inverse, null);
+    }
+
+    /**
+     * Collects the intersections of a ray with the geometries of a subtree, splitting the nodes it reaches.
+     *
+     * @param node    the root of the subtree
+     * @param ray     the ray
+     * @param origin  the ray head coordinates
+     * @param inverse the inverse of the ray direction coordinates
+     * @param result  the intersections found so far, or null
+     * @return the intersections found so far, or null if there are none
+     */
+    private List<GeoPoint> intersect(Node node, Ray ray, double[] origin, double[] inverse, List<GeoPoint> result) {
+        if (!hits(node.box, origin, inverse)) return result;
+        Node[] children = children(node);
+        if (children != LEAF)
+            return intersect(children[1], ray, origin, inverse, intersect(children[0], ray, origin, inverse, result));
+        for (int i = node.from; i < node.to; ++i) {
+            List<GeoPoint> intersections = geometries[order[i]].findGeoIntersections(ray);
+            if (intersections != null && !intersections.isEmpty()) {
+                if (result == null) result = new LinkedList<>(intersections);
+                else result.addAll(intersections);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The slab test of a ray against a box, in front of the ray head.
+     *
+     * @param box     the box (6 values)
+     * @param origin  the ray head coordinates
+     * @param inverse the inverse of the ray direction coordinates
+     * @return true if the ray hits the box
+     */
+    private static boolean hits(double[] box, double[] origin, double[] inverse) {
+        double near = 0, far = Double.POSITIVE_INFINITY;
+        for (int a = 0; a < 3; ++a) {
+            double t0 = (box[a] - origin[a]) * inverse[a], t1 = (box[a + 3] - origin[a]) * inverse[a];
+            if (t0 > t1) {
+                double t = t0;
+                t0 = t1;
+                t1 = t;
+            }
+            // comparisons ignore the NaN of a ray parallel to a face and on its plane
+            if (t0 > near) near = t0;
+            if (t1 < far) far = t1;
+        }
+        return near <= far;
+    }
+}
@@ -0,0 +1,493 @@
+package geometries;
+
+import primitives.*;
+import profiling.ScenePreparationEvent;
+
+import java.io.IOException;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static primitives.Util.alignZero;
+
+/**
+ * A triangle mesh stored in a single compact buffer instead of an object per triangle: the vertex
+ * coordinates, the vertex indexes of the triangles and the flat hierarchy over the triangles (see
+ * {@link FlatBvh}). The buffer may be allocated outside the heap, so that a huge mesh neither inflates the
+ * heap nor the garbage collection pauses of a long render, or mapped from a file written by
+ * {@link #save(Path)}, so that loading a mesh costs no parsing and the operating system shares its pages.
+ * A mesh buffer is limited to 2 GB, about 40 million triangles.
+ * <p>
+ * The intersection kernel reads the buffer directly. A hit reports a lightweight face geometry, created per
+ * intersection, which computes the normal of its triangle and has the material and the emission of the mesh.
+ * </p>
+ */
+public class Mesh extends Intersectable {
+    /**
+     * The first bytes of a mesh file ("MESH")
+     */
+    private static final int MAGIC = 0x4D455348;
+    /**
+     * The version of the mesh file layout
+     */
+    private static final int VERSION = 1;
+    /**
+     * The size of the header of the buffer in bytes: magic, version, vertex, triangle and node counts, padding
+     */
+    private static final int HEADER = 32;
+
+    /**
+     * The whole storage of the mesh: the header followed by the sections viewed by the buffers below
+     */
+    private final ByteBuffer data;
+    /**
+     * The vertex coordinates, 3 per vertex
+     */
+    private final DoubleBuffer vertices;
+    /**
+     * The vertex indexes of the triangles, 3 per triangle, in the order of the hierarchy's leaves
+     */
+    private final IntBuffer triangles;
+    /**
+     * The boxes of the hierarchy's nodes, 6 per node, in depth-first order
+     */
+    private final FloatBuffer bounds;
+    /**
+     * The links of the hierarchy's nodes, 2 per node: the right child and 0 for an inner node, the first
+     * triangle and the number of triangles for a leaf
+     */
+    private final IntBuffer links;
+    /**
+     * The statistics of the hierarchy build, or null for a mapped mesh
+     */
+    private final BvhStats stats;
+    /**
+     * The material of the mesh
+     */
+    private Material material = new Material();
+    /**
+     * The emission of the mesh
+     */
+    private Color emission = Color.BLACK;
+
+    /**
+     * A triangle of the mesh, as reported by an intersection. Faces of the same mesh and triangle are equal.
+     */
+    private static final class Face extends Geometry {
+        /**
+         * The mesh
+         */
+        private final Mesh mesh;
+        /**
+         * The index of the triangle in the mesh
+         */
+        private final int triangle;
+
+        /**
+         * Constructs the face of an intersection.
+         *
+         * @param mesh     the mesh
+         * @param triangle the index of the triangle
+         */
+        Face(Mesh mesh, int triangle) {
+            this.mesh = mesh;
+            this.triangle = triangle;
+        }
+
+        @Override
+        public Vector getNormal(Point point) {
+            Point p0 = mesh.vertex(triangle, 0);
+            return mesh.vertex(triangle, 1).subtract(p0).crossProduct(mesh.vertex(triangle, 2).subtract(p0))
+                    .normalize();
+        }
+
+        @Override
+        public Material getMaterial() {
+            return mesh.material;
+        }
+
+        @Override
+        public Color getEmission() {
+            return mesh.emission;
+        }
+
+        @Override
+        protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
+            throw new UnsupportedOperationException("The face of a mesh is not intersectable by itself");
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            return obj instanceof Face other && mesh == other.mesh && triangle == other.triangle;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(mesh) + triangle;
+        }
+    }
+
+    /**
+     * Constructs a mesh and builds the hierarchy over its triangles.
+     *
+     * @param vertices  the vertex coordinates, 3 per vertex
+     * @param triangles the vertex indexes of the triangles, 3 per triangle
+     * @param offHeap   whether the mesh is stored outside the heap
+     * @throws IllegalArgumentException if there are no triangles or a vertex index is out of range
+     */
+    public Mesh(double[] vertices, int[] triangles, boolean offHeap) {
+        if (triangles.length == 0 || triangles.length % 3 != 0 || vertices.length % 3 != 0)
+            throw new IllegalArgumentException("A mesh needs whole vertices and at least one triangle");
+        ScenePreparationEvent event = new ScenePreparationEvent();
+        event.begin();
+        long start = System.nanoTime();
+        int vertexCount = vertices.length / 3, triangleCount = triangles.length / 3;
+        double[] boxes = new double[6 * triangleCount];
+        for (int t = 0; t < triangleCount; ++t) {
+            double[] box = Bvh.emptyBox();
+            for (int k = 0; k < 3; ++k) {
+                int v = triangles[3 * t + k];
+                if (v < 0 || v >= vertexCount) throw new IllegalArgumentException("Vertex index out of range: " + v);
+                for (int a = 0; a < 3; ++a) {
+                    box[a] = Math.min(box[a], vertices[3 * v + a]);
+                    box[a + 3] = Math.max(box[a + 3], vertices[3 * v + a]);
+                }
+            }
+            System.arraycopy(box, 0, boxes, 6 * t, 6);
+        }
+        int[] order = new int[triangleCount];
+        Bvh.Node root = Bvh.buildTree(boxes, order, 0);
+        int nodes = BvhStats.of(root, 0).nodes();
+
+        int size = HEADER + 24 * vertexCount + 12 * triangleCount + 32 * nodes;
+        data = (offHeap ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size)).order(ByteOrder.LITTLE_ENDIAN);
+        data.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, vertexCount).putInt(12, triangleCount).putInt(16, nodes);
+        this.vertices = section(HEADER, 24 * vertexCount).asDoubleBuffer();
+        this.triangles = section(HEADER + 24 * vertexCount, 12 * triangleCount).asIntBuffer();
+        bounds = section(HEADER + 24 * vertexCount + 12 * triangleCount, 24 * nodes).asFloatBuffer();
+        links = section(HEADER + 24 * vertexCount + 12 * triangleCount + 24 * nodes, 8 * nodes).asIntBuffer();
+
+        this.vertices.put(0, vertices);
+        for (int i = 0; i < triangleCount; ++i)
+            for (int k = 0; k < 3; ++k) this.triangles.put(3 * i + k, triangles[3 * order[i] + k]);
+        layout(root, 0);
+        stats = BvhStats.of(root, System.nanoTime() - start);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = "mesh build";
+            event.subject = (offHeap ? "off-heap mesh, BVH " : "mesh, BVH ") + stats;
+            event.objects = triangleCount;
+            event.commit();
+        }
+    }
+
+    /**
+     * Constructs a mesh over a buffer read from a mesh file.
+     *
+     * @param data the buffer
+     * @throws IllegalArgumentException if the buffer does not hold a mesh
+     */
+    private Mesh(ByteBuffer data) {
+        this.data = data.order(ByteOrder.LITTLE_ENDIAN);
+        if (data.capacity() < HEADER || data.getInt(0) != MAGIC || data.getInt(4) != VERSION)
+            throw new IllegalArgumentException("Not a mesh file of version " + VERSION);
+        int vertexCount = data.getInt(8), triangleCount = data.getInt(12), nodes = data.getInt(16);
+        if (data.capacity() != HEADER + 24L * vertexCount + 12L * triangleCount + 32L * nodes)
+            throw new IllegalArgumentException("Truncated mesh file");
+        vertices = section(HEADER, 24 * vertexCount).asDoubleBuffer();
+        triangles = section(HEADER + 24 * vertexCount, 12 * triangleCount).asIntBuffer();
+        bounds = section(HEADER + 24 * vertexCount + 12 * triangleCount, 24 * nodes).asFloatBuffer();
+        links = section(HEADER + 24 * vertexCount + 12 * triangleCount + 24 * nodes, 8 * nodes).asIntBuffer();
+        stats = null;
+    }
+
+    /**
+     * Constructs a mesh of triangles, sharing the vertices common to several triangles. The material and the
+     * emission of the triangles are not kept.
+     *
+     * @param triangles the triangles
+     * @param offHeap   whether the mesh is stored outside the heap
+     * @return the mesh
+     */
+    public static Mesh of(List<? extends Polygon> triangles, boolean offHeap) {
+        record Key(double x, double y, double z) {
+        }
+        Map<Key, Integer> indexes = new HashMap<>();
+        List<Point> points = new ArrayList<>();
+        int[] indexArray = new int[3 * triangles.size()];
+        int i = 0;
+        for (Polygon triangle : triangles) {
+            if (triangle.vertices.size() != 3) throw new IllegalArgumentException("A mesh is made of triangles");
+            for (Point p : triangle.vertices) {
+                indexArray[i++] = indexes.computeIfAbsent(new Key(p.getX(), p.getY(), p.getZ()), key -> {
+                    points.add(p);
+                    return points.size() - 1;
+                });
+            }
+        }
+        double[] coordinates = new double[3 * points.size()];
+        for (int v = 0; v < points.size(); ++v) {
+            coordinates[3 * v] = points.get(v).getX();
+            coordinates[3 * v + 1] = points.get(v).getY();
+            coordinates[3 * v + 2] = points.get(v).getZ();
+        }
+        return new Mesh(coordinates, indexArray, offHeap);
+    }
+
+    /**
+     * Maps a mesh file written by {@link #save(Path)} into memory. The mesh is read from the file on demand by
+     * the operating system, and takes no heap.
+     *
+     * @param file the path of the file
+     * @return the mesh
+     * @throws IOException              if the file can't be read
+     * @throws IllegalArgumentException if the file does not hold a mesh
+     */
+    public static Mesh map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new Mesh(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes the mesh, with its hierarchy, to a file which {@link #map(Path)} maps back.
+     *
+     * @param file the path of the file
+     * @throws IOException if the file can't be written
+     */
+    public void save(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer all = data.duplicate().clear();
+            while (all.hasRemaining()) channel.write(all);
+        }
+    }
+
+    /**
+     * Returns a section of the storage.
+     *
+     * @param offset the offset of the section in bytes
+     * @param length the length of the section in bytes
+     * @return the section, in the byte order of the storage
+     */
+    private ByteBuffer section(int offset, int length) {
+        return data.slice(offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Lays out a subtree of the hierarchy in depth-first order, as {@link FlatBvh} does.
+     *
+     * @param node  the root of the subtree
+     * @param index the index of the root in the layout
+     * @return the index after the subtree
+     */
+    private int layout(Bvh.Node node, int index) {
+        for (int a = 0; a < 3; ++a) {
+            bounds.put(6 * index + a, Math.nextDown((float) node.box[a]));
+            bounds.put(6 * index + a + 3, Math.nextUp((float) node.box[a + 3]));
+        }
+        if (node.isLeaf()) {
+            links.put(2 * index, node.first);
+            links.put(2 * index + 1, node.count);
+            return index + 1;
+        }
+        int right = layout(node.left, index + 1);
+        links.put(2 * index, right);
+        return layout(node.right, right);
+    }
+
+    /**
+     * Returns a vertex of a triangle.
+     *
+     * @param triangle the index of the triangle
+     * @param k        the index of the vertex in the triangle (0 to 2)
+     * @return the vertex
+     */
+    private Point vertex(int triangle, int k) {
+        int v = 3 * triangles.get(3 * triangle + k);
+        return new Point(vertices.get(v), vertices.get(v + 1), vertices.get(v + 2));
+    }
+
+    /**
+     * Returns the number of triangles of the mesh.
+     *
+     * @return the number of triangles
+     */
+    public int size() {
+        return triangles.limit() / 3;
+    }
+
+    /**
+     * Checks whether the mesh is stored outside the heap (allocated off-heap or mapped from a file).
+     *
+     * @return true if the storage is off-heap
+     */
+    public boolean isOffHeap() {
+        return data.isDirect();
+    }
+
+    /**
+     * Returns the size of the storage of the mesh.
+     *
+     * @return the size in bytes
+     */
+    public long getStorageBytes() {
+        return data.capacity();
+    }
+
+    /**
+     * Returns the statistics of the hierarchy over the triangles.
+     *
+     * @return the build statistics, or null for a mesh mapped from a file
+     */
+    public BvhStats getHierarchyStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the material of the mesh.
+     *
+     * @return the material
+     */
+    public Material getMaterial() {
+        return material;
+    }
+
+    /**
+     * Sets the material of all the triangles of the mesh.
+     *
+     * @param material the material
+     * @return this mesh
+     */
+    public Mesh setMaterial(Material material) {
+        this.material = material;
+        return this;
+    }
+
+    /**
+     * Returns the emission of the mesh.
+     *
+     * @return the emission color
+     */
+    public Color getEmission() {
+        return emission;
+    }
+
+    /**
+     * Sets the emission of all the triangles of the mesh.
+     *
+     * @param emission the emission color
+     * @return this mesh
+     */
+    public Mesh setEmission(Color emission) {
+        this.emission = emission;
+        return this;
+    }
+
+    @Override
+    public BoundingBox getBoundingBox() {
+        return new BoundingBox(bounds.get(0), bounds.get(1), bounds.get(2), bounds.get(3), bounds.get(4),
+                bounds.get(5));
+    }
+
+    @Override
+    protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
+        Point head = ray.getHead();
+        Vector direction = ray.getDirection();
+        double[] o = {head.getX(), head.getY(), head.getZ()};
+        double[] d = {direction.getX(), direction.getY(), direction.getZ()};
+        double[] inverse = {1 / d[0], 1 / d[1], 1 / d[2]};
+
+        FlatBvh.Stack stack = FlatBvh.stack();
+        int base = stack.top;
+        List<GeoPoint> result = null;
+        try {
+            int node = 0;
+            while (true) {
+                if (hits(node, o, inverse)) {
+                    int count = links.get(2 * node + 1);
+                    if (count == 0) {
+                        stack.push(links.get(2 * node));
+                        ++node;
+                        continue;
+                    }
+                    int first = links.get(2 * node);
+                    for (int t = first; t < first + count; ++t) {
+                        GeoPoint gp = intersect(t, ray, o, d);
+                        if (gp != null) {
+                            if (result == null) result = new ArrayList<>(2);
+                            result.add(gp);
+                        }
+                    }
+                }
+                if (stack.top == base) return result;
+                node = stack.nodes[--stack.top];
+            }
+        } finally {
+            stack.top = base;
+        }
+    }
+
+    /**
+     * Intersects a ray with a triangle of the mesh by the Möller-Trumbore algorithm, excluding the edges and
+     * the vertices as {@link Triangle} does.
+     *
+     * @param triangle the index of the triangle
+     * @param ray      the ray
+     * @param o        the ray head coordinates
+     * @param d        the ray direction coordinates
+     * @return the intersection, or null if the ray misses the triangle
+     */
+    private GeoPoint intersect(int triangle, Ray ray, double[] o, double[] d) {
+        int v0 = 3 * triangles.get(3 * triangle), v1 = 3 * triangles.get(3 * triangle + 1);
+        int v2 = 3 * triangles.get(3 * triangle + 2);
+        double x0 = vertices.get(v0), y0 = vertices.get(v0 + 1), z0 = vertices.get(v0 + 2);
+        double e1x = vertices.get(v1) - x0, e1y = vertices.get(v1 + 1) - y0, e1z = vertices.get(v1 + 2) - z0;
+        double e2x = vertices.get(v2) - x0, e2y = vertices.get(v2 + 1) - y0, e2z = vertices.get(v2 + 2) - z0;
+
+        double px = d[1] * e2z - d[2] * e2y, py = d[2] * e2x - d[0] * e2z, pz = d[0] * e2y - d[1] * e2x;
+        double det = e1x * px + e1y * py + e1z * pz;
+        if (Util.isZero(det)) return null; // the ray is parallel to the triangle
+        double inverse = 1 / det;
+        double sx = o[0] - x0, sy = o[1] - y0, sz = o[2] - z0;
+        double u = alignZero((sx * px + sy * py + sz * pz) * inverse);
+        if (u <= 0 || alignZero(u - 1) >= 0) return null;
+        double qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+        double v = alignZero((d[0] * qx + d[1] * qy + d[2] * qz) * inverse);
+        if (v <= 0 || alignZero(u + v - 1) >= 0) return null;
+        double t = alignZero((e2x * qx + e2y * qy + e2z * qz) * inverse);
+        return t <= 0 ? null : new GeoPoint(new Face(this, triangle), ray.getPoint(t));
+    }
+
+    /**
+     * The slab test of a ray against the box of a node, in front of the ray head.
+     *
+     * @param node    the index of the node
+     * @param o       the ray head coordinates
+     * @param inverse the inverse of the ray direction coordinates
+     * @return true if the ray hits the box
+     */
+    private boolean hits(int node, double[] o, double[] inverse) {
+        int b = 6 * node;
+        double near = 0, far = Double.POSITIVE_INFINITY;
+        for (int a = 0; a < 3; ++a) {
+            double t0 = (bounds.get(b + a) - o[a]) * inverse[a], t1 = (bounds.get(b + a + 3) - o[a]) * inverse[a];
+            if (t0 > t1) {
+                double t = t0;
+                t0 = t1;
+                t1 = t;
+            }
+            // comparisons ignore the NaN of a ray parallel to a face and on its plane
+            if (t0 > near) near = t0;
+            if (t1 < far) far = t1;
+        }
+        return near <= far;
+    }
+}
@@ -0,0 +1,446 @@
+package geometries;
+
+import primitives.*;
+import profiling.ScenePreparationEvent;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A triangle mesh larger than the memory, rendered out of core. The mesh is partitioned once, by
+ * {@link #partition(TriangleSource, Path, int)}, into spatially compact bricks stored as {@link Mesh} files
+ * in a directory; {@link #open(Path, long)} reads only the boxes of the bricks and builds a hierarchy over
+ * them. A brick is mapped into memory when a ray first reaches its box, and the least recently used bricks
+ * are released whenever the mapped bricks exceed the residency budget.
+ * <p>
+ * A released brick is unmapped by the garbage collector once no thread uses it any more, so the budget
+ * bounds the bricks the mesh keeps, not the instant footprint. The operating system pages the mapped bricks
+ * in and out by itself, so a brick costs memory only for the pages the rays actually touch.
+ * </p>
+ */
+public class OutOfCoreMesh extends Intersectable {
+    /**
+     * The first bytes of the brick index file ("BRIK")
+     */
+    private static final int MAGIC = 0x4252494B;
+    /**
+     * The name of the brick index file in the directory of the bricks
+     */
+    static final String INDEX = "bricks.index";
+    /**
+     * The size of the per-brick write buffers of the partition, in bytes
+     */
+    private static final int FLUSH_BYTES = 1 << 16;
+
+    /**
+     * A supplier of the triangles of a mesh, which the partition reads twice.
+     */
+    @FunctionalInterface
+    public interface TriangleSource {
+        /**
+         * Reads all the triangles, in the same order on every call.
+         *
+         * @param consumer the consumer of the triangles
+         * @throws IOException if the triangles can't be read
+         */
+        void forEach(TriangleConsumer consumer) throws IOException;
+    }
+
+    /**
+     * A consumer of triangles.
+     */
+    @FunctionalInterface
+    public interface TriangleConsumer {
+        /**
+         * Consumes a triangle.
+         *
+         * @param coordinates the coordinates of the 3 vertices (9 values), valid during the call only
+         */
+        void accept(double[] coordinates);
+    }
+
+    /**
+     * A brick of the mesh, mapped on demand.
+     */
+    private final class Brick extends Intersectable {
+        /**
+         * The file of the brick
+         */
+        private final Path file;
+        /**
+         * The box of the brick
+         */
+        private final BoundingBox box;
+        /**
+         * The size of the brick file in bytes
+         */
+        private final long bytes;
+        /**
+         * The mapped mesh of the brick, or null if the brick is not resident
+         */
+        private volatile Mesh mesh = null;
+        /**
+         * The value of the use clock when the brick was last used
+         */
+        private volatile long lastUse = 0;
+
+        /**
+         * Constructs a brick.
+         *
+         * @param file  the file of the brick
+         * @param box   the box of the brick
+         * @param bytes the size of the brick file
+         */
+        Brick(Path file, BoundingBox box, long bytes) {
+            this.file = file;
+            this.box = box;
+            this.bytes = bytes;
+        }
+
+        @Override
+        protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
+            if (!box.intersects(ray)) return null; // don't map a brick sharing a leaf with the one the ray hits
+            Mesh resident = mesh;
+            if (resident == null) resident = load(this);
+            lastUse = clock.incrementAndGet();
+            return resident.findGeoIntersections(ray);
+        }
+
+        @Override
+        public BoundingBox getBoundingBox() {
+            return box;
+        }
+    }
+
+    /**
+     * The bricks of the mesh
+     */
+    private final List<Brick> bricks = new ArrayList<>();
+    /**
+     * The hierarchy over the bricks
+     */
+    private final Geometries hierarchy = new Geometries();
+    /**
+     * The maximal size of the resident bricks in bytes
+     */
+    private final long budget;
+    /**
+     * The clock of the brick uses, for the least recently used order
+     */
+    private final AtomicLong clock = new AtomicLong();
+    /**
+     * The size of the resident bricks in bytes (guarded by this mesh)
+     */
+    private long residentBytes = 0;
+    /**
+     * The number of brick mappings
+     */
+    private final AtomicLong loads = new AtomicLong();
+    /**
+     * The number of brick releases
+     */
+    private final AtomicLong evictions = new AtomicLong();
+    /**
+     * The material of the mesh
+     */
+    private volatile Material material = new Material();
+    /**
+     * The emission of the mesh
+     */
+    private volatile Color emission = Color.BLACK;
+
+    /**
+     * Opens a partitioned mesh.
+     *
+     * @param directory the directory of the bricks
+     * @param budget    the maximal size of the resident bricks in bytes (a brick larger than the budget is
+     *                  still mapped, alone)
+     */
+    private OutOfCoreMesh(Path directory, long budget) throws IOException {
+        this.budget = budget;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(directory.resolve(INDEX))))) {
+            if (in.readInt() != MAGIC) throw new IllegalArgumentException("Not a brick index: " + directory);
+            int count = in.readInt();
+            for (int i = 0; i < count; ++i) {
+                String name = in.readUTF();
+                BoundingBox box = new BoundingBox(in.readDouble(), in.readDouble(), in.readDouble(),
+                        in.readDouble(), in.readDouble(), in.readDouble());
+                Brick brick = new Brick(directory.resolve(name), box, in.readLong());
+                bricks.add(brick);
+                hierarchy.add(brick);
+            }
+        }
+        hierarchy.buildHierarchy();
+    }
+
+    /**
+     * Opens a mesh partitioned by {@link #partition(TriangleSource, Path, int)}. Only the boxes of the
+     * bricks are read.
+     *
+     * @param directory the directory of the bricks
+     * @param budget    the maximal size of the resident bricks in bytes
+     * @return the mesh
+     * @throws IOException              if the brick index can't be read
+     * @throws IllegalArgumentException if the directory holds no brick index
+     */
+    public static OutOfCoreMesh open(Path directory, long budget) throws IOException {
+        return new OutOfCoreMesh(directory, budget);
+    }
+
+    /**
+     * Partitions a mesh into bricks of about a given number of triangles, without holding the mesh in memory.
+     * A first pass over the triangles finds the box of their centroids, which is divided into a grid of about
+     * as many cells as bricks; a second pass appends every triangle to the file of the cell of its centroid.
+     * Every cell is then built into a brick with its own hierarchy. A brick of an unevenly dense region may
+     * be larger than the requested size.
+     *
+     * @param source            the triangles of the mesh
+     * @param directory         the directory receiving the bricks and their index
+     * @param trianglesPerBrick the approximate number of triangles of a brick
+     * @return the number of bricks
+     * @throws IOException if the triangles can't be read or the bricks can't be written
+     */
+    public static int partition(TriangleSource source, Path directory, int trianglesPerBrick) throws IOException {
+        ScenePreparationEvent event = new ScenePreparationEvent();
+        event.begin();
+        Files.createDirectories(directory);
+        double[] bounds = Bvh.emptyBox();
+        long[] count = {0};
+        source.forEach(coordinates -> {
+            ++count[0];
+            for (int a = 0; a < 3; ++a) {
+                double centroid = (coordinates[a] + coordinates[a + 3] + coordinates[a + 6]) / 3;
+                bounds[a] = Math.min(bounds[a], centroid);
+                bounds[a + 3] = Math.max(bounds[a + 3], centroid);
+            }
+        });
+        if (count[0] == 0) throw new IllegalArgumentException("A mesh needs at least one triangle");
+
+        // a grid of about as many cells as bricks, over the box of the centroids
+        int[] resolution = new int[3];
+        double maxExtent = 0, volume = 1;
+        int dimensions = 0;
+        for (int a = 0; a < 3; ++a) maxExtent = Math.max(maxExtent, bounds[a + 3] - bounds[a]);
+        for (int a = 0; a < 3; ++a)
+            if (bounds[a + 3] - bounds[a] > maxExtent * 1e-3) {
+                volume *= bounds[a + 3] - bounds[a];
+                ++dimensions;
+            }
+        double cells = Math.ceil((double) count[0] / trianglesPerBrick);
+        double cellsPerUnit = dimensions == 0 ? 0 : Math.pow(cells / volume, 1.0 / dimensions);
+        for (int a = 0; a < 3; ++a)
+            resolution[a] = (int) Math.max(1, Math.round((bounds[a + 3] - bounds[a]) * cellsPerUnit));
+
+        ByteArrayOutputStream[] buffers = new ByteArrayOutputStream[resolution[0] * resolution[1] * resolution[2]];
+        IOException[] failure = {null};
+        source.forEach(coordinates -> {
+            int cell = 0;
+            for (int a = 2; a >= 0; --a) {
+                double centroid = (coordinates[a] + coordinates[a + 3] + coordinates[a + 6]) / 3;
+                double extent = bounds[a + 3] - bounds[a];
+                int index = extent > 0 ? (int) ((centroid - bounds[a]) / extent * resolution[a]) : 0;
+                cell = cell * resolution[a] + Math.max(0, Math.min(resolution[a] - 1, index));
+            }
+            if (buffers[cell] == null) buffers[cell] = new ByteArrayOutputStream(FLUSH_BYTES);
+            DataOutputStream out = new DataOutputStream(buffers[cell]);
+            try {
+                for (double coordinate : coordinates) out.writeDouble(coordinate);
+                if (buffers[cell].size() >= FLUSH_BYTES) flush(directory, cell, buffers[cell]);
+            } catch (IOException e) {
+                if (failure[0] == null) failure[0] = e;
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+
+        // build every cell into a brick
+        int bricks = 0;
+        try (DataOutputStream index = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(directory.resolve(INDEX))))) {
+            int nonEmpty = 0;
+            for (ByteArrayOutputStream buffer : buffers) if (buffer != null) ++nonEmpty;
+            index.writeInt(MAGIC);
+            index.writeInt(nonEmpty);
+            for (int cell = 0; cell < buffers.length; ++cell) {
+                if (buffers[cell] == null) continue;
+                flush(directory, cell, buffers[cell]);
+                Path part = partFile(directory, cell);
+                double[] vertices = readDoubles(part);
+                Files.delete(part);
+                int[] triangles = new int[vertices.length / 3];
+                for (int i = 0; i < triangles.length; ++i) triangles[i] = i;
+                Mesh mesh = new Mesh(vertices, triangles, false);
+                String name = "brick-" + bricks++ + ".mesh";
+                mesh.save(directory.resolve(name));
+                BoundingBox box = mesh.getBoundingBox();
+                index.writeUTF(name);
+                for (double value : new double[]{box.getMinX(), box.getMinY(), box.getMinZ(),
+                        box.getMaxX(), box.getMaxY(), box.getMaxZ()})
+                    index.writeDouble(value);
+                index.writeLong(mesh.getStorageBytes());
+            }
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = "mesh partition";
+            event.subject = bricks + " bricks in " + directory;
+            event.objects = (int) Math.min(Integer.MAX_VALUE, count[0]);
+            event.commit();
+        }
+        return bricks;
+    }
+
+    /**
+     * Returns the file collecting the triangles of a cell during a partition.
+     *
+     * @param directory the directory of the bricks
+     * @param cell      the index of the cell
+     * @return the path of the file
+     */
+    private static Path partFile(Path directory, int cell) {
+        return directory.resolve("cell-" + cell + ".part");
+    }
+
+    /**
+     * Appends the buffered triangles of a cell to its file, and empties the buffer.
+     *
+     * @param directory the directory of the bricks
+     * @param cell      the index of the cell
+     * @param buffer    the buffer of the cell
+     * @throws IOException if the file can't be written
+     */
+    private static void flush(Path directory, int cell, ByteArrayOutputStream buffer) throws IOException {
+        try (OutputStream out = Files.newOutputStream(partFile(directory, cell), StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND)) {
+            buffer.writeTo(out);
+        }
+        buffer.reset();
+    }
+
+    /**
+     * Reads a file of doubles.
+     *
+     * @param file the file
+     * @return the doubles
+     * @throws IOException if the file can't be read
+     */
+    private static double[] readDoubles(Path file) throws IOException {
+        double[] values = new double[(int) (Files.size(file) / 8)];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            for (int i = 0; i < values.length; ++i) values[i] = in.readDouble();
+        }
+        return values;
+    }
+
+    /**
+     * Maps a brick, releasing the least recently used bricks beyond the budget.
+     *
+     * @param brick the brick
+     * @return the mesh of the brick
+     */
+    private synchronized Mesh load(Brick brick) {
+        if (brick.mesh != null) return brick.mesh; // mapped by another thread meanwhile
+        Mesh mesh;
+        try {
+            mesh = Mesh.map(brick.file).setMaterial(material).setEmission(emission);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't map the brick " + brick.file, e);
+        }
+        residentBytes += brick.bytes;
+        loads.incrementAndGet();
+        while (residentBytes > budget) {
+            Brick oldest = null;
+            for (Brick other : bricks)
+                if (other != brick && other.mesh != null && (oldest == null || other.lastUse < oldest.lastUse))
+                    oldest = other;
+            if (oldest == null) break;
+            oldest.mesh = null;
+            residentBytes -= oldest.bytes;
+            evictions.incrementAndGet();
+        }
+        brick.mesh = mesh;
+        return mesh;
+    }
+
+    /**
+     * Returns the number of bricks of the mesh.
+     *
+     * @return the number of bricks
+     */
+    public int getBrickCount() {
+        return bricks.size();
+    }
+
+    /**
+     * Returns the size of the resident bricks.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getResidentBytes() {
+        return residentBytes;
+    }
+
+    /**
+     * Returns the number of times bricks were mapped.
+     *
+     * @return the number of mappings
+     */
+    public long getLoads() {
+        return loads.get();
+    }
+
+    /**
+     * Returns the number of times bricks were released to respect the budget.
+     *
+     * @return the number of releases
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Sets the material of all the triangles of the mesh.
+     *
+     * @param material the material
+     * @return this mesh
+     */
+    public synchronized OutOfCoreMesh setMaterial(Material material) {
+        this.material = material;
+        for (Brick brick : bricks) {
+            Mesh mesh = brick.mesh;
+            if (mesh != null) mesh.setMaterial(material);
+        }
+        return this;
+    }
+
+    /**
+     * Sets the emission of all the triangles of the mesh.
+     *
+     * @param emission the emission color
+     * @return this mesh
+     */
+    public synchronized OutOfCoreMesh setEmission(Color emission) {
+        this.emission = emission;
+        for (Brick brick : bricks) {
+            Mesh mesh = brick.mesh;
+            if (mesh != null) mesh.setEmission(emission);
+        }
+        return this;
+    }
+
+    @Override
+    public BoundingBox getBoundingBox() {
+        return hierarchy.getBoundingBox();
+    }
+
+    @Override
+    protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray) {
+        return hierarchy.findGeoIntersections(ray);
+    }
+}
@@ -93,26 +93,4 @@ public class Plane extends Geometry {
         double t = alignZero(nQMinusP0 / nv);
         return t <= 0 ? null : List.of(new GeoPoint(this, ray.getPoint(t)));
     }
-
-    /**
-     * Finds two vectors that lie on the plane and are perpendicular to each other.
-     * These vectors can be used to describe the orientation of the plane in 3D space.
-     *
-     * @return A list of two orthogonal vectors that lie on the plane.
-     */
-    public List<Vector> findVectorsOfPlane() {
-        double nX = this.normal.getX(), nY = this.normal.getY(), nZ = this.normal.getZ();
-        Vector v1;
-        if (!isZero(nX)) {
-            v1 = new Vector(nY, -nX, 0);
-        } else if (!isZero(nY)) {
-            v1 = new Vector(0, nZ, -nY);
-        } else {
-            v1 = new Vector(-nZ, 0, nX);
-        }
-
-        Vector v2 = v1.crossProduct(this.normal);
-        return List.of(v1.normalize(), v2.normalize());
-    }
 }
-
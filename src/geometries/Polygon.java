@@ -5,6 +5,7 @@ import java.util.List;
 
 import static primitives.Util.isZero;
 
+import primitives.BoundingBox;
 import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
@@ -135,4 +136,9 @@ public class Polygon extends Geometry {
         }
         return List.of(new GeoPoint(this, intersectionPoint.point));
     }
+
+    @Override
+    public BoundingBox getBoundingBox() {
+        return new BoundingBox(vertices.toArray(new Point[0]));
+    }
 }
@@ -1,5 +1,6 @@
 package geometries;
 
+import primitives.BoundingBox;
 import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
@@ -17,7 +18,7 @@ public class Sphere extends RadialGeometry {
     /**
      * The center point of the sphere.
      */
-    private final Point center;
+    private Point center;
 
     /**
      * Constructs a sphere with the specified center point and radius.
@@ -30,6 +31,24 @@ public class Sphere extends RadialGeometry {
         this.center = center;
     }
 
+    /**
+     * Moves the sphere, e.g. between the frames of an animation. An accelerated collection containing the
+     * sphere must be updated afterward by {@link Geometries#refitHierarchy()}.
+     *
+     * @param center the new center point of the sphere
+     * @return the sphere itself
+     */
+    public Sphere setCenter(Point center) {
+        this.center = center;
+        return this;
+    }
+
+    @Override
+    public BoundingBox getBoundingBox() {
+        return new BoundingBox(center.getX() - radius, center.getY() - radius, center.getZ() - radius,
+                center.getX() + radius, center.getY() + radius, center.getZ() + radius);
+    }
+
     /**
      * Calculates the normal vector to the sphere at the specified point.
      *
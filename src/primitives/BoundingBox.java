@@ -0,0 +1,227 @@
+package primitives;
+
+/**
+ * Axis aligned bounding box - the smallest box, with faces parallel to the axes, containing a geometry.
+ * A ray that misses the box misses everything inside it, so the box is a cheap conservative test
+ * before the exact intersection of the geometry.
+ */
+public class BoundingBox {
+    /**
+     * The minimal x coordinate of the box
+     */
+    private final double minX;
+    /**
+     * The minimal y coordinate of the box
+     */
+    private final double minY;
+    /**
+     * The minimal z coordinate of the box
+     */
+    private final double minZ;
+    /**
+     * The maximal x coordinate of the box
+     */
+    private final double maxX;
+    /**
+     * The maximal y coordinate of the box
+     */
+    private final double maxY;
+    /**
+     * The maximal z coordinate of the box
+     */
+    private final double maxZ;
+
+    /**
+     * Constructs a bounding box by its extreme coordinates.
+     *
+     * @param minX the minimal x coordinate
+     * @param minY the minimal y coordinate
+     * @param minZ the minimal z coordinate
+     * @param maxX the maximal x coordinate
+     * @param maxY the maximal y coordinate
+     * @param maxZ the maximal z coordinate
+     * @throws IllegalArgumentException if a minimal coordinate is bigger than the maximal one
+     */
+    public BoundingBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        if (minX > maxX || minY > maxY || minZ > maxZ)
+            throw new IllegalArgumentException("Minimal coordinates of a bounding box must not exceed the maximal");
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+    }
+
+    /**
+     * Constructs the bounding box of a group of points.
+     *
+     * @param points the points
+     * @throws IllegalArgumentException if there are no points
+     */
+    public BoundingBox(Point... points) {
+        if (points.length == 0) throw new IllegalArgumentException("A bounding box needs at least one point");
+        double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY, z0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY, z1 = Double.NEGATIVE_INFINITY;
+        for (Point point : points) {
+            x0 = Math.min(x0, point.xyz.d1);
+            y0 = Math.min(y0, point.xyz.d2);
+            z0 = Math.min(z0, point.xyz.d3);
+            x1 = Math.max(x1, point.xyz.d1);
+            y1 = Math.max(y1, point.xyz.d2);
+            z1 = Math.max(z1, point.xyz.d3);
+        }
+        minX = x0;
+        minY = y0;
+        minZ = z0;
+        maxX = x1;
+        maxY = y1;
+        maxZ = z1;
+    }
+
+    /**
+     * The minimal x coordinate of the box
+     *
+     * @return the minimal x
+     */
+    public double getMinX() {
+        return minX;
+    }
+
+    /**
+     * The minimal y coordinate of the box
+     *
+     * @return the minimal y
+     */
+    public double getMinY() {
+        return minY;
+    }
+
+    /**
+     * The minimal z coordinate of the box
+     *
+     * @return the minimal z
+     */
+    public double getMinZ() {
+        return minZ;
+    }
+
+    /**
+     * The maximal x coordinate of the box
+     *
+     * @return the maximal x
+     */
+    public double getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * The maximal y coordinate of the box
+     *
+     * @return the maximal y
+     */
+    public double getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * The maximal z coordinate of the box
+     *
+     * @return the maximal z
+     */
+    public double getMaxZ() {
+        return maxZ;
+    }
+
+    /**
+     * Returns the center of the box.
+     *
+     * @return the center point
+     */
+    public Point center() {
+        return new Point((minX + maxX) / 2, (minY + maxY) / 2, (minZ + maxZ) / 2);
+    }
+
+    /**
+     * Returns the smallest box containing both this box and another one.
+     *
+     * @param other the other box
+     * @return the union of the boxes
+     */
+    public BoundingBox union(BoundingBox other) {
+        return new BoundingBox(Math.min(minX, other.minX), Math.min(minY, other.minY), Math.min(minZ, other.minZ),
+                Math.max(maxX, other.maxX), Math.max(maxY, other.maxY), Math.max(maxZ, other.maxZ));
+    }
+
+    /**
+     * Returns the surface area of the box. The probability that a random ray hitting a box also hits a box
+     * inside it is the ratio of their surface areas, which makes the area the cost measure of bounding
+     * volume hierarchies.
+     *
+     * @return the surface area
+     */
+    public double surfaceArea() {
+        double dx = maxX - minX, dy = maxY - minY, dz = maxZ - minZ;
+        return 2 * (dx * dy + dy * dz + dz * dx);
+    }
+
+    /**
+     * Checks whether a ray passes through the box (the slab test), in front of its head.
+     *
+     * @param ray the ray
+     * @return true if the ray hits the box or starts inside it
+     */
+    public boolean intersects(Ray ray) {
+        return intersects(ray, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Checks whether a ray passes through the box (the slab test) closer than a given distance from its head.
+     *
+     * @param ray         the ray
+     * @param maxDistance the distance along the ray beyond which hits are ignored
+     * @return true if the ray hits the box or starts inside it, closer than the distance
+     */
+    public boolean intersects(Ray ray, double maxDistance) {
+        Double3 head = ray.getHead().xyz;
+        Double3 direction = ray.getDirection().xyz;
+        double near = 0, far = maxDistance;
+
+        double inverse = 1 / direction.d1;
+        double t0 = (minX - head.d1) * inverse, t1 = (maxX - head.d1) * inverse;
+        near = Math.max(near, Math.min(t0, t1));
+        far = Math.min(far, Math.max(t0, t1));
+
+        inverse = 1 / direction.d2;
+        t0 = (minY - head.d2) * inverse;
+        t1 = (maxY - head.d2) * inverse;
+        near = Math.max(near, Math.min(t0, t1));
+        far = Math.min(far, Math.max(t0, t1));
+
+        inverse = 1 / direction.d3;
+        t0 = (minZ - head.d3) * inverse;
+        t1 = (maxZ - head.d3) * inverse;
+        near = Math.max(near, Math.min(t0, t1));
+        far = Math.min(far, Math.max(t0, t1));
+
+        return near <= far;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        return obj instanceof BoundingBox other
+                && minX == other.minX && minY == other.minY && minZ == other.minZ
+                && maxX == other.maxX && maxY == other.maxY && maxZ == other.maxZ;
+    }
+
+    @Override
+    public int hashCode() {
+        return Double.hashCode(minX + minY + minZ + maxX + maxY + maxZ);
+    }
+
+    @Override
+    public String toString() {
+        return "BoundingBox{(" + minX + "," + minY + "," + minZ + ")-(" + maxX + "," + maxY + "," + maxZ + ")}";
+    }
+}
@@ -128,6 +128,31 @@ public class Color {
         return new Color(rgb.reduce(k));
     }
 
+    /**
+     * Calculates the perceived brightness of the color (Rec. 601 luma weights).
+     *
+     * @return the luminance, in the same units as the components
+     */
+    public double luminance() {
+        return 0.299 * rgb.d1 + 0.587 * rgb.d2 + 0.114 * rgb.d3;
+    }
+
+    /**
+     * Checks whether another color is perceptually close to this color. The distance is the Euclidean
+     * distance of the components weighted by the eye's sensitivity to them (Rec. 601 luma weights),
+     * so a difference in green counts more than the same difference in blue.
+     *
+     * @param other     the color to compare with
+     * @param tolerance the largest distance (in 8-bit color levels) that still counts as similar
+     * @return true if the colors differ by no more than the tolerance
+     */
+    public boolean isSimilar(Color other, double tolerance) {
+        double dr = rgb.d1 - other.rgb.d1;
+        double dg = rgb.d2 - other.rgb.d2;
+        double db = rgb.d3 - other.rgb.d3;
+        return 0.299 * dr * dr + 0.587 * dg * dg + 0.114 * db * db <= tolerance * tolerance;
+    }
+
     @Override
     public String toString() {
         return "rgb:" + rgb;
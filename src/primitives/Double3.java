@@ -133,6 +133,15 @@ public class Double3 {
         return new Double3(d1 * rhs.d1, d2 * rhs.d2, d3 * rhs.d3);
     }
 
+    /**
+     * Finds the biggest number of the triad
+     *
+     * @return the maximal number
+     */
+    public double max() {
+        return Math.max(d1, Math.max(d2, d3));
+    }
+
     /**
      * Checks whether all the numbers are lower than a test number
      *
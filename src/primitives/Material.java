@@ -52,6 +52,42 @@ public class Material {
      */
     public double coneAngleRefracted = 0.0;
 
+    /**
+     * The cached sampling table of the reflection cone, rebuilt when the cone settings change.
+     */
+    private TargetArea.SampleTable reflectedSamples;
+
+    /**
+     * The cached sampling table of the refraction cone, rebuilt when the cone settings change.
+     */
+    private TargetArea.SampleTable refractedSamples;
+
+    /**
+     * Returns the precomputed sampling table of the glossy reflection cone.
+     *
+     * @param pattern the distribution of the samples
+     * @return the sampling table for {@code numRaysReflected} rays in {@code coneAngleReflected}
+     */
+    public TargetArea.SampleTable getReflectedSamples(TargetArea.SamplePattern pattern) {
+        TargetArea.SampleTable table = reflectedSamples;
+        if (table == null || !table.matches(pattern, coneAngleReflected, numRaysReflected))
+            reflectedSamples = table = new TargetArea.SampleTable(pattern, coneAngleReflected, numRaysReflected);
+        return table;
+    }
+
+    /**
+     * Returns the precomputed sampling table of the diffused glass (refraction) cone.
+     *
+     * @param pattern the distribution of the samples
+     * @return the sampling table for {@code numRaysRefracted} rays in {@code coneAngleRefracted}
+     */
+    public TargetArea.SampleTable getRefractedSamples(TargetArea.SamplePattern pattern) {
+        TargetArea.SampleTable table = refractedSamples;
+        if (table == null || !table.matches(pattern, coneAngleRefracted, numRaysRefracted))
+            refractedSamples = table = new TargetArea.SampleTable(pattern, coneAngleRefracted, numRaysRefracted);
+        return table;
+    }
+
     /**
      * Sets the diffuse reflection coefficient ({@code kD}) of the material.
      *
@@ -1,12 +1,8 @@
 package primitives;
 
-import geometries.Intersectable;
-import geometries.Plane;
-
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
-import static primitives.Util.alignZero;
 import static primitives.Util.randomDoubleBetweenTwoNumbers;
 
 /**
@@ -16,127 +12,231 @@ import static primitives.Util.randomDoubleBetweenTwoNumbers;
 public class TargetArea {
 
     /**
-     * Calculates the sine of an angle (in radians) using a Taylor series expansion.
-     *
-     * @param x The angle in radians.
-     * @return The sine of the angle.
+     * The pattern used for distributing the sample points over the target area.
      */
-    private static double sin(double x) {
-        double term = x, sum = x;
-        for (int i = 3; term != 0; i += 2) {
-            term *= -x * x / (i * (i - 1));
-            sum += term;
-        }
-        return sum;
+    public enum SamplePattern {
+        /**
+         * A grid of about sqrt(amount) x sqrt(amount) cells of equal area with random jitter in each cell.
+         */
+        JITTERED_GRID,
+        /**
+         * A Halton (2, 3) low-discrepancy sequence on the same square as the grid, shifted by a random
+         * offset (wrapping around the square) for every generated cone.
+         */
+        HALTON
     }
 
     /**
-     * Calculates the cosine of an angle (in radians) using a Taylor series expansion.
-     *
-     * @param x The angle in radians.
-     * @return The cosine of the angle.
+     * A precomputed sampling table of a cone: the radius of the cone's cross-section at distance 1
+     * and a fixed pattern of sample offsets on it, in units of that radius. Both patterns cover the same
+     * square of side 1 around the axis uniformly, so they blur alike and differ only in their noise.
+     * A table is immutable, so a material may share its tables between all the render threads.
      */
-    private static double cos(double x) {
-        double term = 1, sum = 1;
-        for (int i = 2; term != 0; i += 2) {
-            term *= -x * x / (i * (i - 1));
-            sum += term;
+    public static final class SampleTable {
+        /**
+         * The pattern of the sample offsets.
+         */
+        private final SamplePattern pattern;
+        /**
+         * The angle of the cone (in radians).
+         */
+        private final double coneAngle;
+        /**
+         * The radius of the cone's cross-section at distance 1 from its apex.
+         */
+        private final double radius;
+        /**
+         * The offsets of the samples along the first basis vector, in units of the radius.
+         */
+        private final double[] offsetX;
+        /**
+         * The offsets of the samples along the second basis vector, in units of the radius.
+         */
+        private final double[] offsetY;
+        /**
+         * Half of the width of every sample's grid cell in units of the radius, the range of its per-hit
+         * jitter along the first basis vector. Null for the Halton pattern, which is randomly shifted per hit
+         * instead.
+         */
+        private final double[] jitterX;
+        /**
+         * Half of the height of every sample's grid cell in units of the radius, the range of its per-hit
+         * jitter along the second basis vector. Null for the Halton pattern.
+         */
+        private final double[] jitterY;
+        /**
+         * The grid tables of the same cone with fewer samples by their size, built on first use. A table is
+         * immutable, so a race at most builds a table twice. Null for the Halton pattern.
+         */
+        private final SampleTable[] subsets;
+
+        /**
+         * Builds the sampling table of a cone.
+         *
+         * @param pattern   the distribution of the samples
+         * @param coneAngle the angle of the cone (in radians)
+         * @param amount    the number of samples in the table
+         */
+        public SampleTable(SamplePattern pattern, double coneAngle, int amount) {
+            this.pattern = pattern;
+            this.coneAngle = coneAngle;
+            this.radius = Math.tan(coneAngle) / 2;
+            this.offsetX = new double[amount];
+            this.offsetY = new double[amount];
+            if (pattern == SamplePattern.HALTON) {
+                jitterX = jitterY = null;
+                subsets = null;
+                for (int i = 0; i < amount; i++) {
+                    double[] point = haltonPoint(i + 1);
+                    offsetX[i] = point[0];
+                    offsetY[i] = point[1];
+                }
+            } else {
+                jitterX = new double[amount];
+                jitterY = new double[amount];
+                subsets = new SampleTable[amount];
+                // rows of (almost) equal counts, every row as high as its share of the samples, so that all
+                // the cells have the same area and the samples are centered on the axis for any amount
+                int rows = Math.max(1, (int) Math.round(Math.sqrt(amount)));
+                int i = 0;
+                for (int k = 0; k < rows; k++) {
+                    int count = amount / rows + (k < amount % rows ? 1 : 0);
+                    double y = 0.5 - (i + count / 2d) / amount;
+                    for (int l = 0; l < count; l++, i++) {
+                        offsetX[i] = (l + 0.5) / count - 0.5;
+                        offsetY[i] = y;
+                        jitterX[i] = 0.5 / count;
+                        jitterY[i] = 0.5 * count / amount;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the table of the same cone with fewer samples, spread over the whole cone like this one.
+         *
+         * @param amount the number of samples, less than the size of this table
+         * @return the table of the given amount of samples
+         */
+        private SampleTable subset(int amount) {
+            SampleTable table = subsets[amount];
+            if (table == null) subsets[amount] = table = new SampleTable(pattern, coneAngle, amount);
+            return table;
+        }
+
+        /**
+         * Checks whether the table was built for the given cone and amount of samples.
+         *
+         * @param pattern   the distribution of the samples
+         * @param coneAngle the angle of the cone (in radians)
+         * @param amount    the number of samples
+         * @return true if the table can be used as is
+         */
+        public boolean matches(SamplePattern pattern, double coneAngle, int amount) {
+            return this.pattern == pattern && this.coneAngle == coneAngle && offsetX.length == amount;
+        }
+
+        /**
+         * Returns the number of samples in the table.
+         *
+         * @return the number of samples
+         */
+        public int size() {
+            return offsetX.length;
         }
-        return sum;
     }
 
     /**
-     * Calculates the tangent of an angle (in radians) using sine and cosine.
+     * Builds an orthonormal basis of the plane perpendicular to a unit vector, without branches on the
+     * vector's components (Duff et al., "Building an Orthonormal Basis, Revisited", 2017).
      *
-     * @param x The angle in radians.
-     * @return The tangent of the angle.
+     * @param n a unit vector
+     * @return two unit vectors that are perpendicular to each other and to n
      */
-    private static double tan(double x) {
-        double sinX = sin(x);
-        double cosX = cos(x);
-        return sinX / cosX;
+    public static Vector[] orthonormalBasis(Vector n) {
+        double nX = n.xyz.d1, nY = n.xyz.d2, nZ = n.xyz.d3;
+        double sign = Math.copySign(1d, nZ);
+        double a = -1 / (sign + nZ);
+        double b = nX * nY * a;
+        return new Vector[]{
+                new Vector(1 + sign * nX * nX * a, sign * b, -sign * nX),
+                new Vector(b, sign + nY * nY * a, -nY)};
     }
 
     /**
-     * Generates a list of random vectors within a specified cone.
+     * Generates sample directions within a cone from the cone's precomputed sampling table.
+     * The only per-call work is the basis of the cone's axis and one random shift (Halton pattern)
+     * or one random jitter per sample (jittered grid), then a few multiply-adds per direction.
+     * Since u, w and the axis are orthonormal, the length of every direction is known in advance.
+     * When fewer samples than the table holds are requested, the grid of the requested amount is used
+     * (built once per table), so that the samples still cover the whole cone around its axis, while the
+     * Halton pattern uses the first points of its sequence, which are spread over the whole cone already.
      *
-     * @param gp        The GeoPoint at the surface of the geometry.
-     * @param n         The normal vector to the surface of the geometry at the point of gp.point.
-     * @param coneAngle The angle of the cone in which the random rays will be generated (in radians).
-     * @param amount    The number of random vectors to generate.
-     * @param plane     The plane in which the random directions will be generated.
-     * @return A list of random direction vectors within the cone defined by the normal vector.
+     * @param axis   the unit axis of the cone
+     * @param table  the sampling table of the cone
+     * @param amount the number of directions to generate, at most the size of the table
+     * @return the list of the unit sample directions
      */
-    public static List<Vector> generateRandomDirectionInCone(Intersectable.GeoPoint gp, Vector n, double coneAngle, int amount, Plane plane) {
-        List<Vector> result = new LinkedList<>();
-
-        double radius2 = tan(coneAngle) / 2;
-        List<Vector> vectors = plane.findVectorsOfPlane();
-        Vector x = vectors.get(0), y = vectors.get(1);
-
-        List<Point> points = generatePoints(y, x, amount, gp.point.add(n), radius2);
-
-        for (Point p : points) {
-            result.add(p.subtract(gp.point));
+    public static List<Vector> generateDirectionsInCone(Vector axis, SampleTable table, int amount) {
+        if (amount < table.size() && table.pattern == SamplePattern.JITTERED_GRID) table = table.subset(amount);
+        Vector[] basis = orthonormalBasis(axis);
+        Double3 u = basis[0].xyz, w = basis[1].xyz, c = axis.xyz;
+        double radius = table.radius;
+        double shiftX = 0, shiftY = 0;
+        if (table.jitterX == null) {
+            shiftX = randomDoubleBetweenTwoNumbers(0, 1);
+            shiftY = randomDoubleBetweenTwoNumbers(0, 1);
         }
 
+        List<Vector> result = new ArrayList<>(amount);
+        for (int i = 0; i < amount; i++) {
+            double x = table.offsetX[i], y = table.offsetY[i];
+            double dx, dy;
+            if (table.jitterX == null) {
+                // the shifted points wrap around the square, so they stay uniformly spread over it
+                x += shiftX;
+                y += shiftY;
+                dx = (x >= 0.5 ? x - 1 : x) * radius;
+                dy = (y >= 0.5 ? y - 1 : y) * radius;
+            } else {
+                dx = (x + randomDoubleBetweenTwoNumbers(-table.jitterX[i], table.jitterX[i])) * radius;
+                dy = (y + randomDoubleBetweenTwoNumbers(-table.jitterY[i], table.jitterY[i])) * radius;
+            }
+            double scale = 1 / Math.sqrt(1 + dx * dx + dy * dy);
+            result.add(new Vector((c.d1 + u.d1 * dx + w.d1 * dy) * scale,
+                    (c.d2 + u.d2 * dx + w.d2 * dy) * scale,
+                    (c.d3 + u.d3 * dx + w.d3 * dy) * scale));
+        }
         return result;
     }
 
     /**
-     * Generates a random vector within a specified range using two base vectors.
+     * Returns a point of the Halton (2, 3) sequence on the square of side 1 around the origin. This is the
+     * only place the sequence is generated: the sampling tables hold its first points, and every cone shifts
+     * them by a random offset (see {@link #generateDirectionsInCone(Vector, SampleTable, int)}).
      *
-     * @param vX   The x vector of the plane.
-     * @param vY   The y vector of the plane.
-     * @param size The size of the circle for the generation.
-     * @return A random combination of a*vX + b*vY such that a,b are in the range [-size, size].
+     * @param index the (positive) index of the point in the sequence
+     * @return the x and y coordinates of the point, in range [-0.5, 0.5)
      */
-    public static Vector generateVector(Vector vX, Vector vY, double size) {
-        while (true) {
-            try {
-                return vX.scale(randomDoubleBetweenTwoNumbers(-size, size))
-                        .add(vY.scale(randomDoubleBetweenTwoNumbers(-size, size)));
-            } catch (Exception e) {
-                // Retry if the random numbers result in a zero vector.
-            }
-        }
+    private static double[] haltonPoint(int index) {
+        return new double[]{radicalInverse(index, 2) - 0.5, radicalInverse(index, 3) - 0.5};
     }
 
     /**
-     * Generates a list of points distributed within a square grid around a center point,
-     * with added random jitter to each point.
+     * Calculates the radical inverse of an index - its digits in the given base mirrored around the
+     * decimal point. This is the i-th element of the van der Corput sequence of the base.
      *
-     * @param vX     The x vector of the plane used to determine the grid orientation.
-     * @param vY     The y vector of the plane used to determine the grid orientation.
-     * @param amount The number of points to generate.
-     * @param center The center point of the grid.
-     * @param radius The radius of the circle defining the grid size.
-     * @return A list of generated points with jitter applied.
+     * @param index the (positive) index in the sequence
+     * @param base  the base of the sequence
+     * @return the radical inverse in range [0, 1)
      */
-    public static List<Point> generatePoints(Vector vX, Vector vY, int amount, Point center, double radius) {
-        List<Point> points = new LinkedList<>();
-
-        double divider = Math.sqrt(amount);
-        double r = radius / divider;
-
-        for (int k = 0; k < divider; k++) {
-            for (int l = 0; l < divider; l++) {
-                double yI = alignZero(-(k - (divider - 1) / 2) * r);
-                double xJ = alignZero(-(l - (divider - 1) / 2) * r);
-
-                Point pIJ = center;
-
-                if (xJ != 0) pIJ = pIJ.add(vX.scale(xJ));
-                if (yI != 0) pIJ = pIJ.add(vY.scale(yI));
-
-                // Adding some random jitter
-                pIJ = pIJ.add(generateVector(vX, vY, r));
-
-                points.add(pIJ);
-            }
+    private static double radicalInverse(int index, int base) {
+        double inverseBase = 1d / base, fraction = inverseBase, result = 0;
+        while (index > 0) {
+            result += fraction * (index % base);
+            index /= base;
+            fraction *= inverseBase;
         }
-
-        return points;
+        return result;
     }
 }
-
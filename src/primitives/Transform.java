@@ -0,0 +1,238 @@
+package primitives;
+
+/**
+ * Affine transformation of the 3D space - a linear map followed by a translation, kept together with its
+ * inverse. Transformations are built from translations, scalings and rotations, composed by
+ * {@link #then(Transform)}.
+ * <p>
+ * The matrix is stored row by row as 3 rows of 4 values: the linear part and the translation column.
+ * </p>
+ */
+public final class Transform {
+    /**
+     * The identity transformation
+     */
+    public static final Transform IDENTITY = new Transform(
+            new double[]{1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0},
+            new double[]{1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0});
+
+    /**
+     * The matrix of the transformation (3 rows of 4 values)
+     */
+    private final double[] m;
+    /**
+     * The matrix of the inverse transformation (3 rows of 4 values)
+     */
+    private final double[] inv;
+
+    /**
+     * Constructs a transformation by its matrix and the matrix of its inverse.
+     *
+     * @param m   the matrix
+     * @param inv the inverse matrix
+     */
+    private Transform(double[] m, double[] inv) {
+        this.m = m;
+        this.inv = inv;
+    }
+
+    /**
+     * Creates a translation.
+     *
+     * @param offset the translation vector
+     * @return the translation
+     */
+    public static Transform translation(Vector offset) {
+        return translation(offset.getX(), offset.getY(), offset.getZ());
+    }
+
+    /**
+     * Creates a translation by its components (which, unlike a vector, may all be zero).
+     *
+     * @param x the translation along the x axis
+     * @param y the translation along the y axis
+     * @param z the translation along the z axis
+     * @return the translation
+     */
+    public static Transform translation(double x, double y, double z) {
+        return new Transform(new double[]{1, 0, 0, x, 0, 1, 0, y, 0, 0, 1, z},
+                new double[]{1, 0, 0, -x, 0, 1, 0, -y, 0, 0, 1, -z});
+    }
+
+    /**
+     * Creates a scaling along the axes, about the origin.
+     *
+     * @param sx the scale factor along the x axis
+     * @param sy the scale factor along the y axis
+     * @param sz the scale factor along the z axis
+     * @return the scaling
+     * @throws IllegalArgumentException if a factor is zero
+     */
+    public static Transform scaling(double sx, double sy, double sz) {
+        if (Util.isZero(sx) || Util.isZero(sy) || Util.isZero(sz))
+            throw new IllegalArgumentException("Scale factors must not be zero");
+        return new Transform(new double[]{sx, 0, 0, 0, 0, sy, 0, 0, 0, 0, sz, 0},
+                new double[]{1 / sx, 0, 0, 0, 0, 1 / sy, 0, 0, 0, 0, 1 / sz, 0});
+    }
+
+    /**
+     * Creates a rotation about an axis through the origin, counterclockwise when looking against the axis.
+     *
+     * @param axis    the direction of the rotation axis
+     * @param degrees the rotation angle in degrees
+     * @return the rotation
+     */
+    public static Transform rotation(Vector axis, double degrees) {
+        Vector u = axis.normalize();
+        double x = u.getX(), y = u.getY(), z = u.getZ();
+        double radians = Math.toRadians(degrees);
+        double c = Math.cos(radians), s = Math.sin(radians), t = 1 - c;
+        double[] r = {
+                t * x * x + c, t * x * y - s * z, t * x * z + s * y, 0,
+                t * x * y + s * z, t * y * y + c, t * y * z - s * x, 0,
+                t * x * z - s * y, t * y * z + s * x, t * z * z + c, 0};
+        // the inverse of a rotation is its transpose
+        double[] transposed = {r[0], r[4], r[8], 0, r[1], r[5], r[9], 0, r[2], r[6], r[10], 0};
+        return new Transform(r, transposed);
+    }
+
+    /**
+     * Composes this transformation with another one, applied after it.
+     *
+     * @param next the transformation applied after this one
+     * @return the composed transformation
+     */
+    public Transform then(Transform next) {
+        return new Transform(multiply(next.m, m), multiply(inv, next.inv));
+    }
+
+    /**
+     * Returns the inverse transformation.
+     *
+     * @return the inverse
+     */
+    public Transform inverse() {
+        return new Transform(inv, m);
+    }
+
+    /**
+     * Multiplies two affine matrices.
+     *
+     * @param a the left matrix
+     * @param b the right matrix (applied first)
+     * @return the product a * b
+     */
+    private static double[] multiply(double[] a, double[] b) {
+        double[] c = new double[12];
+        for (int row = 0; row < 3; ++row) {
+            for (int col = 0; col < 4; ++col)
+                c[4 * row + col] = a[4 * row] * b[col] + a[4 * row + 1] * b[4 + col] + a[4 * row + 2] * b[8 + col];
+            c[4 * row + 3] += a[4 * row + 3];
+        }
+        return c;
+    }
+
+    /**
+     * Transforms a point.
+     *
+     * @param point the point
+     * @return the transformed point
+     */
+    public Point apply(Point point) {
+        return transformPoint(m, point);
+    }
+
+    /**
+     * Transforms a point by the inverse transformation.
+     *
+     * @param point the point
+     * @return the point transformed back
+     */
+    public Point applyInverse(Point point) {
+        return transformPoint(inv, point);
+    }
+
+    /**
+     * Transforms a direction (the linear part only, without the translation). The result is not normalized.
+     *
+     * @param vector the direction
+     * @return the transformed direction
+     */
+    public Vector applyToVector(Vector vector) {
+        return transformVector(m, vector);
+    }
+
+    /**
+     * Transforms a direction by the inverse transformation. The result is not normalized.
+     *
+     * @param vector the direction
+     * @return the direction transformed back
+     */
+    public Vector applyInverseToVector(Vector vector) {
+        return transformVector(inv, vector);
+    }
+
+    /**
+     * Transforms a surface normal. Normals are transformed by the transposed inverse of the linear part,
+     * so that they stay perpendicular to the transformed surface under non-uniform scaling.
+     *
+     * @param normal the normal
+     * @return the transformed unit normal
+     */
+    public Vector applyToNormal(Vector normal) {
+        double x = normal.getX(), y = normal.getY(), z = normal.getZ();
+        return new Vector(inv[0] * x + inv[4] * y + inv[8] * z,
+                inv[1] * x + inv[5] * y + inv[9] * z,
+                inv[2] * x + inv[6] * y + inv[10] * z).normalize();
+    }
+
+    /**
+     * Transforms a bounding box, returning the box of the transformed box (by Arvo's method: every output
+     * extent is the sum of the extreme contributions of the input extents).
+     *
+     * @param box the box
+     * @return the bounding box of the transformed box
+     */
+    public BoundingBox apply(BoundingBox box) {
+        double[] min = {box.getMinX(), box.getMinY(), box.getMinZ()};
+        double[] max = {box.getMaxX(), box.getMaxY(), box.getMaxZ()};
+        double[] outMin = new double[3], outMax = new double[3];
+        for (int row = 0; row < 3; ++row) {
+            outMin[row] = outMax[row] = m[4 * row + 3];
+            for (int col = 0; col < 3; ++col) {
+                double a = m[4 * row + col] * min[col], b = m[4 * row + col] * max[col];
+                outMin[row] += Math.min(a, b);
+                outMax[row] += Math.max(a, b);
+            }
+        }
+        return new BoundingBox(outMin[0], outMin[1], outMin[2], outMax[0], outMax[1], outMax[2]);
+    }
+
+    /**
+     * Applies an affine matrix to a point.
+     *
+     * @param matrix the matrix
+     * @param point  the point
+     * @return the transformed point
+     */
+    private static Point transformPoint(double[] matrix, Point point) {
+        double x = point.getX(), y = point.getY(), z = point.getZ();
+        return new Point(matrix[0] * x + matrix[1] * y + matrix[2] * z + matrix[3],
+                matrix[4] * x + matrix[5] * y + matrix[6] * z + matrix[7],
+                matrix[8] * x + matrix[9] * y + matrix[10] * z + matrix[11]);
+    }
+
+    /**
+     * Applies the linear part of an affine matrix to a vector.
+     *
+     * @param matrix the matrix
+     * @param vector the vector
+     * @return the transformed vector
+     */
+    private static Vector transformVector(double[] matrix, Vector vector) {
+        double x = vector.getX(), y = vector.getY(), z = vector.getZ();
+        return new Vector(matrix[0] * x + matrix[1] * y + matrix[2] * z,
+                matrix[4] * x + matrix[5] * y + matrix[6] * z,
+                matrix[8] * x + matrix[9] * y + matrix[10] * z);
+    }
+}
@@ -1,6 +1,6 @@
 package primitives;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Util class is used for some internal utilities, e.g. controlling accuracy
@@ -18,9 +18,10 @@ public final class Util {
      */
     private static final double EPSILON = 0.0000001;
     /**
-     * A static instance of the Random class used for generating random numbers.
+     * The random number stream of each thread. Every thread owns its generator, so sampling threads never
+     * contend on a shared seed, and a thread may re-seed its stream (e.g. per pixel) for reproducible results.
      */
-    private static Random random = new Random();
+    private static final ThreadLocal<SplittableRandom> random = ThreadLocal.withInitial(SplittableRandom::new);
 
     /**
      * Don't let anyone instantiate this class.
@@ -87,7 +88,7 @@ public final class Util {
      * @return the random value
      */
     public static double random(double min, double max) {
-        return Math.random() * (max - min) + min;
+        return random.get().nextDouble() * (max - min) + min;
     }
 
     /**
@@ -99,7 +100,18 @@ public final class Util {
      */
     public static double randomDoubleBetweenTwoNumbers(double min, double max) {
         min += EPSILON;
-        return min + (max - min) * random.nextDouble();
+        return min + (max - min) * random.get().nextDouble();
+    }
+
+    /**
+     * Restarts the random number stream of the current thread from the given seed.
+     * All the following random numbers drawn by this thread depend only on the seed,
+     * regardless of the other threads and of the order of the work between them.
+     *
+     * @param seed the seed of the new stream
+     */
+    public static void seedRandom(long seed) {
+        random.set(new SplittableRandom(seed));
     }
 
 }
@@ -0,0 +1,31 @@
+package profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event of encoding an image and writing it to a file.
+ */
+@Name("raytracer.ImageEncoding")
+@Label("Image Encoding")
+@Category({"Ray Tracer", "Output"})
+@Description("Encoding a rendered image into a file")
+public class ImageEncodingEvent extends jdk.jfr.Event {
+    /**
+     * The name of the image
+     */
+    @Label("Image")
+    public String image;
+    /**
+     * The width of the image in pixels
+     */
+    @Label("Width")
+    public int width;
+    /**
+     * The height of the image in pixels
+     */
+    @Label("Height")
+    public int height;
+}
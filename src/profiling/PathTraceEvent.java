@@ -0,0 +1,42 @@
+package profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event of tracing all the rays of a single pixel. Only a sample of the pixels
+ * is recorded, see {@link #SAMPLE_RATE}.
+ */
+@Name("raytracer.PathTrace")
+@Label("Path Trace")
+@Category({"Ray Tracer", "Render"})
+@Description("Tracing the rays of a sampled pixel")
+public class PathTraceEvent extends jdk.jfr.Event {
+    /**
+     * One pixel out of this many is recorded (a power of 2)
+     */
+    public static final int SAMPLE_RATE = 1024;
+
+    /**
+     * The row of the pixel
+     */
+    @Label("Row")
+    public int row;
+    /**
+     * The column of the pixel
+     */
+    @Label("Column")
+    public int col;
+    /**
+     * The number of rays traced for the pixel
+     */
+    @Label("Rays")
+    public long rays;
+    /**
+     * The maximal recursion depth of the pixel's rays (0 if only the camera ray was traced)
+     */
+    @Label("Depth")
+    public int depth;
+}
@@ -0,0 +1,33 @@
+package profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event of a scene preparation phase, such as loading a mesh or building an
+ * acceleration structure. Like all the events of this package it costs nothing unless a recording is
+ * running, e.g. by {@code jcmd <pid> JFR.start}.
+ */
+@Name("raytracer.ScenePreparation")
+@Label("Scene Preparation")
+@Category({"Ray Tracer", "Scene"})
+@Description("A phase of preparing a scene for rendering")
+public class ScenePreparationEvent extends jdk.jfr.Event {
+    /**
+     * The kind of the preparation, e.g. "mesh load" or "acceleration build"
+     */
+    @Label("Phase")
+    public String phase;
+    /**
+     * What was prepared, e.g. the path of a mesh file
+     */
+    @Label("Subject")
+    public String subject;
+    /**
+     * The number of objects (triangles, geometries...) prepared
+     */
+    @Label("Objects")
+    public int objects;
+}
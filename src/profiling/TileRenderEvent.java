@@ -0,0 +1,36 @@
+package profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event of rendering a tile of an image.
+ */
+@Name("raytracer.TileRender")
+@Label("Tile Render")
+@Category({"Ray Tracer", "Render"})
+@Description("Rendering a rectangular block of pixels")
+public class TileRenderEvent extends jdk.jfr.Event {
+    /**
+     * The row of the tile's top left pixel
+     */
+    @Label("Row")
+    public int row;
+    /**
+     * The column of the tile's top left pixel
+     */
+    @Label("Column")
+    public int col;
+    /**
+     * The number of pixels in the tile
+     */
+    @Label("Pixels")
+    public int pixels;
+    /**
+     * The number of rays traced for the tile
+     */
+    @Label("Rays")
+    public long rays;
+}
@@ -1,9 +1,20 @@
 package renderer;
 
+import geometries.Geometry;
+import geometries.Intersectable;
+import geometries.Intersectable.GeoPoint;
 import primitives.*;
+import profiling.PathTraceEvent;
+import profiling.TileRenderEvent;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.MissingResourceException;
+import java.util.Objects;
 import java.util.stream.IntStream;
 
 import static primitives.Util.alignZero;
@@ -16,9 +27,46 @@ import static primitives.Util.isZero;
  * @author Lea &amp; Hadar.
  */
 public class Camera implements Cloneable {
-    private int threadsCount = 0; // -2 auto, -1 range/stream, 0 no threads, 1+ number of threadsprivate
+    private int threadsCount = 0; // -2 auto (calibrated), -1 range/stream, 0 no threads, 1+ number of threadsprivate
     final int SPARE_THREADS = 2; // Spare threads if trying to use all the coresprivate
     double printInterval = 0; // printing progress percentage interval
+    /**
+     * The way the pixels of a render are distributed between threads.
+     */
+    private Execution execution = Execution.THREADS;
+    /**
+     * The approximate number of pixels traced by each round of the thread count calibration.
+     */
+    private static final int CALIBRATION_PIXELS = 2048;
+    /**
+     * The seed of the random sampling. Every pixel re-seeds its thread's random stream from this seed and
+     * its own location, so the image does not depend on the amount of threads or the order of the pixels.
+     */
+    private long seed = 0;
+    /**
+     * Whether renders measure the cost of every pixel.
+     */
+    private boolean diagnostics = false;
+    /**
+     * The pixel costs measured by the last render in diagnostics mode, or null.
+     */
+    private CostMap costMap = null;
+    /**
+     * The monitor of the running render, or null when no render is running.
+     */
+    private RenderMonitor monitor = null;
+    /**
+     * The maximal number of samples of a pixel refined by adaptive antialiasing, 1 disables antialiasing.
+     */
+    private int antiAliasingSamples = 1;
+    /**
+     * The perceptual color difference (in 8-bit levels) between neighbouring pixels that triggers refinement.
+     */
+    private double antiAliasingTolerance = 4;
+    /**
+     * The relative depth difference between neighbouring pixels that counts as a geometric edge.
+     */
+    private static final double DEPTH_TOLERANCE = 0.1;
     /**
      * The position of the camera in 3D space.
      */
@@ -143,11 +191,26 @@ public class Camera implements Cloneable {
      * @return the constructed ray
      */
     public Ray constructRay(int nX, int nY, int j, int i) {
+        return constructRay(nX, nY, j, i, 0, 0);
+    }
+
+    /**
+     * Constructs a ray through a point inside a specific pixel on the view plane.
+     *
+     * @param nX number of horizontal pixels
+     * @param nY number of vertical pixels
+     * @param j  horizontal index of the pixel
+     * @param i  vertical index of the pixel
+     * @param dx horizontal offset from the pixel center, in pixels (range -0.5..0.5)
+     * @param dy vertical offset from the pixel center, in pixels (range -0.5..0.5)
+     * @return the constructed ray
+     */
+    private Ray constructRay(int nX, int nY, int j, int i, double dx, double dy) {
         Point pC = p0.add(vTo.scale(distance));
         double rY = height / nY;
         double rX = width / nX;
-        double yi = -(i - (nY - 1) / 2d) * rY;
-        double xj = (j - (nX - 1) / 2d) * rX;
+        double yi = -(i + dy - (nY - 1) / 2d) * rY;
+        double xj = (j + dx - (nX - 1) / 2d) * rX;
         Point pIJ = pC;
         if (!isZero(xj)) pIJ = pIJ.add(vRight.scale(xj));
         if (!isZero(yi)) pIJ = pIJ.add(vUp.scale(yi));
@@ -276,36 +339,552 @@ public class Camera implements Cloneable {
 
     /**
      * Renders the image by casting rays through each pixel and setting the color of each pixel accordingly.
+     * The scene is compiled first (see {@link scene.Scene#compile()}).
      *
      * @return the current {@code Camera} instance
      */
     public Camera renderImage() {
+        rayTracer.scene.compile();
         final int nX = imageWriter.getNx();
         final int nY = imageWriter.getNy();
+        costMap = diagnostics ? new CostMap(nX, nY) : null;
+        monitored(() -> {
+            if (antiAliasingSamples > 1)
+                renderAntiAliased(nX, nY);
+            else
+                forEachPixel(nX, nY, (row, col) -> castRay(nX, nY, col, row));
+        });
+        return this;
+    }
+
+    /**
+     * Runs a render under a {@link RenderMonitor}, registered as an MBean for the duration of the render.
+     *
+     * @param render the render
+     * @throws java.util.concurrent.CancellationException if the render was cancelled through the MBean
+     */
+    private void monitored(Runnable render) {
+        Runnable stopCounting = startCounting();
+        try (RenderMonitor renderMonitor = new RenderMonitor(imageWriter.getImageName())) {
+            monitor = renderMonitor;
+            render.run();
+            renderMonitor.checkCancelled();
+        } finally {
+            monitor = null;
+            stopCounting.run();
+        }
+    }
+
+    /**
+     * Starts the counting a render needs: of the rays and the intersection tests in diagnostics mode, and of
+     * the rays while a flight recording captures the render events. The rays of a render are also counted by
+     * its {@link RenderMonitor} while the monitor is registered.
+     *
+     * @return the action stopping the counting
+     */
+    private Runnable startCounting() {
+        boolean rays = diagnostics || new TileRenderEvent().isEnabled() || new PathTraceEvent().isEnabled();
+        boolean tests = diagnostics;
+        if (rays) RayTracerBase.countRays(true);
+        if (tests) Intersectable.countIntersectionTests(true);
+        return () -> {
+            if (rays) RayTracerBase.countRays(false);
+            if (tests) Intersectable.countIntersectionTests(false);
+        };
+    }
+
+    /**
+     * A listener notified after every pass of a progressive render, when the image writer
+     * holds the image of all the samples taken so far.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * Called after a pass of the progressive render.
+         *
+         * @param pass  the number of completed passes (the first pass is 1)
+         * @param noise the estimated noise of the image in 8-bit color levels,
+         *              {@code Double.POSITIVE_INFINITY} until it can be estimated
+         */
+        void passDone(int pass, double noise);
+    }
+
+    /**
+     * Renders the image progressively. Every pass traces one randomly jittered ray through each pixel and
+     * accumulates it into a high dynamic range buffer, and the image writer is updated with the average of
+     * all the passes after each pass. Rendering stops at the time limit (in the middle of a pass if
+     * needed - the unfinished pixels keep their previous samples) or when the estimated noise drops to the
+     * noise target, whichever comes first.
+     *
+     * @param timeLimit   the wall-clock limit of the render, null for no limit
+     * @param noiseTarget the mean standard error of the pixels (in 8-bit color levels) at which the image is
+     *                    considered converged, 0 for no target
+     * @param listener    notified after each pass (e.g. to write the intermediate image), may be null
+     * @return the current {@code Camera} instance
+     * @throws IllegalArgumentException if there is neither a time limit nor a noise target
+     */
+    public Camera renderProgressive(Duration timeLimit, double noiseTarget, ProgressListener listener) {
+        if (timeLimit == null && noiseTarget <= 0)
+            throw new IllegalArgumentException("progressive render needs a time limit or a noise target");
+        rayTracer.scene.compile();
+        final int nX = imageWriter.getNx();
+        final int nY = imageWriter.getNy();
+        final long deadline = timeLimit == null ? Long.MAX_VALUE : System.nanoTime() + timeLimit.toNanos();
+        costMap = diagnostics ? new CostMap(nX, nY) : null;
+
+        Color[] sums = new Color[nX * nY];
+        double[] squares = new double[nX * nY];
+        int[] counts = new int[nX * nY];
+        monitored(() -> {
+            double noise = Double.POSITIVE_INFINITY;
+            for (int pass = 1; noise > noiseTarget && System.nanoTime() < deadline; ++pass) {
+                final int seedOffset = pass;
+                forEachPixel(nX, nY, (row, col) -> {
+                    if (System.nanoTime() >= deadline) return;
+                    Util.seedRandom(pixelSeed(nX, col, row) + seedOffset);
+                    Color color = rayTracer.traceRay(constructRay(nX, nY, col, row,
+                            Util.random(-0.5, 0.5), Util.random(-0.5, 0.5)));
+                    int index = row * nX + col;
+                    double luminance = color.luminance();
+                    sums[index] = counts[index] == 0 ? color : sums[index].add(color);
+                    squares[index] += luminance * luminance;
+                    counts[index]++;
+                });
+
+                noise = 0;
+                for (int index = 0; index < sums.length; ++index) {
+                    int count = counts[index];
+                    if (count > 0) imageWriter.writePixel(index % nX, index / nX, sums[index].reduce(count));
+                    if (count < 2) noise = Double.POSITIVE_INFINITY;
+                    else if (noise != Double.POSITIVE_INFINITY) {
+                        double mean = sums[index].luminance() / count;
+                        double variance = Math.max(0, squares[index] / count - mean * mean);
+                        noise += Math.sqrt(variance / count);
+                    }
+                }
+                if (noise != Double.POSITIVE_INFINITY) noise /= sums.length;
+                if (listener != null) listener.passDone(pass, noise);
+                monitor.checkCancelled();
+            }
+        });
+        return this;
+    }
+
+    /**
+     * The execution modes of a render.
+     */
+    public enum Execution {
+        /**
+         * Render according to {@link #setMultithreading(int)}: on the calling thread, by a parallel stream,
+         * or by a group of platform threads created for the render.
+         */
+        THREADS,
+        /**
+         * Render on the shared {@link ForkJoinPool#commonPool()}: the image is split recursively into
+         * tiles and idle workers steal the halves that were not started yet. Concurrent renders share
+         * the pool's threads instead of creating their own.
+         */
+        FORK_JOIN,
+        /**
+         * Render every tile on a virtual thread of its own.
+         */
+        VIRTUAL_THREADS,
+        /**
+         * Render on platform threads (as many as set by {@link #setMultithreading(int)}, or all the cores
+         * but the spare ones) by tiles, most expensive first, as predicted by a low resolution probe pass.
+         * Expensive tiles are split further, so that all the threads finish at about the same time.
+         */
+        COST_PREDICTIVE
+    }
+
+    /**
+     * Renders a region of the image by splitting it recursively into halves, down to a single tile.
+     * Fork-join tasks are serializable, but a render task is never serialized.
+     */
+    @SuppressWarnings("serial")
+    private static class RegionTask extends RecursiveAction {
+        /**
+         * The region to render.
+         */
+        private final Tile region;
+        /**
+         * The action performed on each pixel of the region.
+         */
+        private final PixelAction action;
+
+        /**
+         * Constructs the task of a region.
+         *
+         * @param region the region to render
+         * @param action the action performed on each pixel of the region
+         */
+        RegionTask(Tile region, PixelAction action) {
+            this.region = region;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            int row = region.row(), col = region.col(), rows = region.rows(), cols = region.cols();
+            if (region.pixels() <= Tile.SIZE * Tile.SIZE)
+                forEachPixel(region, action);
+            else if (rows >= cols)
+                invokeAll(new RegionTask(new Tile(row, col, rows / 2, cols), action),
+                        new RegionTask(new Tile(row + rows / 2, col, rows - rows / 2, cols), action));
+            else
+                invokeAll(new RegionTask(new Tile(row, col, rows, cols / 2), action),
+                        new RegionTask(new Tile(row, col + cols / 2, rows, cols - cols / 2), action));
+        }
+    }
+
+    /**
+     * Performs an action on every pixel of a tile, recorded as a {@link TileRenderEvent}.
+     *
+     * @param tile   the tile
+     * @param action the action to perform on each pixel
+     */
+    static void forEachPixel(Tile tile, PixelAction action) {
+        TileRenderEvent event = new TileRenderEvent();
+        long rays = RayTracerBase.getRayCount();
+        event.begin();
+        for (int row = tile.row(); row < tile.row() + tile.rows(); ++row)
+            for (int col = tile.col(); col < tile.col() + tile.cols(); ++col)
+                action.apply(row, col);
+        event.end();
+        if (event.shouldCommit()) {
+            event.row = tile.row();
+            event.col = tile.col();
+            event.pixels = tile.pixels();
+            event.rays = RayTracerBase.getRayCount() - rays;
+            event.commit();
+        }
+    }
+
+    /**
+     * An action performed on a single pixel of the image.
+     */
+    @FunctionalInterface
+    interface PixelAction {
+        /**
+         * Performs the action on a pixel.
+         *
+         * @param row the row index of the pixel
+         * @param col the column index of the pixel
+         */
+        void apply(int row, int col);
+    }
+
+    /**
+     * Performs an action on every pixel of the image according to the multithreading mode.
+     *
+     * @param nX          the number of pixels in a row
+     * @param nY          the number of pixels in a column
+     * @param pixelAction the action to perform on each pixel
+     */
+    private void forEachPixel(int nX, int nY, PixelAction pixelAction) {
+        final PixelAction measured = costMap == null ? pixelAction : costMap.measure(pixelAction);
+        final PixelAction action = monitor == null ? measured : monitor.startPass(nX * nY, measured);
+        if (execution == Execution.FORK_JOIN) {
+            ForkJoinPool.commonPool().invoke(new RegionTask(new Tile(0, 0, nY, nX), action));
+            return;
+        }
+        if (execution == Execution.VIRTUAL_THREADS) {
+            forEachTileOnVirtualThreads(nX, nY, action);
+            return;
+        }
+
+        if (threadsCount == -2) threadsCount = calibrateThreads(nX, nY);
         Pixel.initialize(nY, nX, printInterval);
-        if (threadsCount == 0)
+        if (execution == Execution.COST_PREDICTIVE)
+            new CostScheduler(nX, nY, action, defaultWorkers()).run();
+        else if (threadsCount == 0)
             for (int i = 0; i < nY; ++i)
                 for (int j = 0; j < nX; ++j)
-                    castRay(nX, nY, j, i);
+                    action.apply(i, j);
         else if (threadsCount == -1) {
             IntStream.range(0, nY).parallel() //
                     .forEach(i -> IntStream.range(0, nX).parallel() //
-                            .forEach(j -> castRay(nX, nY, j, i)));
+                            .forEach(j -> action.apply(i, j)));
         } else {
             var threads = new LinkedList<Thread>();
-            while (threadsCount-- > 0)
+            for (int t = 0; t < threadsCount; ++t)
                 threads.add(new Thread(() -> {
                     Pixel pixel;
                     while ((pixel = Pixel.nextPixel()) != null)
-                        castRay(nX, nY, pixel.col(), pixel.row());
+                        action.apply(pixel.row(), pixel.col());
                 }));
             for (var thread : threads) thread.start();
             try {
                 for (var thread : threads) thread.join();
-            } catch (InterruptedException ignore) {
+            } catch (InterruptedException e) {
+                for (var thread : threads) thread.interrupt();
+                Thread.currentThread().interrupt();
             }
         }
-        return this;
+    }
+
+    /**
+     * Starts rendering the image in the background, on a thread pool of its own that is shut down when
+     * the render completes, fails or is cancelled. The pool has {@code threadsCount} threads, or all the
+     * cores but the spare ones if multithreading is not set to a number of threads.
+     *
+     * @return the job of the render
+     * @see #renderImageAsync(Executor, int)
+     */
+    public RenderJob renderImageAsync() {
+        int workers = defaultWorkers();
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        RenderJob job = renderImageAsync(executor, workers);
+        job.whenComplete((camera, e) -> executor.shutdown());
+        return job;
+    }
+
+    /**
+     * Starts rendering the image in the background by the given number of workers on an executor.
+     * The workers take {@link Tile#SIZE} x {@link Tile#SIZE} tiles one by one, and check between the tiles
+     * whether the job was cancelled or failed. An exception in any worker fails the whole job.
+     * Like the synchronous renders, the job is monitored by an MBean (see {@link RenderMonitorMBean}) until
+     * it is over; cancelling the render through the MBean fails the job with a {@link CancellationException}.
+     *
+     * @param executor the executor running the workers
+     * @param workers  the number of workers
+     * @return the job of the render
+     */
+    public RenderJob renderImageAsync(Executor executor, int workers) {
+        if (workers < 1) throw new IllegalArgumentException("render needs at least one worker");
+        rayTracer.scene.compile();
+        final int nX = imageWriter.getNx();
+        final int nY = imageWriter.getNy();
+        RenderJob job = new RenderJob(this, imageWriter, Tile.split(nX, nY, Tile.SIZE), workers);
+        Runnable stopCounting = startCounting();
+        RenderMonitor renderMonitor = new RenderMonitor(imageWriter.getImageName());
+        job.whenComplete((camera, e) -> {
+            renderMonitor.close();
+            stopCounting.run();
+        });
+        PixelAction action = renderMonitor.startPass(nX * nY, (row, col) -> castRay(nX, nY, col, row));
+        Runnable worker = () -> {
+            try {
+                Tile tile;
+                while ((tile = job.nextTile()) != null) {
+                    forEachPixel(tile, action);
+                    renderMonitor.checkCancelled();
+                    job.tileDone();
+                }
+            } catch (Throwable e) {
+                job.completeExceptionally(e);
+            } finally {
+                job.workerDone();
+            }
+        };
+        try {
+            for (int i = 0; i < workers; ++i) executor.execute(worker);
+        } catch (RuntimeException e) {
+            job.completeExceptionally(e);
+        }
+        return job;
+    }
+
+    /**
+     * Performs an action on every pixel of the image, starting a virtual thread for every tile.
+     * An exception thrown by the action on any tile is rethrown once all the tiles are done.
+     *
+     * @param nX     the number of pixels in a row
+     * @param nY     the number of pixels in a column
+     * @param action the action to perform on each pixel
+     */
+    private void forEachTileOnVirtualThreads(int nX, int nY, PixelAction action) {
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Tile tile : Tile.split(nX, nY, Tile.SIZE))
+                futures.add(executor.submit(() -> forEachPixel(tile, action)));
+        }
+        try {
+            for (Future<?> future : futures) future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of worker threads of a render: the configured number of threads, or all the cores
+     * but {@link #SPARE_THREADS} (at least one) when no fixed number is configured.
+     *
+     * @return the number of worker threads
+     */
+    private int defaultWorkers() {
+        return threadsCount > 0 ? threadsCount
+                : Math.max(1, Runtime.getRuntime().availableProcessors() - SPARE_THREADS);
+    }
+
+    /**
+     * Chooses the number of render threads by a short calibration pass. A sparse sample of about
+     * {@link #CALIBRATION_PIXELS} pixels spread over the image is rendered by 1, 2, 4... threads up to the
+     * number of cores, after a warm-up round, and the smallest count whose throughput is not beaten by
+     * more than 10% by a bigger count is chosen. The calibration pixels are real pixels of the image,
+     * and since every pixel re-seeds its random stream they are rendered again identically later.
+     *
+     * @param nX the number of pixels in a row
+     * @param nY the number of pixels in a column
+     * @return the chosen number of threads
+     */
+    private int calibrateThreads(int nX, int nY) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (cores == 1) return 1;
+        int stride = Math.max(1, nX * nY / CALIBRATION_PIXELS);
+        int samples = (nX * nY + stride - 1) / stride;
+
+        runCalibration(nX, nY, stride, samples, cores); // warm-up
+        int best = 1;
+        double bestTime = Double.MAX_VALUE;
+        for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+            double time = runCalibration(nX, nY, stride, samples, threads);
+            if (time < bestTime * 0.9) {
+                best = threads;
+                bestTime = time;
+            }
+            if (threads == cores) return best;
+        }
+    }
+
+    /**
+     * Renders the calibration sample (every stride-th pixel) by a number of platform threads.
+     *
+     * @param nX      the number of pixels in a row
+     * @param nY      the number of pixels in a column
+     * @param stride  the distance (in scan order) between the sampled pixels
+     * @param samples the number of sampled pixels
+     * @param threads the number of threads
+     * @return the wall-clock time of the render in nanoseconds
+     */
+    private long runCalibration(int nX, int nY, int stride, int samples, int threads) {
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            for (int i = next.getAndIncrement(); i < samples; i = next.getAndIncrement()) {
+                int index = i * stride;
+                castRay(nX, nY, index % nX, index / nX);
+            }
+        };
+        long start = System.nanoTime();
+        var workers = new LinkedList<Thread>();
+        for (int t = 0; t < threads; ++t) workers.add(new Thread(worker));
+        for (var thread : workers) thread.start();
+        try {
+            for (var thread : workers) thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Renders the image with adaptive antialiasing. A first pass traces one ray through the center of
+     * every pixel and keeps its color, the geometry it hit and the depth of the hit. A second pass refines
+     * only the pixels that differ from a neighbour in color (beyond {@link #antiAliasingTolerance}),
+     * in the geometry they see, or in depth (beyond {@link #DEPTH_TOLERANCE}).
+     *
+     * @param nX the number of pixels in a row
+     * @param nY the number of pixels in a column
+     */
+    private void renderAntiAliased(int nX, int nY) {
+        Color[] colors = new Color[nX * nY];
+        Geometry[] geometries = new Geometry[nX * nY];
+        double[] depths = new double[nX * nY];
+
+        forEachPixel(nX, nY, (row, col) -> {
+            Util.seedRandom(pixelSeed(nX, col, row));
+            Ray ray = constructRay(nX, nY, col, row);
+            GeoPoint intersection = rayTracer.findClosestIntersection(ray);
+            Color color = rayTracer.traceRay(ray, intersection);
+            int index = row * nX + col;
+            colors[index] = color;
+            geometries[index] = intersection == null ? null : intersection.geometry;
+            depths[index] = intersection == null ? Double.POSITIVE_INFINITY : intersection.point.distance(p0);
+            imageWriter.writePixel(col, row, color);
+        });
+
+        forEachPixel(nX, nY, (row, col) -> {
+            int index = row * nX + col;
+            if ((col > 0 && isEdge(colors, geometries, depths, index, index - 1))
+                    || (col < nX - 1 && isEdge(colors, geometries, depths, index, index + 1))
+                    || (row > 0 && isEdge(colors, geometries, depths, index, index - nX))
+                    || (row < nY - 1 && isEdge(colors, geometries, depths, index, index + nX)))
+                imageWriter.writePixel(col, row, refinePixel(nX, nY, col, row, colors[index]));
+        });
+    }
+
+    /**
+     * Checks whether there is an edge between two pixels of the first antialiasing pass.
+     *
+     * @param colors     the colors of the first pass
+     * @param geometries the geometries seen by the first pass
+     * @param depths     the depths of the first pass hits
+     * @param index      the index of the first pixel
+     * @param other      the index of the second pixel
+     * @return true if the pixels differ in color, geometry or depth
+     */
+    private boolean isEdge(Color[] colors, Geometry[] geometries, double[] depths, int index, int other) {
+        if (!Objects.equals(geometries[index], geometries[other])) return true;
+        if (!colors[index].isSimilar(colors[other], antiAliasingTolerance)) return true;
+        double depth = depths[index], otherDepth = depths[other];
+        return depth != otherDepth && Math.abs(depth - otherDepth) > DEPTH_TOLERANCE * Math.min(depth, otherDepth);
+    }
+
+    /**
+     * Refines a pixel by stratified super sampling. The pixel is divided into a square grid of up to
+     * {@link #antiAliasingSamples} cells, and one jittered ray is traced in each cell. The four corner cells
+     * are traced first: if they agree with the center sample, the pixel is smooth after all and the
+     * five samples are enough.
+     *
+     * @param nX     the number of pixels in a row
+     * @param nY     the number of pixels in a column
+     * @param col    the column index of the pixel
+     * @param row    the row index of the pixel
+     * @param center the color of the first pass sample
+     * @return the antialiased color of the pixel
+     */
+    private Color refinePixel(int nX, int nY, int col, int row, Color center) {
+        Util.seedRandom(pixelSeed(nX, col, row) + 1);
+        int grid = (int) Math.sqrt(antiAliasingSamples);
+        int last = grid - 1;
+
+        Color sum = Color.BLACK;
+        boolean smooth = true;
+        int[][] corners = {{0, 0}, {last, last}, {0, last}, {last, 0}};
+        for (int[] cell : corners) {
+            Color color = sampleCell(nX, nY, col, row, cell[0], cell[1], grid);
+            smooth = smooth && color.isSimilar(center, antiAliasingTolerance);
+            sum = sum.add(color);
+        }
+        if (smooth || grid <= 2) return sum.add(center).reduce(5);
+
+        for (int y = 0; y < grid; ++y)
+            for (int x = 0; x < grid; ++x)
+                if ((x != 0 && x != last) || (y != 0 && y != last))
+                    sum = sum.add(sampleCell(nX, nY, col, row, x, y, grid));
+        return sum.reduce(grid * grid);
+    }
+
+    /**
+     * Traces a jittered ray through a cell of the sub-pixel grid.
+     *
+     * @param nX   the number of pixels in a row
+     * @param nY   the number of pixels in a column
+     * @param col  the column index of the pixel
+     * @param row  the row index of the pixel
+     * @param x    the column of the cell in the sub-pixel grid
+     * @param y    the row of the cell in the sub-pixel grid
+     * @param grid the number of cells along a side of the sub-pixel grid
+     * @return the color seen by the ray
+     */
+    private Color sampleCell(int nX, int nY, int col, int row, int x, int y, int grid) {
+        double dx = (x + Util.random(0, 1)) / grid - 0.5;
+        double dy = (y + Util.random(0, 1)) / grid - 0.5;
+        return rayTracer.traceRay(constructRay(nX, nY, col, row, dx, dy));
     }
 
 
@@ -337,29 +916,136 @@ public class Camera implements Cloneable {
      */
     public void writeToImage() {
         this.imageWriter.writeToImage();
+        if (costMap != null) costMap.writeHeatmaps(imageWriter.getImageName());
     }
 
     /**
      * Casts a ray through the specified pixel and sets the pixel's color based on the result of the ray tracing.
      *
-     * @param nX the number of pixels in the X direction
-     * @param nY the number of pixels in the Y direction
-     * @param i  the row index of the pixel
-     * @param j  the column index of the pixel
+     * @param nX  the number of pixels in the X direction
+     * @param nY  the number of pixels in the Y direction
+     * @param col the column index of the pixel
+     * @param row the row index of the pixel
      */
-    private void castRay(int nX, int nY, int i, int j) {
-        Ray ray = constructRay(nX, nY, j, i);
+    private void castRay(int nX, int nY, int col, int row) {
+        long pixelSeed = pixelSeed(nX, col, row);
+        Util.seedRandom(pixelSeed);
+        Ray ray = constructRay(nX, nY, col, row);
+        if ((pixelSeed & (PathTraceEvent.SAMPLE_RATE - 1)) != 0) {
+            this.imageWriter.writePixel(col, row, this.rayTracer.traceRay(ray));
+            return;
+        }
+
+        // a sampled pixel, recorded as a path trace event
+        PathTraceEvent event = new PathTraceEvent();
+        long rays = RayTracerBase.getRayCount();
+        RayTracerBase.resetMaxDepth();
+        event.begin();
         Color color = this.rayTracer.traceRay(ray);
-        this.imageWriter.writePixel(j, i, color);
+        event.end();
+        this.imageWriter.writePixel(col, row, color);
+        if (event.shouldCommit()) {
+            event.row = row;
+            event.col = col;
+            event.rays = RayTracerBase.getRayCount() - rays;
+            event.depth = RayTracerBase.resetMaxDepth();
+            event.commit();
+        }
+    }
+
+    /**
+     * Calculates the random seed of a pixel by mixing the camera's seed with the pixel index
+     * (the SplitMix64 finalizer), so neighbouring pixels get unrelated random streams. The pixel index is
+     * row-major, so every pixel of the image has its own stream whatever the ratio between its sides.
+     *
+     * @param nX  the number of pixels in a row
+     * @param col the column index of the pixel
+     * @param row the row index of the pixel
+     * @return the seed of the pixel's random stream
+     */
+    long pixelSeed(int nX, int col, int row) {
+        long z = seed + ((long) row * nX + col + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Sets the seed of the random sampling (glossy cones, Russian roulette).
+     * Renders with the same seed are identical regardless of the multithreading mode.
+     *
+     * @param seed the sampling seed
+     * @return the current {@code Camera} instance
+     */
+    public Camera setSeed(long seed) {
+        this.seed = seed;
+        return this;
     }
 
+    /**
+     * Enables adaptive antialiasing. Every pixel gets one sample first, and only pixels on color, geometry
+     * or depth edges are refined with up to the given number of stratified samples.
+     *
+     * @param maxSamples the maximal number of samples of a refined pixel, at least 4 (a 2 x 2 grid), or 1 to
+     *                   disable antialiasing
+     * @param tolerance  the color difference (in 8-bit levels) between neighbouring pixels that counts as an edge
+     * @return the current {@code Camera} instance
+     * @throws IllegalArgumentException if maxSamples is 2 or 3, which can't refine a pixel, or not positive, or
+     *                                  if the tolerance is negative
+     */
+    public Camera setAntiAliasing(int maxSamples, double tolerance) {
+        if (maxSamples < 1 || (maxSamples > 1 && maxSamples < 4))
+            throw new IllegalArgumentException("antialiasing needs at least 4 samples, or 1 to disable it");
+        if (tolerance < 0) throw new IllegalArgumentException("tolerance can't be negative");
+        antiAliasingSamples = maxSamples;
+        antiAliasingTolerance = tolerance;
+        return this;
+    }
+
+    /**
+     * Sets the multithreading of the {@link Execution#THREADS} execution mode.
+     *
+     * @param threads the number of threads, 0 for no threads, -1 for a parallel stream, or -2 for choosing
+     *                the number of threads by a calibration pass on the next render
+     * @return the current {@code Camera} instance
+     */
     public Camera setMultithreading(int threads) {
         if (threads < -2) throw new IllegalArgumentException("Multithreading must be -2 or higher");
-        if (threads >= -1) threadsCount = threads;
-        else { // == -2
-            int cores = Runtime.getRuntime().availableProcessors() - SPARE_THREADS;
-            threadsCount = cores <= 2 ? 1 : cores;
-        }
+        threadsCount = threads;
+        return this;
+    }
+
+    /**
+     * Sets the diagnostics mode, in which renders measure the time, the rays and the intersection tests of
+     * every pixel. {@link #writeToImage()} then writes their heatmaps alongside the image, named after the
+     * image with the suffixes {@code _time}, {@code _rays} and {@code _tests}. Outside diagnostics mode the
+     * intersection tests are not counted, so that ordinary renders don't pay for the measures.
+     *
+     * @param diagnostics whether to measure the cost of every pixel
+     * @return the current {@code Camera} instance
+     */
+    public Camera setDiagnostics(boolean diagnostics) {
+        this.diagnostics = diagnostics;
+        return this;
+    }
+
+    /**
+     * Returns the pixel costs measured by the last render in diagnostics mode.
+     *
+     * @return the cost map, or null if the last render was not in diagnostics mode
+     */
+    public CostMap getCostMap() {
+        return costMap;
+    }
+
+    /**
+     * Sets the execution mode of the renders.
+     *
+     * @param execution the way the pixels are distributed between threads
+     * @return the current {@code Camera} instance
+     */
+    public Camera setExecution(Execution execution) {
+        this.execution = execution;
         return this;
     }
 
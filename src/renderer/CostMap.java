@@ -0,0 +1,150 @@
+package renderer;
+
+import geometries.Intersectable;
+import primitives.Color;
+
+/**
+ * The rendering cost of every pixel of an image: the time it took, the rays it traced and the
+ * intersection tests it performed. The costs can be written as false-color heatmaps, where black is free,
+ * blue and red are moderate and yellow to white are the most expensive pixels. The heatmaps are on a
+ * logarithmic scale, since pixel costs commonly vary by orders of magnitude.
+ */
+public class CostMap {
+    /**
+     * The colors of the heatmap scale, from the cheapest to the most expensive
+     */
+    private static final Color[] SCALE = {
+            Color.BLACK, new Color(0, 0, 255), new Color(255, 0, 0), new Color(255, 255, 0), new Color(255, 255, 255)
+    };
+
+    /**
+     * The number of pixels in a row
+     */
+    private final int nX;
+    /**
+     * The number of pixels in a column
+     */
+    private final int nY;
+    /**
+     * The rendering time of each pixel in nanoseconds, row by row
+     */
+    private final long[] nanos;
+    /**
+     * The number of rays traced by each pixel, row by row
+     */
+    private final long[] rays;
+    /**
+     * The number of intersection tests performed by each pixel, row by row
+     */
+    private final long[] tests;
+
+    /**
+     * Constructs an empty cost map.
+     *
+     * @param nX the number of pixels in a row
+     * @param nY the number of pixels in a column
+     */
+    CostMap(int nX, int nY) {
+        this.nX = nX;
+        this.nY = nY;
+        nanos = new long[nX * nY];
+        rays = new long[nX * nY];
+        tests = new long[nX * nY];
+    }
+
+    /**
+     * Wraps a pixel action with measuring its cost. A pixel measured more than once (e.g. by several
+     * passes of a render) accumulates its costs.
+     *
+     * @param action the action to measure
+     * @return the measuring action
+     */
+    Camera.PixelAction measure(Camera.PixelAction action) {
+        return (row, col) -> {
+            long rayCount = RayTracerBase.getRayCount();
+            long testCount = Intersectable.getIntersectionTests();
+            long start = System.nanoTime();
+            action.apply(row, col);
+            int index = row * nX + col;
+            nanos[index] += System.nanoTime() - start;
+            rays[index] += RayTracerBase.getRayCount() - rayCount;
+            tests[index] += Intersectable.getIntersectionTests() - testCount;
+        };
+    }
+
+    /**
+     * The rendering time of a pixel
+     *
+     * @param row the row of the pixel
+     * @param col the column of the pixel
+     * @return the time in nanoseconds
+     */
+    public long getNanos(int row, int col) {
+        return nanos[row * nX + col];
+    }
+
+    /**
+     * The number of rays traced by a pixel
+     *
+     * @param row the row of the pixel
+     * @param col the column of the pixel
+     * @return the number of rays
+     */
+    public long getRays(int row, int col) {
+        return rays[row * nX + col];
+    }
+
+    /**
+     * The number of intersection tests performed by a pixel
+     *
+     * @param row the row of the pixel
+     * @param col the column of the pixel
+     * @return the number of intersection tests
+     */
+    public long getIntersectionTests(int row, int col) {
+        return tests[row * nX + col];
+    }
+
+    /**
+     * Writes the heatmaps of the time, the rays and the intersection tests, as the images
+     * {@code <name>_time}, {@code <name>_rays} and {@code <name>_tests}.
+     *
+     * @param name the base name of the images
+     */
+    public void writeHeatmaps(String name) {
+        writeHeatmap(name + "_time", nanos);
+        writeHeatmap(name + "_rays", rays);
+        writeHeatmap(name + "_tests", tests);
+    }
+
+    /**
+     * Writes the heatmap of a cost, scaled logarithmically to the most expensive pixel.
+     *
+     * @param name  the name of the image
+     * @param costs the cost of each pixel
+     */
+    private void writeHeatmap(String name, long[] costs) {
+        long max = 0;
+        for (long cost : costs) max = Math.max(max, cost);
+        double scale = Math.log1p(max);
+        ImageWriter imageWriter = new ImageWriter(name, nX, nY);
+        for (int row = 0; row < nY; ++row)
+            for (int col = 0; col < nX; ++col)
+                imageWriter.writePixel(col, row,
+                        heatColor(max == 0 ? 0 : Math.log1p(costs[row * nX + col]) / scale));
+        imageWriter.writeToImage();
+    }
+
+    /**
+     * Returns the color of a relative cost on the heatmap scale.
+     *
+     * @param t the relative cost, between 0 (free) and 1 (the most expensive)
+     * @return the color of the cost
+     */
+    static Color heatColor(double t) {
+        double position = Math.clamp(t, 0, 1) * (SCALE.length - 1);
+        int low = Math.min((int) position, SCALE.length - 2);
+        double fraction = position - low;
+        return SCALE[low].scale(1 - fraction).add(SCALE[low + 1].scale(fraction));
+    }
+}
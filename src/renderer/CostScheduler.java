@@ -0,0 +1,193 @@
+package renderer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Schedules the tiles of a render by their predicted cost. A coarse probe pass first renders one pixel
+ * out of every {@value #PROBE_STEP}x{@value #PROBE_STEP} block and counts the rays each of them traced.
+ * The tiles are then dispatched to the workers most expensive first, and tiles predicted to take a big
+ * share of the whole render are split further, so that no worker is left with a long tile at the end
+ * while the others are idle.
+ * <p>
+ * The probe pixels are real pixels of the image, so the main pass skips them instead of rendering
+ * them again.
+ * </p>
+ */
+final class CostScheduler {
+    /**
+     * The distance in pixels between neighbouring probe pixels (in both axes).
+     */
+    static final int PROBE_STEP = 4;
+    /**
+     * A tile predicted to cost more than this fraction of a worker's share of the render is split.
+     */
+    private static final int HOT_SHARE = 4;
+
+    /**
+     * The number of pixels in a row
+     */
+    private final int nX;
+    /**
+     * The number of pixels in a column
+     */
+    private final int nY;
+    /**
+     * The action performed on each pixel
+     */
+    private final Camera.PixelAction action;
+    /**
+     * The number of worker threads
+     */
+    private final int workers;
+    /**
+     * The number of probe pixels in a row
+     */
+    private final int probeCols;
+    /**
+     * The number of rays traced by each probe pixel (plus one, so that no pixel is free), row by row
+     */
+    private final long[] probeCost;
+
+    /**
+     * Constructs a scheduler for a render.
+     *
+     * @param nX      the number of pixels in a row
+     * @param nY      the number of pixels in a column
+     * @param action  the action to perform on each pixel
+     * @param workers the number of worker threads
+     */
+    CostScheduler(int nX, int nY, Camera.PixelAction action, int workers) {
+        this.nX = nX;
+        this.nY = nY;
+        this.action = action;
+        this.workers = workers;
+        probeCols = (nX + PROBE_STEP - 1) / PROBE_STEP;
+        probeCost = new long[probeCols * ((nY + PROBE_STEP - 1) / PROBE_STEP)];
+    }
+
+    /**
+     * Performs the action on every pixel of the image: the probe pass, then the tiles longest first.
+     */
+    void run() {
+        AtomicInteger nextProbe = new AtomicInteger();
+        RayTracerBase.countRays(true);
+        try {
+            runWorkers(() -> {
+                for (int i = nextProbe.getAndIncrement(); i < probeCost.length; i = nextProbe.getAndIncrement()) {
+                    long before = RayTracerBase.getRayCount();
+                    action.apply(i / probeCols * PROBE_STEP, i % probeCols * PROBE_STEP);
+                    probeCost[i] = RayTracerBase.getRayCount() - before + 1;
+                }
+            });
+        } finally {
+            RayTracerBase.countRays(false);
+        }
+
+        List<Tile> tiles = plan();
+        AtomicInteger nextTile = new AtomicInteger();
+        runWorkers(() -> {
+            for (int i = nextTile.getAndIncrement(); i < tiles.size(); i = nextTile.getAndIncrement())
+                renderTile(tiles.get(i));
+        });
+    }
+
+    /**
+     * Plans the main pass: divides the image into tiles, splits the hot ones and sorts them by their
+     * predicted cost, most expensive first.
+     *
+     * @return the tiles in dispatch order
+     */
+    List<Tile> plan() {
+        long total = 0;
+        for (long cost : probeCost) total += cost;
+        long hot = Math.max(1, total / ((long) workers * HOT_SHARE));
+
+        List<Tile> tiles = new ArrayList<>();
+        for (Tile tile : Tile.split(nX, nY, Tile.SIZE)) split(tile, hot, tiles);
+        tiles.sort(Comparator.comparingLong(this::estimate).reversed());
+        return tiles;
+    }
+
+    /**
+     * Adds a tile to the plan, split into quarters recursively while it is predicted to be hot
+     * and is larger than a probe block.
+     *
+     * @param tile  the tile
+     * @param hot   the predicted cost above which a tile is split
+     * @param tiles the list the tiles are added to
+     */
+    private void split(Tile tile, long hot, List<Tile> tiles) {
+        if (estimate(tile) <= hot || tile.rows() <= PROBE_STEP && tile.cols() <= PROBE_STEP) {
+            tiles.add(tile);
+            return;
+        }
+        int rows = half(tile.rows()), cols = half(tile.cols());
+        split(new Tile(tile.row(), tile.col(), rows, cols), hot, tiles);
+        if (cols < tile.cols())
+            split(new Tile(tile.row(), tile.col() + cols, rows, tile.cols() - cols), hot, tiles);
+        if (rows < tile.rows()) {
+            split(new Tile(tile.row() + rows, tile.col(), tile.rows() - rows, cols), hot, tiles);
+            if (cols < tile.cols())
+                split(new Tile(tile.row() + rows, tile.col() + cols, tile.rows() - rows, tile.cols() - cols),
+                        hot, tiles);
+        }
+    }
+
+    /**
+     * Returns the first half of a tile side, rounded up to whole probe blocks so that the halves stay
+     * aligned with the probe pixels.
+     *
+     * @param side the side in pixels
+     * @return the size of the first half
+     */
+    private static int half(int side) {
+        int blocks = (side + PROBE_STEP - 1) / PROBE_STEP;
+        return Math.min(side, (blocks + 1) / 2 * PROBE_STEP);
+    }
+
+    /**
+     * Predicts the cost of a tile by the rays traced by the probe pixels inside it.
+     *
+     * @param tile the tile, aligned with the probe blocks
+     * @return the predicted cost
+     */
+    long estimate(Tile tile) {
+        long cost = 0;
+        for (int row = tile.row(); row < tile.row() + tile.rows(); row += PROBE_STEP)
+            for (int col = tile.col(); col < tile.col() + tile.cols(); col += PROBE_STEP)
+                cost += probeCost[row / PROBE_STEP * probeCols + col / PROBE_STEP];
+        return cost;
+    }
+
+    /**
+     * Performs the action on the pixels of a tile that were not rendered by the probe pass.
+     *
+     * @param tile the tile
+     */
+    private void renderTile(Tile tile) {
+        Camera.forEachPixel(tile, (row, col) -> {
+            if (row % PROBE_STEP != 0 || col % PROBE_STEP != 0) action.apply(row, col);
+        });
+    }
+
+    /**
+     * Runs a task on every worker thread and waits for all of them.
+     *
+     * @param task the task of a worker
+     */
+    private void runWorkers(Runnable task) {
+        var threads = new LinkedList<Thread>();
+        for (int t = 0; t < workers; ++t) threads.add(new Thread(task));
+        for (var thread : threads) thread.start();
+        try {
+            for (var thread : threads) thread.join();
+        } catch (InterruptedException e) {
+            for (var thread : threads) thread.interrupt();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
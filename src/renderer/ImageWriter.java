@@ -9,6 +9,7 @@ import java.util.logging.Logger;
 import javax.imageio.ImageIO;
 
 import primitives.Color;
+import profiling.ImageEncodingEvent;
 
 /**
  * Image writer class combines accumulation of pixel color matrix and finally
@@ -84,6 +85,15 @@ public class ImageWriter {
         return nX;
     }
 
+    /**
+     * The name of the image file
+     *
+     * @return the image file name, not including the file extension
+     */
+    public String getImageName() {
+        return imageName;
+    }
+
     // ***************** Operations ******************** //
 
     /**
@@ -92,15 +102,33 @@ public class ImageWriter {
      * pixel color matrix in the directory of the project
      */
     public void writeToImage() {
+        ImageEncodingEvent event = new ImageEncodingEvent();
+        event.begin();
         try {
             File file = new File(FOLDER_PATH + '/' + imageName + ".png");
             ImageIO.write(image, "png", file);
+            event.image = imageName;
+            event.width = nX;
+            event.height = nY;
+            event.commit();
         } catch (IOException e) {
             logger.log(Level.SEVERE, "I/O error", e);
             throw new IllegalStateException("I/O error - may be missing directory " + FOLDER_PATH, e);
         }
     }
 
+    /**
+     * Function copyImage produces a copy of the pixel color matrix as it is at the
+     * moment, e.g. for showing a partially rendered image
+     *
+     * @return a copy of the image buffer
+     */
+    public BufferedImage copyImage() {
+        BufferedImage copy = new BufferedImage(nX, nY, BufferedImage.TYPE_INT_RGB);
+        copy.setData(image.getData());
+        return copy;
+    }
+
     /**
      * The function writePixel writes a color of a specific pixel into pixel color
      * matrix
@@ -18,6 +18,10 @@ record Pixel(int row, int col) {
         Pixel.maxRows = maxRows;
         Pixel.maxCols = maxCols;
         Pixel.totalPixels = (long) maxRows * maxCols;
+        cRow = 0;
+        cCol = -1;
+        pixels = 0;
+        lastPrinted = 0;
         printInterval = (int) (interval * 10);
         if (print = printInterval != 0) System.out.printf(PRINT_FORMAT, 0d);
     }
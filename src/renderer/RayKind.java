@@ -0,0 +1,19 @@
+package renderer;
+
+/**
+ * The kinds of rays intersected with a scene, for render statistics.
+ */
+public enum RayKind {
+    /**
+     * A ray from the camera through a pixel
+     */
+    CAMERA,
+    /**
+     * A reflected or refracted ray
+     */
+    SECONDARY,
+    /**
+     * A ray from a surface point towards a light source
+     */
+    SHADOW
+}
@@ -1,9 +1,12 @@
 package renderer;
 
+import geometries.Intersectable.GeoPoint;
 import primitives.Color;
 import primitives.Ray;
 import scene.Scene;
 
+import java.util.List;
+
 /**
  * The {@code RayTracerBase} class is an abstract base class for ray tracing operations.
  * It contains a reference to a {@code Scene} and provides an abstract method for tracing rays.
@@ -13,6 +16,25 @@ public abstract class RayTracerBase {
      * The scene to be used for ray tracing.
      */
     protected final Scene scene;
+    /**
+     * The index of the first per kind ray count in the statistics of a thread
+     */
+    private static final int KIND_STATS = 2;
+    /**
+     * The ray statistics of each thread, for estimating the cost of rendering parts of the image:
+     * the number of rays traced, the maximal recursion depth reached since the last reset, and the number
+     * of rays of each {@link RayKind}.
+     */
+    private static final ThreadLocal<long[]> rayStats =
+            ThreadLocal.withInitial(() -> new long[KIND_STATS + RayKind.values().length]);
+    /**
+     * The number of the clients currently counting the rays
+     */
+    private static int rayCounters = 0;
+    /**
+     * Whether the ray statistics are collected, so that renders that don't need them don't pay for them
+     */
+    private static volatile boolean countingRays = false;
 
     /**
      * Constructs a {@code RayTracerBase} with the specified scene.
@@ -30,5 +52,105 @@ public abstract class RayTracerBase {
      * @return the color determined by the ray tracing algorithm
      */
     public abstract Color traceRay(Ray ray);
-}
 
+    /**
+     * Calculates the color seen by a ray whose closest intersection was already found.
+     * Lets a caller that needs the intersection itself (e.g. for edge detection) avoid intersecting twice.
+     *
+     * @param ray          the traced ray
+     * @param intersection the closest intersection of the ray, or null if the ray hits nothing
+     * @return the color determined by the ray tracing algorithm
+     */
+    public abstract Color traceRay(Ray ray, GeoPoint intersection);
+
+    /**
+     * Finds the closest intersection point between the ray and the geometries in the scene.
+     *
+     * @param ray the ray to be traced
+     * @return the closest intersection point, or null if no intersections are found
+     */
+    protected GeoPoint findClosestIntersection(Ray ray) {
+        return findClosestIntersection(ray, RayKind.CAMERA);
+    }
+
+    /**
+     * Finds the closest intersection point between the ray and the geometries in the scene.
+     *
+     * @param ray  the ray to be traced
+     * @param kind the kind of the ray, for the statistics
+     * @return the closest intersection point, or null if no intersections are found
+     */
+    protected GeoPoint findClosestIntersection(Ray ray, RayKind kind) {
+        countRay(kind);
+        List<GeoPoint> intersections = this.scene.getRenderGeometries().findGeoIntersections(ray);
+        return ray.findClosestGeoPoint(intersections);
+    }
+
+    /**
+     * Counts a ray intersected with the scene by the current thread.
+     *
+     * @param kind the kind of the ray
+     */
+    protected static void countRay(RayKind kind) {
+        if (!countingRays) return;
+        long[] stats = rayStats.get();
+        ++stats[0];
+        ++stats[KIND_STATS + kind.ordinal()];
+    }
+
+    /**
+     * Starts or stops collecting the ray statistics for a client (e.g. a render in diagnostics mode).
+     * The statistics are collected as long as any client collects them; every start must be followed by
+     * a stop.
+     *
+     * @param count true to start collecting, false to stop
+     */
+    static synchronized void countRays(boolean count) {
+        rayCounters = Math.max(0, rayCounters + (count ? 1 : -1));
+        countingRays = rayCounters > 0;
+    }
+
+    /**
+     * Returns the number of rays the current thread has intersected with the scene so far.
+     * The difference between two calls is the number of rays traced in between, while the rays are counted
+     * (see {@link #countRays(boolean)}).
+     *
+     * @return the number of rays traced by the current thread
+     */
+    static long getRayCount() {
+        return rayStats.get()[0];
+    }
+
+    /**
+     * Returns the number of rays of a kind the current thread has intersected with the scene so far.
+     *
+     * @param kind the kind of the rays
+     * @return the number of rays of the kind traced by the current thread
+     */
+    static long getRayCount(RayKind kind) {
+        return rayStats.get()[KIND_STATS + kind.ordinal()];
+    }
+
+    /**
+     * Records the recursion depth of a secondary ray traced by the current thread.
+     *
+     * @param depth the depth of the ray (1 for a ray spawned at the first hit of a camera ray)
+     */
+    protected static void reachDepth(int depth) {
+        if (!countingRays) return;
+        long[] stats = rayStats.get();
+        if (depth > stats[1]) stats[1] = depth;
+    }
+
+    /**
+     * Returns the maximal recursion depth the current thread reached since the last call, and resets it.
+     *
+     * @return the maximal recursion depth, 0 if only camera rays were traced
+     */
+    static int resetMaxDepth() {
+        long[] stats = rayStats.get();
+        int depth = (int) stats[1];
+        stats[1] = 0;
+        return depth;
+    }
+}
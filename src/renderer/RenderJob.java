@@ -0,0 +1,100 @@
+package renderer;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An asynchronous render of a camera's image. The job completes with the camera when all the tiles
+ * are rendered, or exceptionally with the first exception thrown by a worker.
+ * <p>
+ * Cancelling the job (by {@link #cancel(boolean)}) stops the workers before their next tile, and the
+ * partially rendered image is available at any time by {@link #getPartialImage()}.
+ * </p>
+ */
+public class RenderJob extends CompletableFuture<Camera> {
+    /**
+     * The camera whose image is rendered.
+     */
+    private final Camera camera;
+    /**
+     * The image writer holding the rendered pixels.
+     */
+    private final ImageWriter imageWriter;
+    /**
+     * The tiles of the image, in rendering order.
+     */
+    private final List<Tile> tiles;
+    /**
+     * The index of the next tile to hand to a worker.
+     */
+    private final AtomicInteger nextTile = new AtomicInteger();
+    /**
+     * The number of completely rendered tiles.
+     */
+    private final AtomicInteger doneTiles = new AtomicInteger();
+    /**
+     * The number of workers that have not finished yet.
+     */
+    private final AtomicInteger activeWorkers;
+
+    /**
+     * Constructs a render job.
+     *
+     * @param camera      the camera whose image is rendered
+     * @param imageWriter the image writer holding the rendered pixels
+     * @param tiles       the tiles of the image, in rendering order
+     * @param workers     the number of workers that will render the tiles
+     */
+    RenderJob(Camera camera, ImageWriter imageWriter, List<Tile> tiles, int workers) {
+        this.camera = camera;
+        this.imageWriter = imageWriter;
+        this.tiles = tiles;
+        this.activeWorkers = new AtomicInteger(workers);
+    }
+
+    /**
+     * Hands the next tile to a worker.
+     *
+     * @return the next tile, or null if all the tiles were handed out or the job is already done
+     */
+    Tile nextTile() {
+        if (isDone()) return null;
+        int index = nextTile.getAndIncrement();
+        return index < tiles.size() ? tiles.get(index) : null;
+    }
+
+    /**
+     * Reports a completely rendered tile.
+     */
+    void tileDone() {
+        doneTiles.incrementAndGet();
+    }
+
+    /**
+     * Reports a finished worker. The last worker completes the job, unless it was already
+     * cancelled or failed.
+     */
+    void workerDone() {
+        if (activeWorkers.decrementAndGet() == 0) complete(camera);
+    }
+
+    /**
+     * Returns the fraction of the image rendered so far.
+     *
+     * @return the progress in range [0, 1]
+     */
+    public double getProgress() {
+        return tiles.isEmpty() ? 1 : (double) doneTiles.get() / tiles.size();
+    }
+
+    /**
+     * Returns a copy of the image as rendered so far. Tiles that were not rendered yet are black.
+     *
+     * @return a snapshot of the partially rendered image
+     */
+    public BufferedImage getPartialImage() {
+        return imageWriter.copyImage();
+    }
+}
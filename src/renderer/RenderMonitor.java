@@ -0,0 +1,288 @@
+package renderer;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The live metrics and controls of an active render, exposed as an MBean named
+ * {@code renderer:type=Render,name=<image name>,id=<number>} for as long as the render runs.
+ * The monitor wraps every pixel of the render: it counts the pixels and their rays and checks the
+ * pause and cancel requests before each pixel.
+ */
+class RenderMonitor implements RenderMonitorMBean, AutoCloseable {
+    /**
+     * The number of renders started, for unique MBean names
+     */
+    private static final AtomicInteger renders = new AtomicInteger();
+    /**
+     * logger for reporting registration failures
+     */
+    private static final Logger logger = Logger.getLogger("RenderMonitor");
+
+    /**
+     * The name of the rendered image
+     */
+    private final String imageName;
+    /**
+     * The name the monitor is registered by, or null if the registration failed
+     */
+    private ObjectName objectName;
+    /**
+     * The start time of the render in nanoseconds
+     */
+    private final long start = System.nanoTime();
+    /**
+     * The number of pixels in the started passes
+     */
+    private final LongAdder total = new LongAdder();
+    /**
+     * The number of pixels started
+     */
+    private final LongAdder started = new LongAdder();
+    /**
+     * The number of pixels done
+     */
+    private final LongAdder done = new LongAdder();
+    /**
+     * The number of rays of each kind
+     */
+    private final LongAdder[] rays = new LongAdder[RayKind.values().length];
+    /**
+     * The number of threads rendering a pixel at the moment
+     */
+    private final AtomicInteger active = new AtomicInteger();
+    /**
+     * The threads that rendered pixels of the render, with their priorities before the render
+     */
+    private final Map<Thread, Integer> threads = new ConcurrentHashMap<>();
+    /**
+     * Whether the render is paused
+     */
+    private volatile boolean paused = false;
+    /**
+     * Whether the render is cancelled
+     */
+    private volatile boolean cancelled = false;
+    /**
+     * The priority of the render threads
+     */
+    private volatile int priority = Thread.NORM_PRIORITY;
+    /**
+     * Whether the priority of the render threads was set, so that they are restored at the end
+     */
+    private volatile boolean prioritized = false;
+
+    /**
+     * Constructs the monitor of a render and registers it in the platform MBean server.
+     * A render whose monitor can't be registered runs unmonitored. The rays are counted as long as the
+     * monitor is registered, so that it reports live ray rates of every render.
+     *
+     * @param imageName the name of the rendered image
+     */
+    RenderMonitor(String imageName) {
+        this.imageName = imageName;
+        for (int i = 0; i < rays.length; ++i) rays[i] = new LongAdder();
+        try {
+            objectName = new ObjectName("renderer:type=Render,name=" + ObjectName.quote(imageName)
+                    + ",id=" + renders.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            RayTracerBase.countRays(true);
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Render monitor registration failed", e);
+            objectName = null;
+        }
+    }
+
+    /**
+     * Starts a pass over the pixels of the image and wraps its pixel action with the monitoring.
+     *
+     * @param pixels the number of pixels of the pass
+     * @param action the pixel action of the pass
+     * @return the monitored action
+     */
+    Camera.PixelAction startPass(int pixels, Camera.PixelAction action) {
+        total.add(pixels);
+        return (row, col) -> {
+            Thread thread = Thread.currentThread();
+            if (!threads.containsKey(thread)) register(thread);
+            // a thread is active before it checks the pause, so that once a paused render has no active
+            // threads, no thread can start a pixel until the render is resumed
+            active.incrementAndGet();
+            try {
+                if (paused) {
+                    active.decrementAndGet();
+                    try {
+                        awaitResume();
+                    } finally {
+                        active.incrementAndGet();
+                    }
+                }
+                if (cancelled) return;
+                started.increment();
+                long camera = RayTracerBase.getRayCount(RayKind.CAMERA);
+                long secondary = RayTracerBase.getRayCount(RayKind.SECONDARY);
+                long shadow = RayTracerBase.getRayCount(RayKind.SHADOW);
+                try {
+                    action.apply(row, col);
+                } finally {
+                    rays[RayKind.CAMERA.ordinal()].add(RayTracerBase.getRayCount(RayKind.CAMERA) - camera);
+                    rays[RayKind.SECONDARY.ordinal()].add(RayTracerBase.getRayCount(RayKind.SECONDARY) - secondary);
+                    rays[RayKind.SHADOW.ordinal()].add(RayTracerBase.getRayCount(RayKind.SHADOW) - shadow);
+                    done.increment();
+                }
+            } finally {
+                active.decrementAndGet();
+            }
+        };
+    }
+
+    /**
+     * Registers a thread that renders pixels, remembering its priority and applying the render's priority
+     * to it if it was set.
+     *
+     * @param thread the thread
+     */
+    private void register(Thread thread) {
+        threads.putIfAbsent(thread, thread.getPriority());
+        if (prioritized) thread.setPriority(priority);
+    }
+
+    /**
+     * Blocks the calling thread while the render is paused.
+     */
+    private synchronized void awaitResume() {
+        try {
+            while (paused && !cancelled) wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Throws if the render was cancelled.
+     *
+     * @throws CancellationException if the render was cancelled
+     */
+    void checkCancelled() {
+        if (cancelled) throw new CancellationException("Render of " + imageName + " was cancelled");
+    }
+
+    @Override
+    public String getImageName() {
+        return imageName;
+    }
+
+    @Override
+    public long getPixelsDone() {
+        return done.sum();
+    }
+
+    @Override
+    public long getPixelsTotal() {
+        return total.sum();
+    }
+
+    @Override
+    public long getQueueDepth() {
+        return total.sum() - started.sum();
+    }
+
+    @Override
+    public int getActiveThreads() {
+        return active.get();
+    }
+
+    @Override
+    public double getCameraRaysPerSecond() {
+        return rate(RayKind.CAMERA);
+    }
+
+    @Override
+    public double getSecondaryRaysPerSecond() {
+        return rate(RayKind.SECONDARY);
+    }
+
+    @Override
+    public double getShadowRaysPerSecond() {
+        return rate(RayKind.SHADOW);
+    }
+
+    /**
+     * The average rate of rays of a kind since the render started
+     *
+     * @param kind the kind of the rays
+     * @return rays per second
+     */
+    private double rate(RayKind kind) {
+        return rays[kind.ordinal()].sum() / ((System.nanoTime() - start) / 1e9);
+    }
+
+    @Override
+    public double getEstimatedSecondsRemaining() {
+        long pixels = done.sum();
+        if (pixels == 0) return Double.NaN;
+        return (System.nanoTime() - start) / 1e9 * (total.sum() - pixels) / pixels;
+    }
+
+    @Override
+    public boolean isPaused() {
+        return paused;
+    }
+
+    @Override
+    public synchronized void pause() {
+        paused = true;
+    }
+
+    @Override
+    public synchronized void resume() {
+        paused = false;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void cancel() {
+        cancelled = true;
+        notifyAll();
+    }
+
+    @Override
+    public int getPriority() {
+        return priority;
+    }
+
+    @Override
+    public void setPriority(int priority) {
+        if (priority < Thread.MIN_PRIORITY || priority > Thread.MAX_PRIORITY)
+            throw new IllegalArgumentException("Thread priority must be between 1 and 10");
+        this.priority = priority;
+        prioritized = true;
+        for (Thread thread : threads.keySet()) thread.setPriority(priority);
+    }
+
+    /**
+     * Unregisters the monitor and stops its counting of the rays when the render is over, and restores the priorities the render threads had
+     * before the render: they may be shared threads, such as those of the common fork-join pool or of the
+     * caller's executor.
+     */
+    @Override
+    public void close() {
+        if (prioritized)
+            threads.forEach(Thread::setPriority);
+        if (objectName == null) return;
+        RayTracerBase.countRays(false);
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Render monitor unregistration failed", e);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package renderer;
+
+/**
+ * The management interface of an active render, registered in the platform MBean server while the
+ * render runs. Local monitoring tools (e.g. JConsole or VisualVM) can watch the progress of the render
+ * and pause, resume or cancel it.
+ * <p>
+ * The rays are counted while the MBean is registered, at the cost of a thread-local increment per ray;
+ * the costlier count of the intersection tests is kept for diagnostics mode (see
+ * {@link Camera#setDiagnostics(boolean)}).
+ * </p>
+ */
+public interface RenderMonitorMBean {
+    /**
+     * The name of the rendered image
+     *
+     * @return the image name
+     */
+    String getImageName();
+
+    /**
+     * The number of pixels rendered so far (over all the passes of the render)
+     *
+     * @return the number of rendered pixels
+     */
+    long getPixelsDone();
+
+    /**
+     * The number of pixels in the passes started so far
+     *
+     * @return the number of pixels
+     */
+    long getPixelsTotal();
+
+    /**
+     * The number of pixels of the started passes that are not being rendered yet
+     *
+     * @return the queue depth
+     */
+    long getQueueDepth();
+
+    /**
+     * The number of threads rendering a pixel at the moment
+     *
+     * @return the number of active threads
+     */
+    int getActiveThreads();
+
+    /**
+     * The average rate of camera rays since the render started
+     *
+     * @return camera rays per second
+     */
+    double getCameraRaysPerSecond();
+
+    /**
+     * The average rate of reflected and refracted rays since the render started
+     *
+     * @return secondary rays per second
+     */
+    double getSecondaryRaysPerSecond();
+
+    /**
+     * The average rate of shadow rays since the render started
+     *
+     * @return shadow rays per second
+     */
+    double getShadowRaysPerSecond();
+
+    /**
+     * The estimated time until the current pass is complete, by the average pixel rate so far
+     *
+     * @return the estimated remaining seconds, or NaN before the first pixel is done
+     */
+    double getEstimatedSecondsRemaining();
+
+    /**
+     * Whether the render is paused
+     *
+     * @return true if paused
+     */
+    boolean isPaused();
+
+    /**
+     * Pauses the render: the threads stop before their next pixel until the render is resumed
+     */
+    void pause();
+
+    /**
+     * Resumes a paused render
+     */
+    void resume();
+
+    /**
+     * Cancels the render: the remaining pixels are skipped, and the render throws a
+     * {@link java.util.concurrent.CancellationException}
+     */
+    void cancel();
+
+    /**
+     * The scheduling priority of the render threads
+     *
+     * @return the thread priority
+     */
+    int getPriority();
+
+    /**
+     * Changes the scheduling priority of the render threads (ignored by virtual threads, and shared with
+     * other renders in the common fork-join pool)
+     *
+     * @param priority the thread priority, between {@link Thread#MIN_PRIORITY} and {@link Thread#MAX_PRIORITY}
+     */
+    void setPriority(int priority);
+}
@@ -1,16 +1,18 @@
 package renderer;
 
-import geometries.Plane;
 import lighting.LightSource;
 import primitives.*;
 import scene.Scene;
 import geometries.Intersectable.GeoPoint;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static primitives.Util.alignZero;
 import static primitives.Util.isZero;
+import static primitives.Util.random;
 
 /**
  * The {@code SimpleRayTracer} class is a concrete implementation of {@code RayTracerBase}
@@ -25,13 +27,45 @@ public class SimpleRayTracer extends RayTracerBase {
     /**
      * A flag to enable or disable adaptive super sampling.
      */
-    private static boolean adaptiveSuperSampling = false;
+    private boolean adaptiveSuperSampling = false;
+
+    /**
+     * The largest perceptual difference (in 8-bit color levels) between the corners of an adaptive
+     * super sampling cell that still counts as the same color.
+     */
+    private double adaptiveTolerance = 2;
 
     /**
      * Minimum coefficient for color contribution to stop recursion.
      */
     private static final Double3 MIN_CALC_COLOR_K = new Double3(0.001);
 
+    /**
+     * Number of bounces (counted from the primary hit) at which glossy rays may still split into a cone of rays.
+     */
+    private int splitLevels = 2;
+
+    /**
+     * Maximum number of rays a single primary path may fan out into, over all its splits.
+     */
+    private int rayBudget = 128;
+
+    /**
+     * Throughput below which a path no longer splits and continues with a single ray.
+     */
+    private double minSplitK = 0.05;
+
+    /**
+     * Bounce from which paths are terminated by Russian roulette,
+     * {@link #MAX_CALC_COLOR_LEVEL} (the default) disables the roulette.
+     */
+    private int rouletteDepth = MAX_CALC_COLOR_LEVEL;
+
+    /**
+     * The distribution of the glossy (cone) sample rays.
+     */
+    private TargetArea.SamplePattern samplePattern = TargetArea.SamplePattern.JITTERED_GRID;
+
     /**
      * Constructs a {@code SimpleRayTracer} with the specified scene.
      *
@@ -52,6 +86,86 @@ public class SimpleRayTracer extends RayTracerBase {
         return this;
     }
 
+    /**
+     * Sets the color tolerance of adaptive super sampling. A cell is divided only while its corner
+     * colors differ by more than this perceptual distance.
+     *
+     * @param adaptiveTolerance the tolerance in 8-bit color levels
+     * @return the current instance of {@code SimpleRayTracer} for method chaining.
+     */
+    public SimpleRayTracer setAdaptiveTolerance(double adaptiveTolerance) {
+        if (adaptiveTolerance < 0) throw new IllegalArgumentException("tolerance can't be negative");
+        this.adaptiveTolerance = adaptiveTolerance;
+        return this;
+    }
+
+    /**
+     * Sets the number of bounces at which glossy reflection/refraction rays may split.
+     * Deeper bounces continue with a single (mirror or straight) ray.
+     *
+     * @param splitLevels the number of splitting bounces, 0 disables glossy splitting
+     * @return the current instance of {@code SimpleRayTracer} for method chaining.
+     */
+    public SimpleRayTracer setSplitLevels(int splitLevels) {
+        if (splitLevels < 0) throw new IllegalArgumentException("split levels can't be negative");
+        this.splitLevels = splitLevels;
+        return this;
+    }
+
+    /**
+     * Sets the per-path ray budget. Every split divides the remaining budget between the new rays,
+     * so a pixel never traces more than this amount of glossy paths.
+     *
+     * @param rayBudget the maximum number of rays a single primary path may fan out into
+     * @return the current instance of {@code SimpleRayTracer} for method chaining.
+     */
+    public SimpleRayTracer setRayBudget(int rayBudget) {
+        if (rayBudget < 1) throw new IllegalArgumentException("ray budget must be positive");
+        this.rayBudget = rayBudget;
+        return this;
+    }
+
+    /**
+     * Sets the throughput under which a path stops splitting and collapses to a single ray.
+     *
+     * @param minSplitK the minimal attenuation coefficient that still allows splitting, 0 always allows it
+     * @return the current instance of {@code SimpleRayTracer} for method chaining.
+     */
+    public SimpleRayTracer setMinSplitK(double minSplitK) {
+        if (!(minSplitK >= 0))
+            throw new IllegalArgumentException("minimal split coefficient must be a non-negative number");
+        this.minSplitK = minSplitK;
+        return this;
+    }
+
+    /**
+     * Enables Russian roulette path termination. From the given bounce on, every secondary ray survives
+     * with a probability equal to its path throughput and the survivors are weighted up accordingly,
+     * so the expected image is unchanged while dim paths end early.
+     *
+     * @param minDepth the first bounce (counted from the primary hit) at which paths may be terminated,
+     *                 {@code MAX_CALC_COLOR_LEVEL} or higher disables the roulette
+     * @return the current instance of {@code SimpleRayTracer} for method chaining.
+     */
+    public SimpleRayTracer setRussianRoulette(int minDepth) {
+        if (minDepth < 0) throw new IllegalArgumentException("roulette depth can't be negative");
+        this.rouletteDepth = minDepth;
+        return this;
+    }
+
+    /**
+     * Sets the distribution of the glossy reflection/refraction sample rays.
+     * The low-discrepancy {@link TargetArea.SamplePattern#HALTON} pattern reaches the noise level
+     * of the jittered grid with considerably fewer rays per material.
+     *
+     * @param samplePattern the pattern for generating the cone rays
+     * @return the current instance of {@code SimpleRayTracer} for method chaining.
+     */
+    public SimpleRayTracer setSamplePattern(TargetArea.SamplePattern samplePattern) {
+        this.samplePattern = samplePattern;
+        return this;
+    }
+
     /**
      * Traces the given ray and returns the color determined by the ray tracing algorithm.
      * If there are no intersections, the background color is returned.
@@ -62,20 +176,13 @@ public class SimpleRayTracer extends RayTracerBase {
      */
     @Override
     public Color traceRay(Ray ray) {
-        GeoPoint intersection = findClosestIntersection(ray);
-        return intersection == null
-                ? this.scene.background : calcColor(intersection, ray);
+        return traceRay(ray, findClosestIntersection(ray));
     }
 
-    /**
-     * Finds the closest intersection point between the ray and the geometries in the scene.
-     *
-     * @param ray the ray to be traced
-     * @return the closest intersection point, or null if no intersections are found
-     */
-    private GeoPoint findClosestIntersection(Ray ray) {
-        List<GeoPoint> intersections = this.scene.geometries.findGeoIntersections(ray);
-        return ray.findClosestGeoPoint(intersections);
+    @Override
+    public Color traceRay(Ray ray, GeoPoint intersection) {
+        return intersection == null
+                ? this.scene.background : calcColor(intersection, ray);
     }
 
     /**
@@ -87,7 +194,7 @@ public class SimpleRayTracer extends RayTracerBase {
      * @return the color at the specified point
      */
     private Color calcColor(GeoPoint geoPoint, Ray ray) {
-        Color color = calcColor(geoPoint, ray, MAX_CALC_COLOR_LEVEL, Double3.ONE);
+        Color color = calcColor(geoPoint, ray, MAX_CALC_COLOR_LEVEL, Double3.ONE, rayBudget);
         return color.add(scene.ambientLight.getIntensity());
 
 //        return calcColor(geoPoint, ray, MAX_CALC_COLOR_LEVEL, Double3.ONE)
@@ -100,155 +207,235 @@ public class SimpleRayTracer extends RayTracerBase {
      * @param gp    the point at which the color is calculated
      * @param ray   the ray that intersected the geometry
      * @param level the recursion level for global effects calculation
-     * @param k     the attenuation coefficient for the global effects
+     * @param k      the attenuation coefficient for the global effects
+     * @param budget the amount of rays the path may still fan out into
      * @return the color at the specified point
      */
-    private Color calcColor(GeoPoint gp, Ray ray, int level, Double3 k) {
+    private Color calcColor(GeoPoint gp, Ray ray, int level, Double3 k, int budget) {
         Material material = gp.geometry.getMaterial();
         Vector v = ray.getDirection();
         Vector n = gp.geometry.getNormal(gp.point);
         Color color = calcLocalEffects(gp, material, v, n, k);
-        return 1 == level ? color : color.add(calcGlobalEffects(gp, level, k, material, ray, n));
+        return 1 == level ? color : color.add(calcGlobalEffects(gp, level, k, material, ray, n, budget));
 
 
     }
 
     /**
      * Calculates the global effects (reflection and refraction) at the specified point.
+     * The refracted and the reflected fans share the budget in proportion to the rays they ask for,
+     * so together they never exceed it.
      *
      * @param gp       the point at which the global effects are calculated
      * @param level    the recursion level for global effects calculation
      * @param k        the attenuation coefficient for the global effects
      * @param material the material properties of the geometry at the given point
-     * @param v        the view vector from the point to the camera
+     * @param ray      the ray that intersected the geometry
      * @param n        the normal vector at the point on the geometry
+     * @param budget   the amount of rays the path may still fan out into
      * @return the color at the specified point after applying global effects
      */
-    private Color calcGlobalEffects(GeoPoint gp, int level, Double3 k, Material material, Ray ray, Vector n) {
-        Plane plane = new Plane(gp.point, n);
+    private Color calcGlobalEffects(GeoPoint gp, int level, Double3 k, Material material, Ray ray, Vector n, int budget) {
+        Double3 kkt = k.product(material.kT), kkr = k.product(material.kR);
+        // a fan too dim to be traced asks for no rays and gets no budget
+        int refracted = kkt.lowerThan(MIN_CALC_COLOR_K) ? 0 : splitAmount(material.numRaysRefracted, level, kkt, budget);
+        int reflected = kkr.lowerThan(MIN_CALC_COLOR_K) ? 0 : splitAmount(material.numRaysReflected, level, kkr, budget);
+        int refractedBudget = refracted == 0 ? 0
+                : reflected == 0 ? budget : Math.max(1, budget * refracted / (refracted + reflected));
+        int reflectedBudget = reflected == 0 ? 0 : Math.max(1, budget - refractedBudget);
+        refracted = splitAmount(material.numRaysRefracted, level, kkt, refractedBudget);
+        reflected = splitAmount(material.numRaysReflected, level, kkr, reflectedBudget);
         if (!adaptiveSuperSampling) {
-            return calcGlobalEffect(constructRefractedRays(gp, ray.getDirection(), n, plane), level, k, material.kT).
-                    add(calcGlobalEffect(constructReflectedRays(gp, ray.getDirection(), n, plane), level, k, material.kR));
+            return calcGlobalEffect(constructRefractedRays(gp, ray.getDirection(), n, refracted), level, k, material.kT, refractedBudget).
+                    add(calcGlobalEffect(constructReflectedRays(gp, ray.getDirection(), n, reflected), level, k, material.kR, reflectedBudget));
         } else {
-            return ReflectedAddaptiveRays(ray.getHead(), material.numRaysReflected, plane, level, k, material.kR).
-                    add(ReflectedAddaptiveRays(ray.getHead(), material.numRaysRefracted, plane, level, k, material.kT));
+            Vector v = ray.getDirection();
+            return adaptiveCone(gp, n, n, constructReflectedRay(gp.point, v, n), material.coneAngleReflected,
+                    reflected, level, k, material.kR, reflectedBudget)
+                    .add(adaptiveCone(gp, n, v, constructRefractedRay(gp.point, v, n), material.coneAngleRefracted,
+                            refracted, level, k, material.kT, refractedBudget));
         }
     }
 
     /**
-     * Generates and traces reflected rays using adaptive super sampling.
-     * <p>
-     * This method calculates the number of reflected rays to be generated based on the
-     * specified resolution and uses adaptive super sampling to improve rendering efficiency.
-     * It calculates the pixel size based on the square root of the number of rays and then
-     * delegates the actual sampling to the {@code AdaptiveSuperSampling} method.
+     * Decides how many cone samples a glossy split may use at the current bounce.
+     * Splitting only happens at the first {@link #splitLevels} bounces, while the path throughput is
+     * above {@link #minSplitK} and while the per-path budget still allows the cone rays plus the main ray.
+     * Otherwise the path collapses to the single main ray.
      *
-     * @param head             The starting point of the reflected rays.
-     * @param numRaysReflected The total number of reflected rays to generate.
-     * @param plane            The plane on which the reflection occurs.
-     * @param level            The current recursion level for tracing rays.
-     * @param k                The coefficient for attenuation of the reflected color.
-     * @param kR               The reflection coefficient.
-     * @return The accumulated color from the reflected rays.
-     */
-    private Color ReflectedAddaptiveRays(Point head, int numRaysReflected, Plane plane, int level, Double3 k, Double3 kR) {
-        //Calculate the size of each pixel
-        double rX = Math.sqrt(numRaysReflected);
-        double rY = rX;
-        //HashMap<Ray,Color> storeColor = new HashMap<>();
-        return AdaptiveSuperSampling(head, rX, rY, numRaysReflected, plane, level, k, kR);
+     * @param numRays the amount of cone rays requested by the material
+     * @param level   the current recursion level
+     * @param kkx     the throughput of the split rays
+     * @param budget  the amount of rays the path may still fan out into
+     * @return the amount of cone rays to generate, 1 meaning no split
+     */
+    private int splitAmount(int numRays, int level, Double3 kkx, int budget) {
+        if (numRays <= 1 || MAX_CALC_COLOR_LEVEL - level >= splitLevels || kkx.lowerThan(minSplitK))
+            return 1;
+        // the main (mirror / straight) ray is always added to the cone rays
+        int amount = Math.min(numRays, budget - 1);
+        return amount < 2 ? 1 : amount;
     }
 
     /**
-     * Performs adaptive super sampling by recursively subdividing pixels and sampling colors.
+     * Samples a glossy cone by adaptive super sampling. The cross-section of the cone is a square grid of
+     * the most cells whose corners are at most {@code amount}, and every corner ray gets an equal share of
+     * the budget, so the cone never traces more rays than the splitting policy allowed. The square is
+     * divided once into four cells, and a cell is divided further into four sub-cells only while its
+     * corner colors differ by more than {@link #adaptiveTolerance}.
+     * Corner colors are memoized on their grid coordinates, so a corner shared by neighbouring cells or
+     * inherited from the parent cell is traced once.
      *
-     * @param head             The starting point for the sampling rays.
-     * @param rX               The horizontal size of the pixel.
-     * @param rY               The vertical size of the pixel.
-     * @param numRaysReflected The number of rays to cast for reflection.
-     * @param plane            The plane on which sampling is performed.
-     * @param level            The current recursion level for ray tracing.
-     * @param k                The attenuation coefficient for the color.
-     * @param kR               The reflection coefficient.
-     * @return The averaged color from the sampled rays.
-     */
-    private Color AdaptiveSuperSampling(Point head, double rX, double rY, int numRaysReflected, Plane plane, int level, Double3 k, Double3 kR) {
-        List<Vector> vectors = plane.findVectorsOfPlane();
-        // Cast rays for the four corners of the pixel
-        Color topLeft = castRayAndColor(rX, rY, -1, -1, head, vectors, level, k, kR);
-        Color topRight = castRayAndColor(rX, rY, 1, -1, head, vectors, level, k, kR);
-        Color bottomLeft = castRayAndColor(rX, rY, -1, 1, head, vectors, level, k, kR);
-        Color bottomRight = castRayAndColor(rX, rY, 1, 1, head, vectors, level, k, kR);
-
-        // Check if all four colors are similar or the rayNum has reached the limit
-        if ((topLeft.equals(topRight)
-                && topLeft.equals(bottomLeft)
-                && topLeft.equals(bottomRight))
-                || numRaysReflected <= 0) {
-
-            // Return the colorRay if all four colors are similar or rayNum limit reached
-            return topLeft;
-        } else {
-            // Recursively divide the pixel and perform adaptive supersampling
-            double newRx = rX / 2;
-            double newRy = rY / 2;
-
-            // Compute the four subpixel points within the pixel
-            Point A = head
-                    .add(vectors.get(1).scale((newRy) * -1)
-                            .add(vectors.get(0).scale((newRx) * -1)));
-
-            Point B = head
-                    .add(vectors.get(1).scale((newRy) * 1)
-                            .add(vectors.get(0).scale((newRx) * -1)));
-
-            Point C = head
-                    .add(vectors.get(1).scale((newRy) * -1)
-                            .add(vectors.get(0).scale((newRx) * 1)));
-
-            Point D = head
-                    .add(vectors.get(1).scale((newRy) * 1)
-                            .add(vectors.get(0).scale((newRx) * 1)));
-
-            // Recursively compute the color of the subpixels
-            Color topLeftSubpixel = AdaptiveSuperSampling(A, newRx, newRy, numRaysReflected / 4, plane, level, k, kR);
-            Color topRightSubpixel = AdaptiveSuperSampling(B, newRx, newRy, numRaysReflected / 4, plane, level, k, kR);
-            Color bottomLeftSubpixel = AdaptiveSuperSampling(C, newRx, newRy, numRaysReflected / 4, plane, level, k, kR);
-            Color bottomRightSubpixel = AdaptiveSuperSampling(D, newRx, newRy, numRaysReflected / 4, plane, level, k, kR);
-
-            // Compute the average color of the subpixels
-            return topLeftSubpixel
-                    .add(topRightSubpixel)
-                    .add(bottomLeftSubpixel)
-                    .add(bottomRightSubpixel)
+     * @param gp     the point at which the cone starts
+     * @param n      the normal vector at the point on the geometry
+     * @param axis   the unit axis of the cone
+     * @param main   the main (mirror / straight) ray, used when the cone collapses to a single ray
+     * @param angle  the angle of the cone (in radians)
+     * @param amount the amount of cone rays allowed by the splitting policy, fewer than 4 collapse the cone
+     * @param level  the current recursion level
+     * @param k      the attenuation coefficient of the path
+     * @param kx     the reflection / transparency coefficient of the cone
+     * @param budget the amount of rays the path may still fan out into
+     * @return the averaged color of the cone
+     */
+    private Color adaptiveCone(GeoPoint gp, Vector n, Vector axis, Ray main, double angle, int amount,
+                               int level, Double3 k, Double3 kx, int budget) {
+        // a grid of cells has (cells + 1)^2 corners, which must fit in the amount of rays
+        if (amount < 4 || isZero(angle))
+            return calcGlobalEffect(List.of(main), level, k, kx, budget);
+        int cells = Integer.highestOneBit((int) Math.sqrt(amount));
+        while (cells > 1 && (cells + 1) * (cells + 1) > amount) cells /= 2;
+        int corners = (cells + 1) * (cells + 1);
+        AdaptiveGrid grid = new AdaptiveGrid(gp, n, axis, Math.tan(angle) / 2, cells,
+                level, k, kx, Math.max(1, budget / corners));
+        // the whole cone is always divided once, four corners alone easily miss a feature inside the cone
+        if (cells == 1) return grid.sample(0, 0, 1);
+        int half = cells / 2;
+        return grid.sample(0, 0, half)
+                .add(grid.sample(half, 0, half), grid.sample(0, half, half), grid.sample(half, half, half))
+                .reduce(4);
+    }
+
+    /**
+     * The corner grid of one adaptive super sampling cone, with the memoized colors of its corners.
+     */
+    private class AdaptiveGrid {
+        /**
+         * The point at which the cone starts.
+         */
+        private final Point head;
+        /**
+         * The normal vector at the head, used to move the rays' heads off the surface.
+         */
+        private final Vector n;
+        /**
+         * The unit axis of the cone.
+         */
+        private final Vector axis;
+        /**
+         * The basis vectors of the cone's cross-section.
+         */
+        private final Vector[] basis;
+        /**
+         * Half of the side of the cross-section square at distance 1.
+         */
+        private final double radius;
+        /**
+         * The number of cells along a side of the finest grid.
+         */
+        private final int cells;
+        /**
+         * The recursion level of the traced corner rays.
+         */
+        private final int level;
+        /**
+         * The attenuation coefficient of the path.
+         */
+        private final Double3 k;
+        /**
+         * The reflection / transparency coefficient of the cone.
+         */
+        private final Double3 kx;
+        /**
+         * The amount of rays every corner ray may fan out into.
+         */
+        private final int budget;
+        /**
+         * The traced corner colors by their index in the finest grid.
+         */
+        private final Map<Integer, Color> corners = new HashMap<>();
+
+        /**
+         * Constructs the corner grid of a cone.
+         *
+         * @param head   the point at which the cone starts
+         * @param n      the normal vector at the head
+         * @param axis   the unit axis of the cone
+         * @param radius half of the side of the cross-section square at distance 1
+         * @param cells  the number of cells along a side of the finest grid (a power of 2)
+         * @param level  the recursion level of the traced corner rays
+         * @param k      the attenuation coefficient of the path
+         * @param kx     the reflection / transparency coefficient of the cone
+         * @param budget the amount of rays every corner ray may fan out into
+         */
+        AdaptiveGrid(GeoPoint head, Vector n, Vector axis, double radius, int cells,
+                     int level, Double3 k, Double3 kx, int budget) {
+            this.head = head.point;
+            this.n = n;
+            this.axis = axis;
+            this.basis = TargetArea.orthonormalBasis(axis);
+            this.radius = radius;
+            this.cells = cells;
+            this.level = level;
+            this.k = k;
+            this.kx = kx;
+            this.budget = budget;
+        }
+
+        /**
+         * Samples a cell of the grid, dividing it recursively while its corners differ.
+         *
+         * @param x    the column of the cell's first corner in the finest grid
+         * @param y    the row of the cell's first corner in the finest grid
+         * @param size the side of the cell in finest grid cells
+         * @return the averaged color of the cell
+         */
+        Color sample(int x, int y, int size) {
+            Color topLeft = corner(x, y);
+            Color topRight = corner(x + size, y);
+            Color bottomLeft = corner(x, y + size);
+            Color bottomRight = corner(x + size, y + size);
+
+            if (size == 1 || (topLeft.isSimilar(topRight, adaptiveTolerance)
+                    && topLeft.isSimilar(bottomLeft, adaptiveTolerance)
+                    && topLeft.isSimilar(bottomRight, adaptiveTolerance)))
+                return topLeft.add(topRight, bottomLeft, bottomRight).reduce(4);
+
+            int half = size / 2;
+            return sample(x, y, half)
+                    .add(sample(x + half, y, half), sample(x, y + half, half), sample(x + half, y + half, half))
                     .reduce(4);
+        }
 
+        /**
+         * Returns the color of a grid corner, tracing its ray only the first time it is requested.
+         *
+         * @param x the column of the corner in the finest grid
+         * @param y the row of the corner in the finest grid
+         * @return the color seen through the corner
+         */
+        private Color corner(int x, int y) {
+            return corners.computeIfAbsent(y * (cells + 1) + x, key -> {
+                Vector direction = axis;
+                double dx = alignZero((2d * x / cells - 1) * radius);
+                double dy = alignZero((2d * y / cells - 1) * radius);
+                if (dx != 0) direction = direction.add(basis[0].scale(dx));
+                if (dy != 0) direction = direction.add(basis[1].scale(dy));
+                return calcGlobalEffect(List.of(new Ray(head, direction.normalize(), n)), level, k, kx, budget);
+            });
         }
     }
 
-    /**
-     * Casts a ray from the given point and calculates the resulting color using global effects.
-     *
-     * @param rX      The horizontal size of the pixel.
-     * @param rY      The vertical size of the pixel.
-     * @param offsetX The horizontal offset for the ray direction.
-     * @param offsetY The vertical offset for the ray direction.
-     * @param head    The starting point for the ray.
-     * @param vectors The basis vectors of the plane for calculating direction.
-     * @param level   The current recursion level for ray tracing.
-     * @param k       The attenuation coefficient for color.
-     * @param kR      The reflection coefficient.
-     * @return The color calculated from the cast ray.
-     */
-    private Color castRayAndColor(double rX, double rY, int offsetX, int offsetY, Point head, List<Vector> vectors, int level, Double3 k, Double3 kR) {
-        //צריך לקבל את ו y x
-        Vector x = vectors.get(0), y = vectors.get(1);
-        Point cornerPoint = head.add(y.scale((rY / 2) * offsetY)
-                .add(x.scale((rX / 2) * offsetX)));
-        List<Ray> cornerRay = new ArrayList<>(List.of(new Ray(head, cornerPoint.subtract(head))));
-        // Perform ray casting and return the ColorRay
-        return calcGlobalEffect(cornerRay, level, k, kR);
-    }
 
 
     /**
@@ -367,7 +554,7 @@ public class SimpleRayTracer extends RayTracerBase {
         Vector lightDirection = l.scale(-1); // from point to light source
         if (gp.geometry.getMaterial().kT == Double3.ZERO) {
             Ray ray = new Ray(gp.point, lightDirection, n);
-            List<GeoPoint> intersections = scene.geometries.findGeoIntersections(ray);
+            List<GeoPoint> intersections = scene.getRenderGeometries().findGeoIntersections(ray);
             if (intersections == null) return true;
 
             double lightDistance = light.getDistance(gp.point);
@@ -394,7 +581,8 @@ public class SimpleRayTracer extends RayTracerBase {
         Vector lightDirection = l.scale(-1);
         Ray ray = new Ray(gp.point, lightDirection, n);
         Double3 ktr = Double3.ONE;// from point to light source
-        List<GeoPoint> intersections = scene.geometries.findGeoIntersections(ray);
+        countRay(RayKind.SHADOW);
+        List<GeoPoint> intersections = scene.getRenderGeometries().findGeoIntersections(ray);
         if (intersections == null) return ktr;
 
         double lightDistance = light.getDistance(gp.point);
@@ -413,20 +601,30 @@ public class SimpleRayTracer extends RayTracerBase {
      * @param rays  the list of rays hitting the geometry
      * @param level the level of recursion if level == 1 we stop the recursion
      * @param k     the parameter helping us calculate how much color each ray is giving to the final pixel
-     * @param kx    a parameter helping us stop the recursion is the effect of the recursion is too small to notice
+     * @param kx     a parameter helping us stop the recursion is the effect of the recursion is too small to notice
+     * @param budget the amount of rays the path may still fan out into, shared between the given rays
      * @return the color at the intersection with ray
      */
-    private Color calcGlobalEffect(List<Ray> rays, int level, Double3 k, Double3 kx) {
+    private Color calcGlobalEffect(List<Ray> rays, int level, Double3 k, Double3 kx, int budget) {
         Color color = Color.BLACK;
 
         Double3 kkx = k.product(kx);
         if (kkx.lowerThan(MIN_CALC_COLOR_K))
             return scene.background;
 
+        int rayBudget = Math.max(1, budget / rays.size());
+        double survival = survivalProbability(level, kkx);
+        Double3 kxr = survival < 1 ? kx.scale(1 / survival) : kx;
+        reachDepth(MAX_CALC_COLOR_LEVEL - level + 1);
         for (Ray ray : rays) {
-            GeoPoint gp = findClosestIntersection(ray);
-            if (gp == null) return scene.background.scale(kx);
-            color = color.add(isZero(gp.geometry.getNormal(gp.point).dotProduct(ray.getDirection())) ? Color.BLACK : calcColor(gp, ray, level - 1, kkx).scale(kx));
+            if (survival < 1 && random(0, 1) >= survival) continue;
+            GeoPoint gp = findClosestIntersection(ray, RayKind.SECONDARY);
+            if (gp == null) {
+                // a missing survivor is weighted up like any other, so the roulette doesn't dim the background
+                color = color.add(scene.background.scale(kxr));
+                continue;
+            }
+            color = color.add(isZero(gp.geometry.getNormal(gp.point).dotProduct(ray.getDirection())) ? Color.BLACK : calcColor(gp, ray, level - 1, kkx, rayBudget).scale(kxr));
         }
         return color.scale((double) 1 / rays.size());
 //            if (gp == null) return scene.background;
@@ -437,27 +635,42 @@ public class SimpleRayTracer extends RayTracerBase {
 //        return color.reduce(rays.size());
     }
 
+    /**
+     * Calculates the probability of a secondary ray to survive the Russian roulette.
+     * Before {@link #rouletteDepth} every ray survives, afterwards the survival chance
+     * is the strongest component of the path throughput.
+     *
+     * @param level the current recursion level
+     * @param kkx   the throughput of the secondary rays
+     * @return the survival probability in range (0, 1]
+     */
+    private double survivalProbability(int level, Double3 kkx) {
+        if (MAX_CALC_COLOR_LEVEL - level < rouletteDepth) return 1;
+        return Math.min(1, kkx.max());
+    }
+
     /**
      * Constructs a list of random reflected rays within the cone of the normal vector at the given surface point.
      *
      * @param gp The GeoPoint at the surface of the geometry.
      * @param v  The direction of the original ray.
-     * @param n  The normal to the surface of the geometry at the point of gp.point.
+     * @param n      The normal to the surface of the geometry at the point of gp.point.
+     * @param amount The amount of cone rays allowed by the splitting policy.
      * @return A list of random reflected rays within the cone of the normal vector.
      */
-    private List<Ray> constructReflectedRays(GeoPoint gp, Vector v, Vector n, Plane plane) {
+    private List<Ray> constructReflectedRays(GeoPoint gp, Vector v, Vector n, int amount) {
         Material material = gp.geometry.getMaterial();
 
-        if (material.numRaysReflected == 1 || isZero(material.coneAngleReflected))
+        if (amount == 1 || isZero(material.coneAngleReflected))
             return List.of(constructReflectedRay(gp.point, v, n));
 
         List<Ray> rays = new ArrayList<>();
 
         // Generate random direction vectors within the cone of the normal vector
-        List<Vector> randomDirection = TargetArea.generateRandomDirectionInCone(gp, n, material.coneAngleReflected, material.numRaysReflected, plane);
+        List<Vector> randomDirection = TargetArea.generateDirectionsInCone(n, material.getReflectedSamples(samplePattern), amount);
 
         // Construct rays using the random direction vectors and add them to the list
-        for (int i = 0; i < randomDirection.size() && i < material.numRaysReflected; i++) {
+        for (int i = 0; i < randomDirection.size() && i < amount; i++) {
             Vector u = randomDirection.get(i);
             Ray reflectedRay = new Ray(gp.point, u, n);
             rays.add(reflectedRay);
@@ -473,18 +686,19 @@ public class SimpleRayTracer extends RayTracerBase {
      *
      * @param gp The GeoPoint at the surface of the geometry.
      * @param v  The direction of the original ray.
-     * @param n  The normal to the surface of the geometry at the point of gp.point.
+     * @param n      The normal to the surface of the geometry at the point of gp.point.
+     * @param amount The amount of cone rays allowed by the splitting policy.
      * @return A list of random refracted rays within the cone of the inverted normal vector.
      */
-    private List<Ray> constructRefractedRays(GeoPoint gp, Vector v, Vector n, Plane plane) {
+    private List<Ray> constructRefractedRays(GeoPoint gp, Vector v, Vector n, int amount) {
         Material material = gp.geometry.getMaterial();
-        if (material.numRaysRefracted == 1 || isZero(material.coneAngleRefracted))
+        if (amount == 1 || isZero(material.coneAngleRefracted))
             return List.of(constructRefractedRay(gp.point, v, n));
         List<Ray> rays = new ArrayList<>();
         // Generate random direction vectors within the cone of the inverted normal vector
-        List<Vector> randomDirection = TargetArea.generateRandomDirectionInCone(gp, v, material.coneAngleRefracted, material.numRaysRefracted, plane);
+        List<Vector> randomDirection = TargetArea.generateDirectionsInCone(v, material.getRefractedSamples(samplePattern), amount);
         // Construct rays using the random direction vectors and add them to the list
-        for (int i = 0; i < randomDirection.size() && i < material.numRaysRefracted; i++) {
+        for (int i = 0; i < randomDirection.size() && i < amount; i++) {
             Vector u = randomDirection.get(i);
             Ray refractedRay = new Ray(gp.point, u, n);
             rays.add(refractedRay);
@@ -0,0 +1,44 @@
+package renderer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A rectangular block of pixels of the image, the unit of work of tile based rendering.
+ *
+ * @param row  the row index of the tile's top left pixel
+ * @param col  the column index of the tile's top left pixel
+ * @param rows the number of pixel rows in the tile
+ * @param cols the number of pixel columns in the tile
+ */
+record Tile(int row, int col, int rows, int cols) {
+    /**
+     * The default side of a tile in pixels.
+     */
+    static final int SIZE = 16;
+
+    /**
+     * Divides an image into tiles, row by row. The tiles on the right and bottom edges may be smaller.
+     *
+     * @param nX   the number of pixels in a row of the image
+     * @param nY   the number of pixels in a column of the image
+     * @param size the side of a tile in pixels
+     * @return the list of the tiles covering the image
+     */
+    static List<Tile> split(int nX, int nY, int size) {
+        List<Tile> tiles = new ArrayList<>();
+        for (int row = 0; row < nY; row += size)
+            for (int col = 0; col < nX; col += size)
+                tiles.add(new Tile(row, col, Math.min(size, nY - row), Math.min(size, nX - col)));
+        return tiles;
+    }
+
+    /**
+     * Returns the number of pixels in the tile.
+     *
+     * @return the amount of pixels
+     */
+    int pixels() {
+        return rows * cols;
+    }
+}
@@ -1,6 +1,7 @@
 package scene;
 
 import geometries.Geometries;
+import geometries.Intersectable;
 import lighting.AmbientLight;
 import lighting.LightSource;
 import primitives.Color;
@@ -32,6 +33,23 @@ public class Scene {
      */
     public Geometries geometries = new Geometries();
 
+    /**
+     * The compiled geometries of the scene, with the versions of the geometries they were compiled from.
+     *
+     * @param source        the geometries the copy was compiled from
+     * @param modifications the modification count of the source when compiled
+     * @param refits        the refit count of the source when compiled or last refit
+     * @param geometries    the compiled copy
+     */
+    private record Compiled(Geometries source, long modifications, long refits, Geometries geometries) {
+    }
+
+    /**
+     * The compiled geometries (see {@link #compile()}), or null if the scene was not compiled, published
+     * at once to the rendering threads
+     */
+    private volatile Compiled compiled = null;
+
     /**
      * Constructs a new {@code Scene} with the specified name.
      *
@@ -78,4 +96,47 @@ public class Scene {
         this.geometries = geometries;
         return this;
     }
+
+    /**
+     * Compiles the geometries of the scene for rendering (see {@link Geometries#compile()}), unless they were
+     * compiled already and didn't change since (see {@link Geometries#getModificationCount()}). The camera
+     * compiles the scene before every render, so that rendering runs on the flat, optimized copy while the
+     * geometries of the scene stay as they were built.
+     * <p>
+     * After geometries moved (e.g. between the frames of an animation), {@link Geometries#refitHierarchy()}
+     * on the scene's geometries refits the compiled copy and the accelerated collections it shares as well,
+     * instead of a new compile.
+     * </p>
+     *
+     * @return the current {@code Scene} instance
+     */
+    public synchronized Scene compile() {
+        Geometries source = geometries;
+        long modifications = source.getModificationCount();
+        long refits = source.getRefitCount();
+        Compiled current = compiled;
+        if (current != null && current.source == source && current.modifications == modifications) {
+            if (current.refits == refits) return this;
+            // the nested collections the copy shares are refit along, a grid or a lazy hierarchy can't be refit
+            Geometries.Acceleration acceleration = current.geometries.getAcceleration();
+            if (acceleration == Geometries.Acceleration.NONE || acceleration == Geometries.Acceleration.BVH) {
+                current.geometries.refitHierarchy();
+                compiled = new Compiled(source, modifications, source.getRefitCount(), current.geometries);
+                return this;
+            }
+        }
+        compiled = new Compiled(source, modifications, refits, source.compile());
+        return this;
+    }
+
+    /**
+     * Returns the geometries rays are intersected with: the compiled geometries, unless the scene was not
+     * compiled or its geometries were replaced since.
+     *
+     * @return the geometries to render
+     */
+    public Intersectable getRenderGeometries() {
+        Compiled current = compiled;
+        return current != null && current.source == geometries ? current.geometries : geometries;
+    }
 }
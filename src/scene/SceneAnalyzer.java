@@ -0,0 +1,139 @@
+package scene;
+
+import geometries.Intersectable;
+import geometries.IntersectionProfiler;
+import geometries.IntersectionProfiler.Stats;
+import geometries.Polygon;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Analyzes which geometries of a scene consume the intersection time. While the analyzer is open,
+ * every geometry of the scene is profiled (see {@link IntersectionProfiler}); after rendering, the analyzer
+ * reports the most expensive geometries, their hit rates and bounding box tightness, and recommends
+ * how to group or accelerate the scene. Closing the analyzer puts the original geometries back.
+ * <p>
+ * Usage:
+ * <pre>{@code
+ * try (SceneAnalyzer analyzer = new SceneAnalyzer(scene)) {
+ *     camera.renderImage();
+ *     System.out.println(analyzer.report(10));
+ * }
+ * }</pre>
+ * </p>
+ */
+public class SceneAnalyzer implements AutoCloseable {
+    /**
+     * A geometry whose bounding box is hit by this many more rays than the geometry itself is loosely bounded
+     */
+    private static final double LOOSE_BOX = 0.25;
+    /**
+     * A geometry taking more than this share of the intersection time dominates the scene
+     */
+    private static final double DOMINANT_SHARE = 0.25;
+    /**
+     * A flat collection of at least this many geometries should be grouped or accelerated
+     */
+    private static final int GROUPING_THRESHOLD = 8;
+
+    /**
+     * The profiler of the scene's geometries
+     */
+    private final IntersectionProfiler profiler;
+
+    /**
+     * Starts profiling the geometries of a scene.
+     *
+     * @param scene the scene
+     */
+    public SceneAnalyzer(Scene scene) {
+        profiler = new IntersectionProfiler(scene.geometries);
+    }
+
+    /**
+     * Returns the statistics of the most expensive geometries.
+     *
+     * @param n the maximal number of geometries
+     * @return the statistics of the n most expensive geometries, the most expensive first
+     */
+    public List<Stats> getTopOffenders(int n) {
+        List<Stats> stats = profiler.getStats();
+        return stats.subList(0, Math.min(n, stats.size()));
+    }
+
+    /**
+     * Recommends how to group or accelerate the scene according to the statistics collected so far.
+     *
+     * @return the recommendations, empty if the scene looks fine
+     */
+    public List<String> getRecommendations() {
+        List<Stats> stats = profiler.getStats();
+        List<String> recommendations = new ArrayList<>();
+        long tests = 0, hits = 0, nanos = 0;
+        int unbounded = 0, polygons = 0;
+        for (Stats s : stats) {
+            tests += s.tests();
+            hits += s.hits();
+            nanos += s.nanos();
+            if (s.geometry().getBoundingBox() == null) ++unbounded;
+            if (s.geometry() instanceof Polygon) ++polygons;
+        }
+        if (tests == 0) return recommendations;
+
+        if (stats.size() >= GROUPING_THRESHOLD && (double) hits / tests < LOOSE_BOX)
+            recommendations.add(String.format("Only %.1f%% of the %d intersection tests hit: group the %d geometries "
+                            + "spatially in nested Geometries or build a bounding volume hierarchy over the scene",
+                    100.0 * hits / tests, tests, stats.size()));
+        if (polygons >= GROUPING_THRESHOLD * GROUPING_THRESHOLD)
+            recommendations.add(String.format("The scene has %d polygons: put each mesh in its own accelerated "
+                    + "Geometries instead of testing every triangle", polygons));
+        if (unbounded > 0)
+            recommendations.add(String.format("%d unbounded geometries (planes, tubes) are tested by every ray: keep "
+                    + "them out of accelerated groups, or replace them by polygons where possible", unbounded));
+        for (Stats s : stats) {
+            if (nanos > 0 && s.nanos() > nanos * DOMINANT_SHARE)
+                recommendations.add(String.format("%s takes %.0f%% of the intersection time: simplify it or give it "
+                        + "a tighter bound", describe(s.geometry()), 100.0 * s.nanos() / nanos));
+            if (s.boxTightness() < LOOSE_BOX)
+                recommendations.add(String.format("%s is hit by %.0f%% of the rays hitting its bounding box: split it "
+                        + "into smaller pieces", describe(s.geometry()), 100 * s.boxTightness()));
+        }
+        return recommendations;
+    }
+
+    /**
+     * Formats a report of the most expensive geometries and the recommendations.
+     *
+     * @param n the maximal number of geometries in the report
+     * @return the report text
+     */
+    public String report(int n) {
+        StringBuilder report = new StringBuilder(String.format("%-28s %12s %12s %8s %12s %9s%n",
+                "geometry", "tests", "hits", "hit %", "time (ms)", "box fit %"));
+        for (Stats s : getTopOffenders(n))
+            report.append(String.format("%-28s %12d %12d %8.1f %12.2f %9.1f%n", describe(s.geometry()), s.tests(),
+                    s.hits(), 100 * s.hitRate(), s.nanos() / 1e6, 100 * s.boxTightness()));
+        for (String recommendation : getRecommendations())
+            report.append("* ").append(recommendation).append(System.lineSeparator());
+        return report.toString();
+    }
+
+    /**
+     * Names a geometry in the report by its class and identity.
+     *
+     * @param geometry the geometry
+     * @return the name of the geometry
+     */
+    private static String describe(Intersectable geometry) {
+        return geometry.getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(geometry));
+    }
+
+    /**
+     * Stops profiling and puts the original geometries back in the scene.
+     */
+    @Override
+    public void close() {
+        profiler.restore();
+    }
+}
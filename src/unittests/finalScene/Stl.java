@@ -1,10 +1,13 @@
 package finalScene;
 
 import geometries.Geometries;
+import geometries.Mesh;
+import geometries.OutOfCoreMesh;
 import geometries.Triangle;
 import primitives.Color;
 import primitives.Material;
 import primitives.Point;
+import profiling.ScenePreparationEvent;
 
 import java.io.*;
 import java.nio.ByteBuffer;
@@ -26,13 +29,78 @@ public class Stl {
      * @return a Geometries object representing the STL file.
      */
     public static Geometries ConvertStlToGeometrys(String path, Material material, Color color) {
+        ScenePreparationEvent event = new ScenePreparationEvent();
+        event.begin();
         List<Triangle> triangles = convertSTLToTriangles(path);
+        event.phase = "mesh load";
+        event.subject = path;
+        event.objects = triangles.size();
+        event.commit();
         System.out.print("convertSTLToTriangles\n");
         Geometries geometries = triangleToGeometries(triangles, material, color);
         System.out.print("triangleToGeometries\n");
         return geometries;
     }
 
+    /**
+     * Converts an STL file to a mesh, stored in a compact buffer rather than as triangle objects.
+     *
+     * @param path     the path of the STL file to be converted.
+     * @param material the material of the mesh.
+     * @param color    the emission color of the mesh.
+     * @param offHeap  whether the mesh is stored outside the heap.
+     * @return the mesh of the STL file.
+     */
+    public static Mesh convertStlToMesh(String path, Material material, Color color, boolean offHeap) {
+        ScenePreparationEvent event = new ScenePreparationEvent();
+        event.begin();
+        double[] vertices;
+        try (RandomAccessFile binaryFile = new RandomAccessFile(path, "r")) {
+            byte[] bytes = new byte[(int) binaryFile.length()];
+            binaryFile.readFully(bytes);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            int numTriangles = buffer.getInt(80); // after the 80 bytes header
+            vertices = new double[9 * numTriangles];
+            for (int i = 0; i < numTriangles; i++) {
+                int offset = 84 + 50 * i + 12; // skip the normal, read the 3 vertices
+                for (int j = 0; j < 9; j++) vertices[9 * i + j] = buffer.getFloat(offset + 4 * j);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Can't read the STL file " + path, e);
+        }
+        int[] indexes = new int[vertices.length / 3];
+        for (int i = 0; i < indexes.length; i++) indexes[i] = i;
+        event.phase = "mesh load";
+        event.subject = path;
+        event.objects = indexes.length / 3;
+        event.commit();
+        return new Mesh(vertices, indexes, offHeap).setMaterial(material).setEmission(color);
+    }
+
+    /**
+     * Streams the triangles of an STL file, for partitioning a mesh too large for the memory into the bricks
+     * of an {@link OutOfCoreMesh}. The file is read sequentially on every pass.
+     *
+     * @param path the path of the STL file.
+     * @return the source of the triangles of the file.
+     */
+    public static OutOfCoreMesh.TriangleSource streamStl(String path) {
+        return consumer -> {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 1 << 16))) {
+                in.skipNBytes(80); // the header
+                long numTriangles = Integer.toUnsignedLong(Integer.reverseBytes(in.readInt()));
+                byte[] record = new byte[50];
+                ByteBuffer buffer = ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN);
+                double[] coordinates = new double[9];
+                for (long i = 0; i < numTriangles; i++) {
+                    in.readFully(record); // normal, 3 vertices and 2 bytes of garbage
+                    for (int j = 0; j < 9; j++) coordinates[j] = buffer.getFloat(12 + 4 * j);
+                    consumer.accept(coordinates);
+                }
+            }
+        };
+    }
+
     /**
      * Converts an STL file to a list of triangles.
      *
@@ -1,11 +1,13 @@
 package geometries;
 
 import org.junit.jupiter.api.Test;
+import primitives.BoundingBox;
 import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
 
 import java.util.Comparator;
+import java.util.List;
 
 
 import static geometries.TriangleTest.DELTA;
@@ -56,4 +58,310 @@ class GeometriesTest {
                 DELTA, "Suppose to be 4 intersection points");
     }
 
-}
\ No newline at end of file
+
+    /**
+     * Test method for {@link Geometries#getBoundingBox()}.
+     */
+    @Test
+    void testGetBoundingBox() {
+        Sphere sphere = new Sphere(new Point(1, 0, 1), 1);
+        Triangle triangle = new Triangle(new Point(1, 2, 0), new Point(2, 2, 0), new Point(1.5, 3, 1));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: bounded geometries
+        assertEquals(new BoundingBox(0, -1, 0, 2, 3, 2), new Geometries(sphere, triangle).getBoundingBox(),
+                "wrong bounding box");
+        // TC02: an unbounded geometry makes the collection unbounded
+        Plane plane = new Plane(new Point(1, 0, 0), new Point(2, 0, 0), new Point(1.5, 0, 1));
+        assertNull(new Geometries(sphere, plane).getBoundingBox(), "plane is unbounded");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: empty collection
+        assertNull(new Geometries().getBoundingBox(), "empty collection has no bounding box");
+    }
+
+    /**
+     * Test method for {@link IntersectionProfiler}.
+     */
+    @Test
+    void testIntersectionProfiler() {
+        Sphere sphere = new Sphere(new Point(0, 0, -10), 1);
+        Triangle triangle = new Triangle(new Point(5, 0, -10), new Point(7, 0, -10), new Point(5, 2, -10));
+        Geometries geometries = new Geometries(sphere, new Geometries(triangle));
+        IntersectionProfiler profiler = new IntersectionProfiler(geometries);
+        Ray hit = new Ray(Point.ZERO, new Vector(0, 0, -1));
+        for (int i = 0; i < 64; ++i) geometries.findGeoIntersections(hit);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: every geometry, nested ones too, is counted, and the hits are attributed to the sphere
+        var stats = profiler.getStats();
+        assertEquals(2, stats.size(), "every geometry must be profiled");
+        for (var s : stats) {
+            assertEquals(64, s.tests(), "wrong test count");
+            assertEquals(s.geometry() == sphere ? 64 : 0, s.hits(), "wrong hit count");
+        }
+        // TC02: the intersections are of the original geometry
+        assertSame(sphere, geometries.findGeoIntersections(hit).getFirst().geometry, "probe must be transparent");
+
+        // TC03: restoring puts the original geometries back
+        profiler.restore();
+        geometries.findGeoIntersections(hit);
+        assertEquals(65, profiler.getStats().getFirst().tests(), "restored geometries must not be counted");
+    }
+
+    /**
+     * Test method for {@link Geometries#buildHierarchy()}.
+     */
+    @Test
+    void testBuildHierarchy() {
+        java.util.Random random = new java.util.Random(1);
+        Geometries flat = new Geometries();
+        Geometries accelerated = new Geometries();
+        for (int i = 0; i < 3000; ++i) {
+            Point center = new Point(random.nextDouble(-50, 50), random.nextDouble(-50, 50), random.nextDouble(-50, 50));
+            Intersectable geometry = i % 2 == 0 ? new Sphere(center, random.nextDouble(0.1, 2))
+                    : new Triangle(center, center.add(new Vector(1, 0, 0)), center.add(new Vector(0, 1, 1)));
+            flat.add(geometry);
+            accelerated.add(geometry);
+        }
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the hierarchy is much cheaper than testing every geometry
+        BvhStats stats = accelerated.buildHierarchy();
+        assertNotNull(stats, "bounded geometries must be accelerated");
+        assertEquals(stats, accelerated.getHierarchyStats(), "wrong statistics");
+        assertTrue(stats.sahCost() < 100, "hierarchy is too expensive: " + stats);
+        assertEquals(stats.leaves() * 2 - 1, stats.nodes(), "a binary tree must have one node less than twice its leaves");
+
+        // TC02: the hierarchy finds the same intersections as the flat collection
+        for (int i = 0; i < 500; ++i) {
+            Ray ray = new Ray(new Point(random.nextDouble(-60, 60), random.nextDouble(-60, 60), 80),
+                    new Vector(random.nextDouble(-0.5, 0.5), random.nextDouble(-0.5, 0.5), -1));
+            var expected = flat.findGeoIntersections(ray);
+            var actual = accelerated.findGeoIntersections(ray);
+            assertEquals(expected == null ? 0 : expected.size(), actual == null ? 0 : actual.size(),
+                    "wrong number of intersections");
+            if (expected != null) assertTrue(actual.containsAll(expected), "missing intersections");
+        }
+
+        // TC03: unbounded geometries are kept out of the hierarchy and tested against every ray
+        Plane ground = new Plane(new Point(0, 0, -60), new Vector(0, 0, 1));
+        flat.add(ground);
+        accelerated.add(ground);
+        stats = accelerated.buildHierarchy();
+        assertNotNull(stats, "the bounded geometries must be accelerated beside a plane");
+        assertEquals(3000, Math.round(stats.leaves() * stats.averageLeafSize()), "the plane must not be in the hierarchy");
+        assertNull(accelerated.getBoundingBox(), "the plane makes the collection unbounded");
+        for (int i = 0; i < 200; ++i) {
+            Ray ray = new Ray(new Point(random.nextDouble(-60, 60), random.nextDouble(-60, 60), 80),
+                    new Vector(random.nextDouble(-0.5, 0.5), random.nextDouble(-0.5, 0.5), -1));
+            var expected = flat.findGeoIntersections(ray);
+            var actual = accelerated.findGeoIntersections(ray);
+            assertEquals(expected.size(), actual.size(), "wrong number of intersections");
+            assertTrue(actual.containsAll(expected), "missing intersections");
+            assertTrue(actual.stream().anyMatch(gp -> gp.geometry == ground), "ray must hit the plane");
+        }
+        Geometries onlyPlane = new Geometries(ground, new Sphere(new Point(0, 0, 5), 1));
+        assertNull(onlyPlane.buildHierarchy(), "a single bounded geometry is not worth accelerating");
+        assertEquals(3, onlyPlane.findGeoIntersections(new Ray(new Point(0, 0, 9), new Vector(0, 0, -1))).size(),
+                "ray must hit the sphere twice and the plane once");
+
+        // TC04: adding a geometry drops the hierarchy
+        accelerated.add(new Sphere(new Point(0, 0, 0), 1));
+        assertNull(accelerated.getHierarchyStats(), "hierarchy must be dropped");
+
+        // TC05: hierarchies nested in a hierarchy are traversed within its traversal
+        Geometries nested = new Geometries();
+        for (int i = 0; i < 10; ++i) {
+            Geometries row = new Geometries();
+            for (int j = 0; j < 10; ++j) row.add(new Sphere(new Point(i * 3, j * 3, 0), 1));
+            row.buildHierarchy();
+            nested.add(row);
+        }
+        nested.buildHierarchy();
+        for (int i = 0; i < 10; ++i)
+            for (int j = 0; j < 10; ++j)
+                assertEquals(2, nested.findGeoIntersections(new Ray(new Point(i * 3, j * 3, 5), new Vector(0, 0, -1)))
+                        .size(), "ray must hit the nested sphere");
+    }
+
+    /**
+     * Test method for {@link Geometries#refitHierarchy()}.
+     */
+    @Test
+    void testRefitHierarchy() {
+        java.util.Random random = new java.util.Random(2);
+        Geometries geometries = new Geometries();
+        Sphere[] spheres = new Sphere[1000];
+        for (int i = 0; i < spheres.length; ++i) {
+            spheres[i] = new Sphere(new Point(random.nextDouble(-50, 50), random.nextDouble(-50, 50),
+                    random.nextDouble(-50, 50)), 1);
+            geometries.add(spheres[i]);
+        }
+        BvhStats built = geometries.buildHierarchy();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: small moves keep the structure and update the boxes
+        for (Sphere sphere : spheres) sphere.setCenter(sphere.getBoundingBox().center().add(new Vector(0.1, 0.2, 0)));
+        BvhStats refitted = geometries.refitHierarchy();
+        assertEquals(built.nodes(), refitted.nodes(), "a refit must keep the structure");
+        assertHitsAll(geometries, spheres);
+
+        // TC02: scattering the spheres triggers a rebuild that restores the quality
+        for (Sphere sphere : spheres)
+            sphere.setCenter(new Point(random.nextDouble(-50, 50), random.nextDouble(-50, 50), random.nextDouble(-50, 50)));
+        refitted = geometries.refitHierarchy();
+        assertTrue(refitted.sahCost() < built.sahCost() * 1.3, "degraded hierarchy must be rebuilt: " + refitted);
+        assertHitsAll(geometries, spheres);
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a collection without a hierarchy
+        assertNull(new Geometries(spheres[0]).refitHierarchy(), "flat collection has nothing to refit");
+    }
+
+    /**
+     * Test method for {@link Geometries#buildGrid(boolean)} and {@link Geometries#setAcceleration}.
+     */
+    @Test
+    void testBuildGrid() {
+        java.util.Random random = new java.util.Random(3);
+        Geometries flat = new Geometries();
+        Geometries cloud = new Geometries();
+        for (int i = 0; i < 3000; ++i) {
+            // a sparse cloud of bubbles with a dense cluster around the origin
+            double spread = i % 3 == 0 ? 2 : 50;
+            Sphere bubble = new Sphere(new Point(random.nextDouble(-spread, spread), random.nextDouble(-spread, spread),
+                    random.nextDouble(-spread, spread)), random.nextDouble(0.1, 1));
+            flat.add(bubble);
+            cloud.add(bubble);
+        }
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a uniform grid has about 3 cells per geometry
+        GridStats stats = cloud.buildGrid(false);
+        assertNotNull(stats, "bounded geometries must be accelerated");
+        assertEquals(stats, cloud.getGridStats(), "wrong statistics");
+        assertNull(cloud.getHierarchyStats(), "a grid is not a hierarchy");
+        assertEquals(Geometries.Acceleration.GRID, cloud.getAcceleration(), "wrong acceleration");
+        assertTrue(stats.cells() > 3000 && stats.cells() < 20000, "wrong resolution: " + stats);
+        assertEquals(0, stats.nestedGrids(), "a uniform grid has no nested grids");
+        assertSameIntersections(flat, cloud, random);
+
+        // TC02: the two level grid refines the crowded cells of the cluster
+        stats = cloud.buildGrid(true);
+        assertEquals(Geometries.Acceleration.TWO_LEVEL_GRID, cloud.getAcceleration(), "wrong acceleration");
+        assertTrue(stats.nestedGrids() > 0, "the cluster must get nested grids: " + stats);
+        assertSameIntersections(flat, cloud, random);
+
+        // TC03: the acceleration is chosen per collection
+        assertEquals(Geometries.Acceleration.LAZY_BVH,
+                cloud.setAcceleration(Geometries.Acceleration.LAZY_BVH).getAcceleration(), "wrong acceleration");
+        assertSameIntersections(flat, cloud, random);
+        assertEquals(Geometries.Acceleration.BVH, cloud.setAcceleration(Geometries.Acceleration.BVH).getAcceleration(),
+                "wrong acceleration");
+        assertEquals(Geometries.Acceleration.NONE, cloud.setAcceleration(Geometries.Acceleration.NONE).getAcceleration(),
+                "wrong acceleration");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: flat geometries get a single layer of cells
+        Geometries floor = new Geometries();
+        for (int x = 0; x < 20; ++x)
+            for (int y = 0; y < 20; ++y)
+                floor.add(new Triangle(new Point(x, y, 0), new Point(x + 1, y, 0), new Point(x, y + 1, 0)));
+        stats = floor.buildGrid(false);
+        assertEquals(1, stats.resolutionZ(), "a flat axis must have a single cell");
+        var hits = floor.findGeoIntersections(new Ray(new Point(5.2, 7.2, 3), new Vector(0, 0, -1)));
+        assertNotNull(hits, "ray must hit the floor");
+        assertEquals(1, hits.size(), "a triangle in several cells must be tested once");
+    }
+
+    /**
+     * Test method for {@link Geometries#compile()}.
+     */
+    @Test
+    void testCompile() {
+        java.util.Random random = new java.util.Random(7);
+        primitives.Material material = new primitives.Material();
+        Geometries scene = new Geometries();
+        Geometries flat = new Geometries();
+        Geometries strip = new Geometries();
+        for (int i = 0; i < 40; ++i) {
+            // a strip of triangles nested two levels deep, as loaded from a mesh file
+            Triangle triangle = new Triangle(new Point(i, 0, 0), new Point(i + 1, 0, 0), new Point(i, 1, 0));
+            triangle.setMaterial(material);
+            strip.add(triangle);
+            flat.add(triangle);
+        }
+        scene.add(new Geometries(strip), new Geometries());
+        for (int i = 0; i < 10; ++i) {
+            Sphere sphere = new Sphere(new Point(random.nextDouble(-40, 40), random.nextDouble(-40, 40), 5), 1);
+            scene.add(new Geometries(sphere));
+            flat.add(sphere);
+        }
+        Plane ground = new Plane(new Point(0, 0, -10), new Vector(0, 0, 1));
+        scene.add(ground);
+        flat.add(ground);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the nesting is flattened and the triangles are merged into a mesh
+        Geometries compiled = scene.compile();
+        assertEquals(12, compiled.geometries.size(), "one mesh, ten spheres and a plane");
+        assertEquals(1, compiled.geometries.stream().filter(g -> g instanceof Mesh).count(), "wrong number of meshes");
+        assertEquals(Geometries.Acceleration.BVH, compiled.getAcceleration(), "a large scene must be accelerated");
+        assertEquals(13, scene.geometries.size(), "the original collection must not change");
+        assertSameIntersections(flat, compiled, random);
+
+        // TC02: the compiled collection can't be changed
+        assertThrows(UnsupportedOperationException.class, () -> compiled.add(ground), "compiled collection changed");
+
+        // TC03: accelerated nested collections and the chosen acceleration are kept
+        strip.buildGrid(false);
+        scene.setAcceleration(Geometries.Acceleration.LAZY_BVH);
+        Geometries kept = scene.compile();
+        assertTrue(kept.geometries.contains(strip), "an accelerated collection must be kept");
+        assertEquals(Geometries.Acceleration.LAZY_BVH, kept.getAcceleration(), "the acceleration must be kept");
+        assertSameIntersections(flat, kept, random);
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a few triangles stay triangles and a small collection stays flat
+        Triangle triangle = new Triangle(new Point(0, 0, 0), new Point(1, 0, 0), new Point(0, 1, 0));
+        Geometries small = new Geometries(new Geometries(new Geometries(triangle)), new Geometries());
+        Geometries compiledSmall = small.compile();
+        assertEquals(List.of(triangle), compiledSmall.geometries, "the singleton must be replaced by its geometry");
+        assertEquals(Geometries.Acceleration.NONE, compiledSmall.getAcceleration(), "a small scene stays flat");
+    }
+
+    /**
+     * Asserts that an accelerated collection finds the same intersections as a flat one.
+     *
+     * @param flat        the flat collection
+     * @param accelerated the accelerated collection of the same geometries
+     * @param random      the random generator of the rays
+     */
+    private static void assertSameIntersections(Geometries flat, Geometries accelerated, java.util.Random random) {
+        for (int i = 0; i < 500; ++i) {
+            Ray ray = new Ray(new Point(random.nextDouble(-60, 60), random.nextDouble(-60, 60), 80),
+                    new Vector(random.nextDouble(-0.5, 0.5), random.nextDouble(-0.5, 0.5), -1));
+            var expected = flat.findGeoIntersections(ray);
+            var actual = accelerated.findGeoIntersections(ray);
+            assertEquals(expected == null ? 0 : expected.size(), actual == null ? 0 : actual.size(),
+                    "wrong number of intersections");
+            if (expected != null) assertTrue(actual.containsAll(expected), "missing intersections");
+        }
+    }
+
+    /**
+     * Asserts that a ray aimed at the center of each sphere hits it.
+     *
+     * @param geometries the collection containing the spheres
+     * @param spheres    the spheres
+     */
+    private static void assertHitsAll(Geometries geometries, Sphere[] spheres) {
+        for (Sphere sphere : spheres) {
+            Point center = sphere.getBoundingBox().center();
+            var hits = geometries.findGeoIntersections(new Ray(center.add(new Vector(0, 0, 100)), new Vector(0, 0, -1)));
+            assertNotNull(hits, "ray must hit the sphere");
+            assertTrue(hits.stream().anyMatch(gp -> gp.geometry == sphere), "ray must hit the sphere");
+        }
+    }
+}
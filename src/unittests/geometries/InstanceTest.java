@@ -0,0 +1,95 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the geometries.Instance class.
+ */
+class InstanceTest {
+    /**
+     * A unit sphere shared by the instances of the tests
+     */
+    private final Sphere sphere = (Sphere) new Sphere(new Point(0, 0, 0), 1d)
+            .setMaterial(new Material().setKd(0.5)).setEmission(new Color(10, 0, 0));
+
+    /**
+     * Test method for {@link Instance#findGeoIntersections(Ray)}.
+     */
+    @Test
+    void testFindGeoIntersections() {
+        Instance instance = new Instance(sphere,
+                Transform.scaling(2, 1, 1).then(Transform.translation(new Vector(10, 0, 0))));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the ray hits the transformed sphere at the transformed points
+        List<Intersectable.GeoPoint> intersections = instance.findGeoIntersections(
+                new Ray(new Point(0, 0, 0), new Vector(1, 0, 0)));
+        assertNotNull(intersections, "ray must hit the instance");
+        assertEquals(List.of(new Point(8, 0, 0), new Point(12, 0, 0)),
+                intersections.stream().map(gp -> gp.point).sorted((a, b) -> Double.compare(a.getX(), b.getX())).toList(),
+                "wrong intersection points");
+        // TC02: the ray misses the transformed sphere, although it hits the shared one
+        assertNull(instance.findGeoIntersections(new Ray(new Point(0, 0, 5), new Vector(0, 0, -1))),
+                "ray must miss the instance");
+        // TC03: the normal is transformed to the scene
+        Geometry hit = intersections.getFirst().geometry;
+        assertEquals(new Vector(0, 1, 0), hit.getNormal(new Point(10, 1, 0)), "wrong normal at the top");
+        Vector normal = hit.getNormal(new Point(10 + Math.sqrt(2), Math.sqrt(0.5), 0));
+        assertEquals(0, normal.dotProduct(new Vector(2, -1, 0)), 1e-10, "normal must be perpendicular to the ellipse");
+        // TC04: hits of the same instance and geometry are the same surface
+        assertEquals(hit, intersections.getLast().geometry, "hits of the same surface must be equal");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: the instance keeps the material of the shared geometry unless it overrides it
+        assertSame(sphere.getMaterial(), hit.getMaterial(), "material must be shared");
+        assertEquals(sphere.getEmission(), hit.getEmission(), "emission must be shared");
+        Material gold = new Material().setKs(0.8);
+        instance.setMaterial(gold).setEmission(Color.BLACK);
+        assertSame(gold, hit.getMaterial(), "material must be overridden");
+        assertEquals(Color.BLACK, hit.getEmission(), "emission must be overridden");
+        assertNotSame(gold, sphere.getMaterial(), "the shared geometry must not change");
+    }
+
+    /**
+     * Test method for {@link Instance#getBoundingBox()} and a two level hierarchy of instances.
+     */
+    @Test
+    void testInstancedHierarchy() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the box of the instance is the box of the transformed geometry
+        assertEquals(new BoundingBox(4, -1, -1, 6, 1, 1),
+                new Instance(sphere, Transform.translation(5, 0, 0)).getBoundingBox(), "wrong box");
+        // TC02: an instance of an unbounded geometry is unbounded
+        assertNull(new Instance(new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)), Transform.IDENTITY)
+                .getBoundingBox(), "instance of a plane must be unbounded");
+
+        // TC03: a top level hierarchy over a grid of instances of one accelerated mesh
+        Geometries mesh = new Geometries();
+        for (int i = 0; i < 8; ++i)
+            mesh.add(new Sphere(new Point(i * 0.2 - 0.8, 0, 0), 0.1));
+        mesh.buildHierarchy();
+        Geometries scene = new Geometries();
+        Instance[][] grid = new Instance[30][30];
+        for (int row = 0; row < 30; ++row)
+            for (int col = 0; col < 30; ++col)
+                scene.add(grid[row][col] = new Instance(mesh,
+                        Transform.rotation(new Vector(0, 0, 1), row * 12).then(
+                                Transform.translation(col * 3, row * 3, 0))));
+        assertNotNull(scene.buildHierarchy(), "instances must be accelerated");
+        for (int row = 0; row < 30; row += 7)
+            for (int col = 0; col < 30; col += 7) {
+                List<Intersectable.GeoPoint> intersections = scene.findGeoIntersections(
+                        new Ray(new Point(col * 3, row * 3, 5), new Vector(0, 0, -1)));
+                assertNotNull(intersections, "ray must hit the instance at " + row + "," + col);
+                Geometry expected = grid[row][col].findGeoIntersections(
+                        new Ray(new Point(col * 3, row * 3, 5), new Vector(0, 0, -1))).getFirst().geometry;
+                assertTrue(intersections.stream().allMatch(gp -> gp.geometry.equals(expected)),
+                        "ray must hit only the instance at " + row + "," + col);
+            }
+    }
+}
@@ -0,0 +1,86 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the geometries.LazyBvh class.
+ */
+class LazyBvhTest {
+    /**
+     * Creates a grid of small spheres on the plane z = 0.
+     *
+     * @param side the number of spheres along each axis
+     * @return the spheres
+     */
+    private static List<Intersectable> spheres(int side) {
+        List<Intersectable> spheres = new java.util.ArrayList<>();
+        for (int x = 0; x < side; ++x)
+            for (int y = 0; y < side; ++y)
+                spheres.add(new Sphere(new Point(x, y, 0), 0.3));
+        return spheres;
+    }
+
+    /**
+     * Test method for {@link LazyBvh#findGeoIntersections(Ray)}.
+     */
+    @Test
+    void testFindGeoIntersections() {
+        List<Intersectable> spheres = spheres(40);
+        Geometries flat = new Geometries(spheres.toArray(new Intersectable[0]));
+        LazyBvh lazy = new LazyBvh(spheres);
+        Random random = new Random(5);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: nothing is split before the first ray
+        assertEquals(0, lazy.splits(), "the hierarchy must be split on demand");
+
+        // TC02: rays in a corner split only the nodes along their way
+        for (int i = 0; i < 200; ++i) {
+            Ray ray = new Ray(new Point(random.nextDouble(0, 5), random.nextDouble(0, 5), 10), new Vector(0, 0, -1));
+            assertSameIntersections(flat.findGeoIntersections(ray), lazy.findGeoIntersections(ray));
+        }
+        int corner = lazy.splits();
+        assertTrue(corner > 0, "the corner must be split");
+        assertTrue(corner < 100, "the far regions must not be split: " + corner);
+
+        // TC03: rays all over the scene split the rest and find the same intersections
+        for (int i = 0; i < 500; ++i) {
+            Ray ray = new Ray(new Point(random.nextDouble(-2, 42), random.nextDouble(-2, 42), 10),
+                    new Vector(random.nextDouble(-0.2, 0.2), random.nextDouble(-0.2, 0.2), -1));
+            assertSameIntersections(flat.findGeoIntersections(ray), lazy.findGeoIntersections(ray));
+        }
+        assertTrue(lazy.splits() > corner, "the rest of the scene must be split");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: threads racing to split the same nodes find the same intersections
+        LazyBvh raced = new LazyBvh(spheres);
+        IntStream.range(0, 4000).parallel().forEach(i -> {
+            Ray ray = new Ray(new Point(i % 40 + 0.1, i / 100 + 0.1, 10), new Vector(0, 0, -1));
+            assertSameIntersections(flat.findGeoIntersections(ray), raced.findGeoIntersections(ray));
+        });
+        // every node is split by one thread only, so the splits form a tree over at most all the spheres
+        assertTrue(raced.splits() < spheres.size(), "a node must be split once");
+    }
+
+    /**
+     * Asserts that two lists of intersections are the same.
+     *
+     * @param expected the expected intersections, or null
+     * @param actual   the actual intersections, or null
+     */
+    private static void assertSameIntersections(List<Intersectable.GeoPoint> expected,
+                                                List<Intersectable.GeoPoint> actual) {
+        assertEquals(expected == null ? 0 : expected.size(), actual == null ? 0 : actual.size(),
+                "wrong number of intersections");
+        if (expected != null) assertTrue(actual.containsAll(expected), "missing intersections");
+    }
+}
@@ -0,0 +1,102 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import primitives.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the geometries.Mesh class.
+ */
+class MeshTest {
+    /**
+     * A temporary directory for mesh files
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Test method for {@link Mesh#findGeoIntersections(Ray)}.
+     */
+    @Test
+    void testFindGeoIntersections() {
+        Random random = new Random(4);
+        List<Triangle> soup = new ArrayList<>();
+        for (int i = 0; i < 2000; ++i) {
+            Point p = new Point(random.nextDouble(-20, 20), random.nextDouble(-20, 20), random.nextDouble(-20, 20));
+            soup.add(new Triangle(p, p.add(new Vector(random.nextDouble(0.5, 2), 0, 0.3)),
+                    p.add(new Vector(0, random.nextDouble(0.5, 2), -0.2))));
+        }
+        Geometries triangles = new Geometries(soup.toArray(new Intersectable[0]));
+        Mesh mesh = Mesh.of(soup, true).setMaterial(new Material().setKd(0.3));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the mesh finds the intersections of its triangles
+        assertTrue(mesh.isOffHeap(), "mesh must be off-heap");
+        assertEquals(2000, mesh.size(), "wrong triangle count");
+        for (int i = 0; i < 500; ++i) {
+            Ray ray = new Ray(new Point(random.nextDouble(-25, 25), random.nextDouble(-25, 25), 40),
+                    new Vector(random.nextDouble(-0.3, 0.3), random.nextDouble(-0.3, 0.3), -1));
+            var expected = triangles.findGeoIntersections(ray);
+            var actual = mesh.findGeoIntersections(ray);
+            assertEquals(expected == null ? 0 : expected.size(), actual == null ? 0 : actual.size(),
+                    "wrong number of intersections");
+            if (expected == null) continue;
+            for (var gp : expected)
+                assertTrue(actual.stream().anyMatch(hit -> hit.point.distance(gp.point) < 1e-9
+                                && hit.geometry.getNormal(hit.point).equals(gp.geometry.getNormal(gp.point))),
+                        "missing intersection " + gp.point);
+        }
+
+        // TC02: the faces have the material of the mesh and are equal per triangle
+        var hits = mesh.findGeoIntersections(new Ray(soup.getFirst().vertices.getFirst()
+                .add(new Vector(0.1, 0.1, 10)), new Vector(0, 0, -1)));
+        assertNotNull(hits, "ray must hit the first triangle");
+        assertSame(mesh.getMaterial(), hits.getFirst().geometry.getMaterial(), "wrong material");
+        var again = mesh.findGeoIntersections(new Ray(soup.getFirst().vertices.getFirst()
+                .add(new Vector(0.12, 0.1, 10)), new Vector(0, 0, -1)));
+        assertTrue(again.stream().anyMatch(gp -> gp.geometry.equals(hits.getFirst().geometry)),
+                "faces of the same triangle must be equal");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a mesh without triangles
+        assertThrows(IllegalArgumentException.class, () -> new Mesh(new double[]{0, 0, 0}, new int[0], false),
+                "empty mesh");
+        // TC11: a vertex index out of range
+        assertThrows(IllegalArgumentException.class,
+                () -> new Mesh(new double[]{0, 0, 0, 1, 0, 0, 0, 1, 0}, new int[]{0, 1, 3}, false), "bad index");
+    }
+
+    /**
+     * Test method for {@link Mesh#save(Path)} and {@link Mesh#map(Path)}.
+     */
+    @Test
+    void testSaveAndMap() throws IOException {
+        Mesh mesh = new Mesh(new double[]{0, 0, 0, 2, 0, 0, 0, 2, 0, 0, 0, 2}, new int[]{0, 1, 2, 0, 1, 3, 0, 2, 3},
+                false);
+        Path file = directory.resolve("pyramid.mesh");
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a mapped mesh finds the same intersections as the saved one, without taking heap
+        assertFalse(mesh.isOffHeap(), "mesh must be on the heap");
+        mesh.save(file);
+        Mesh mapped = Mesh.map(file);
+        assertTrue(mapped.isOffHeap(), "mapped mesh must be off-heap");
+        assertEquals(mesh.getStorageBytes(), mapped.getStorageBytes(), "wrong mapped size");
+        assertEquals(mesh.getBoundingBox(), mapped.getBoundingBox(), "wrong box");
+        Ray ray = new Ray(new Point(0.3, 0.3, 5), new Vector(0, 0, -1));
+        assertEquals(mesh.findIntersections(ray), mapped.findIntersections(ray), "wrong mapped intersections");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a file that is not a mesh
+        java.nio.file.Files.write(file, new byte[64]);
+        assertThrows(IllegalArgumentException.class, () -> Mesh.map(file), "not a mesh file");
+    }
+}
@@ -0,0 +1,76 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import primitives.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the geometries.OutOfCoreMesh class.
+ */
+class OutOfCoreMeshTest {
+    /**
+     * A temporary directory for the bricks
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Test method for {@link OutOfCoreMesh#partition} and {@link OutOfCoreMesh#open(Path, long)}.
+     */
+    @Test
+    void testPartitionAndOpen() throws IOException {
+        Random random = new Random(5);
+        double[] coordinates = new double[9 * 4000];
+        Geometries triangles = new Geometries();
+        for (int t = 0; t < 4000; ++t) {
+            Point p = new Point(random.nextDouble(-50, 50), random.nextDouble(-50, 50), random.nextDouble(-5, 5));
+            Point[] vertices = {p, p.add(new Vector(1.5, 0, 0.2)), p.add(new Vector(0, 1.5, -0.2))};
+            for (int k = 0; k < 3; ++k) {
+                coordinates[9 * t + 3 * k] = vertices[k].getX();
+                coordinates[9 * t + 3 * k + 1] = vertices[k].getY();
+                coordinates[9 * t + 3 * k + 2] = vertices[k].getZ();
+            }
+            triangles.add(new Triangle(vertices[0], vertices[1], vertices[2]));
+        }
+        OutOfCoreMesh.TriangleSource source = consumer -> {
+            double[] triangle = new double[9];
+            for (int t = 0; t < 4000; ++t) {
+                System.arraycopy(coordinates, 9 * t, triangle, 0, 9);
+                consumer.accept(triangle);
+            }
+        };
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the mesh is partitioned into bricks of about the requested size
+        int bricks = OutOfCoreMesh.partition(source, directory, 250);
+        assertTrue(bricks >= 8 && bricks <= 32, "wrong number of bricks: " + bricks);
+
+        // TC02: the bricks are mapped on demand within the budget, and find the intersections of the mesh
+        long brickBytes = 250 * 150;
+        OutOfCoreMesh mesh = OutOfCoreMesh.open(directory, 3 * brickBytes);
+        assertEquals(bricks, mesh.getBrickCount(), "wrong number of bricks");
+        assertEquals(0, mesh.getLoads(), "no brick must be mapped before the first ray");
+        for (int i = 0; i < 400; ++i) {
+            Ray ray = new Ray(new Point(random.nextDouble(-50, 50), random.nextDouble(-50, 50), 20),
+                    new Vector(0, 0, -1));
+            var expected = triangles.findGeoIntersections(ray);
+            var actual = mesh.findGeoIntersections(ray);
+            assertEquals(expected == null ? 0 : expected.size(), actual == null ? 0 : actual.size(),
+                    "wrong number of intersections");
+            assertTrue(mesh.getResidentBytes() <= 3 * brickBytes, "resident bricks exceed the budget");
+        }
+        assertTrue(mesh.getEvictions() > 0, "bricks must be released to respect the budget");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a ray missing the mesh maps no brick
+        OutOfCoreMesh fresh = OutOfCoreMesh.open(directory, Long.MAX_VALUE);
+        assertNull(fresh.findGeoIntersections(new Ray(new Point(0, 0, 20), new Vector(0, 1, 0))), "ray must miss");
+        assertEquals(0, fresh.getLoads(), "a missing ray must not map bricks");
+    }
+}
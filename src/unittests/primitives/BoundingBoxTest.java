@@ -0,0 +1,56 @@
+package primitives;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the primitives.BoundingBox class.
+ */
+class BoundingBoxTest {
+    /**
+     * The unit cube for the tests
+     */
+    private final BoundingBox cube = new BoundingBox(0, 0, 0, 1, 1, 1);
+
+    /**
+     * Test method for {@link BoundingBox#intersects(Ray)} and {@link BoundingBox#intersects(Ray, double)}.
+     */
+    @Test
+    void testIntersects() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the ray passes through the box
+        assertTrue(cube.intersects(new Ray(new Point(-1, 0.5, 0.5), new Vector(1, 0.1, 0))), "ray hits the box");
+        // TC02: the ray misses the box
+        assertFalse(cube.intersects(new Ray(new Point(-1, 0.5, 0.5), new Vector(1, 2, 0))), "ray misses the box");
+        // TC03: the box is behind the ray
+        assertFalse(cube.intersects(new Ray(new Point(-1, 0.5, 0.5), new Vector(-1, 0, 0))), "box is behind the ray");
+        // TC04: the ray starts inside the box
+        assertTrue(cube.intersects(new Ray(new Point(0.5, 0.5, 0.5), new Vector(1, 1, 1))), "ray starts inside");
+        // TC05: the box is farther than the maximal distance
+        assertFalse(cube.intersects(new Ray(new Point(-3, 0.5, 0.5), new Vector(1, 0, 0)), 2), "box is too far");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: the ray is parallel to an axis and passes inside the box
+        assertTrue(cube.intersects(new Ray(new Point(0.5, 0.5, 5), new Vector(0, 0, -1))), "axis parallel hit");
+        // TC11: the ray is parallel to an axis and passes outside the box
+        assertFalse(cube.intersects(new Ray(new Point(2, 0.5, 5), new Vector(0, 0, -1))), "axis parallel miss");
+        // TC12: a flat box hit by a perpendicular ray
+        assertTrue(new BoundingBox(0, 0, 0, 1, 1, 0).intersects(new Ray(new Point(0.5, 0.5, 1), new Vector(0, 0, -1))),
+                "flat box hit");
+    }
+
+    /**
+     * Test method for {@link BoundingBox#union(BoundingBox)} and {@link BoundingBox#surfaceArea()}.
+     */
+    @Test
+    void testUnion() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: union of two disjoint boxes
+        BoundingBox union = cube.union(new BoundingBox(new Point(2, -1, 0), new Point(3, 0, 2)));
+        assertEquals(new BoundingBox(0, -1, 0, 3, 1, 2), union, "wrong union");
+        assertEquals(2 * (3 * 2 + 2 * 2 + 2 * 3), union.surfaceArea(), 1e-10, "wrong surface area");
+        // TC02: illegal coordinates
+        assertThrows(IllegalArgumentException.class, () -> new BoundingBox(1, 0, 0, 0, 1, 1), "min must not exceed max");
+    }
+}
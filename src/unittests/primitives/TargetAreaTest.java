@@ -0,0 +1,112 @@
+package primitives;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the primitives.TargetArea class.
+ */
+class TargetAreaTest {
+    /**
+     * The axis of the tested cones.
+     */
+    private static final Vector AXIS = new Vector(0, 0, 1);
+
+    /**
+     * Averages the offsets of the directions of many cones from the cone's axis.
+     *
+     * @param table  the sampling table of the cones
+     * @param amount the number of directions of every cone
+     * @param radius the radius of the cones' cross-section at distance 1
+     * @return the mean offsets along x and y, then their root mean squares along x and y, in units of the
+     * radius
+     */
+    private static double[] meanOffset(TargetArea.SampleTable table, int amount, double radius) {
+        final int cones = 2000;
+        double x = 0, y = 0, xx = 0, yy = 0;
+        Util.seedRandom(17);
+        for (int i = 0; i < cones; ++i) {
+            List<Vector> directions = TargetArea.generateDirectionsInCone(AXIS, table, amount);
+            assertEquals(amount, directions.size(), "wrong amount of directions");
+            for (Vector direction : directions) {
+                double dx = direction.xyz.d1 / direction.xyz.d3 / radius;
+                double dy = direction.xyz.d2 / direction.xyz.d3 / radius;
+                x += dx;
+                y += dy;
+                xx += dx * dx;
+                yy += dy * dy;
+            }
+        }
+        int samples = cones * amount;
+        return new double[]{x / samples, y / samples, Math.sqrt(xx / samples), Math.sqrt(yy / samples)};
+    }
+
+    /**
+     * Test method for {@link TargetArea.SampleTable#SampleTable(TargetArea.SamplePattern, double, int)}.
+     */
+    @Test
+    void testSamplePatterns() {
+        final double angle = Math.toRadians(20), radius = Math.tan(angle) / 2;
+        // the samples are spread uniformly over a square of side 1, whose root mean square offset is sqrt(1/12)
+        final double spread = Math.sqrt(1d / 12);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: both patterns sample the cone around its axis with the same spread
+        for (TargetArea.SamplePattern pattern : TargetArea.SamplePattern.values()) {
+            double[] moments = meanOffset(new TargetArea.SampleTable(pattern, angle, 16), 16, radius);
+            assertEquals(0, moments[0], 0.01, pattern + " is off the axis along x");
+            assertEquals(0, moments[1], 0.01, pattern + " is off the axis along y");
+            assertEquals(spread, moments[2], 0.01, pattern + " has a different spread along x");
+            assertEquals(spread, moments[3], 0.01, pattern + " has a different spread along y");
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a cone of fewer samples than the Halton table holds keeps the same spread
+        double[] moments = meanOffset(new TargetArea.SampleTable(TargetArea.SamplePattern.HALTON, angle, 16), 5,
+                radius);
+        assertEquals(0, moments[0], 0.01, "partial Halton cone is off the axis");
+        assertEquals(spread, moments[2], 0.01, "partial Halton cone has a different spread");
+    }
+
+    /**
+     * Test method for
+     * {@link TargetArea#generateDirectionsInCone(Vector, TargetArea.SampleTable, int)}.
+     */
+    @Test
+    void testGenerateDirectionsInCone() {
+        final double angle = Math.toRadians(20), radius = Math.tan(angle) / 2;
+        TargetArea.SampleTable grid = new TargetArea.SampleTable(TargetArea.SamplePattern.JITTERED_GRID, angle, 25);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a full grid is centered on the axis
+        double[] mean = meanOffset(grid, 25, radius);
+        assertEquals(0, mean[0], 0.01, "full grid is off the axis along x");
+        assertEquals(0, mean[1], 0.01, "full grid is off the axis along y");
+
+        // TC02: a cone of fewer samples than the grid holds is centered on the axis
+        mean = meanOffset(grid, 5, radius);
+        assertEquals(0, mean[0], 0.01, "partial grid is off the axis along x");
+        assertEquals(0, mean[1], 0.01, "partial grid is off the axis along y");
+
+        // TC03: a partial grid covers both sides of the axis
+        Util.seedRandom(3);
+        List<Vector> directions = TargetArea.generateDirectionsInCone(AXIS, grid, 5);
+        assertTrue(directions.stream().anyMatch(d -> d.xyz.d1 < 0) && directions.stream().anyMatch(d -> d.xyz.d1 > 0),
+                "partial grid must cover both sides of the axis");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a grid of a non-square amount of samples is centered on the axis
+        mean = meanOffset(new TargetArea.SampleTable(TargetArea.SamplePattern.JITTERED_GRID, angle, 7), 7, radius);
+        assertEquals(0, mean[0], 0.01, "non-square grid is off the axis along x");
+        assertEquals(0, mean[1], 0.01, "non-square grid is off the axis along y");
+
+        // TC11: a single direction stays inside the cell around the axis
+        directions = TargetArea.generateDirectionsInCone(AXIS, grid, 1);
+        assertEquals(1, directions.size(), "wrong amount of directions");
+        assertTrue(Math.abs(directions.getFirst().xyz.d1) <= radius / 2,
+                "single direction must stay in the cone");
+    }
+}
@@ -0,0 +1,59 @@
+package primitives;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the primitives.Transform class.
+ */
+class TransformTest {
+    /**
+     * Test method for {@link Transform#apply(Point)}, {@link Transform#then(Transform)} and
+     * {@link Transform#inverse()}.
+     */
+    @Test
+    void testApply() {
+        Transform rotation = Transform.rotation(new Vector(0, 0, 1), 90);
+        Transform transform = Transform.scaling(2, 2, 2).then(rotation).then(Transform.translation(1, 0, 0));
+        Point point = new Point(1, 0, 3);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the rotation turns the x axis to the y axis
+        assertEquals(new Point(0, 1, 0), rotation.apply(new Point(1, 0, 0)), "wrong rotation");
+        // TC02: composed transformations are applied in order
+        assertEquals(new Point(1, 2, 6), transform.apply(point), "wrong composition");
+        // TC03: the inverse transformation brings the point back
+        assertEquals(point, transform.applyInverse(transform.apply(point)), "wrong inverse");
+        assertEquals(point, transform.inverse().apply(transform.apply(point)), "wrong inverse transformation");
+        // TC04: directions are not translated
+        assertEquals(new Vector(0, 2, 0), transform.applyToVector(new Vector(1, 0, 0)), "directions must not move");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a zero scale factor is not invertible
+        assertThrows(IllegalArgumentException.class, () -> Transform.scaling(1, 0, 1), "zero scale is singular");
+    }
+
+    /**
+     * Test method for {@link Transform#applyToNormal(Vector)} and {@link Transform#apply(BoundingBox)}.
+     */
+    @Test
+    void testNormalAndBox() {
+        Transform stretch = Transform.scaling(4, 1, 1);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: under non-uniform scaling the normal stays perpendicular to the stretched surface
+        // (the plane x + y = 1 becomes x / 4 + y = 1)
+        Vector normal = stretch.applyToNormal(new Vector(1, 1, 0));
+        assertEquals(0, normal.dotProduct(stretch.applyToVector(new Vector(1, -1, 0))), 1e-10, "normal is not perpendicular");
+        assertEquals(1, normal.length(), 1e-10, "normal is not normalized");
+        // TC02: the box of a rotated box contains all its transformed corners
+        Transform rotation = Transform.rotation(new Vector(0, 0, 1), 45).then(Transform.translation(0, 0, 5));
+        BoundingBox box = rotation.apply(new BoundingBox(0, 0, 0, 1, 1, 1));
+        double h = Math.sqrt(2) / 2;
+        assertEquals(-h, box.getMinX(), 1e-10, "wrong minimal x");
+        assertEquals(h, box.getMaxX(), 1e-10, "wrong maximal x");
+        assertEquals(2 * h, box.getMaxY(), 1e-10, "wrong maximal y");
+        assertEquals(5, box.getMinZ(), 1e-10, "wrong minimal z");
+    }
+}
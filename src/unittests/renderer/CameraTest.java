@@ -1,12 +1,33 @@
 package renderer;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
+import geometries.Intersectable.GeoPoint;
+import geometries.Sphere;
+import lighting.PointLight;
 import org.junit.jupiter.api.Test;
 
 import primitives.*;
 import renderer.*;
 import scene.Scene;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 //import scene.Scene;
 
 
@@ -71,4 +92,366 @@ class CameraTest {
 
     }
 
-}
\ No newline at end of file
+    /**
+     * Test method for {@link renderer.Camera#renderImageAsync(Executor, int)}.
+     *
+     * @throws Exception if the render job is interrupted or fails unexpectedly
+     */
+    @Test
+    void testRenderImageAsync() throws Exception {
+        Camera.Builder builder = Camera.getBuilder()
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), new Vector(0, -1, 0))
+                .setVpDistance(10.0).setVpSize(8.0, 8.0);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: the job completes with the camera and the whole image
+            Camera camera = builder.setRayTracer(new SimpleRayTracer(new Scene("Test")))
+                    .setImageWriter(new ImageWriter("Test", 40, 40)).build();
+            RenderJob job = camera.renderImageAsync(executor, 2);
+            assertSame(camera, job.get(10, TimeUnit.SECONDS), "job must complete with its camera");
+            assertEquals(1, job.getProgress(), "completed job must have rendered all the tiles");
+
+            // TC02: an exception in a worker fails the job
+            RayTracerBase failing = new RayTracerBase(new Scene("Test")) {
+                @Override
+                public Color traceRay(Ray ray) {
+                    throw new IllegalStateException("worker failure");
+                }
+
+                @Override
+                public Color traceRay(Ray ray, GeoPoint intersection) {
+                    return traceRay(ray);
+                }
+            };
+            RenderJob failed = builder.setRayTracer(failing).build().renderImageAsync(executor, 2);
+            ExecutionException exception = assertThrows(ExecutionException.class,
+                    () -> failed.get(10, TimeUnit.SECONDS), "worker exception must fail the job");
+            assertInstanceOf(IllegalStateException.class, exception.getCause(), "wrong failure cause");
+
+            // TC03: a cancelled job stops before rendering all the tiles
+            CountDownLatch started = new CountDownLatch(1);
+            RayTracerBase slow = new RayTracerBase(new Scene("Test")) {
+                @Override
+                public Color traceRay(Ray ray) {
+                    started.countDown();
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return Color.BLACK;
+                }
+
+                @Override
+                public Color traceRay(Ray ray, GeoPoint intersection) {
+                    return traceRay(ray);
+                }
+            };
+            RenderJob cancelled = builder.setRayTracer(slow).setImageWriter(new ImageWriter("asyncMonitored", 40, 40))
+                    .build().renderImageAsync(executor, 2);
+            assertTrue(started.await(10, TimeUnit.SECONDS), "job did not start");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName pattern = new ObjectName("renderer:type=Render,name=\"asyncMonitored\",*");
+            assertEquals(1, server.queryNames(pattern, null).size(), "running job must be monitored");
+            assertTrue(cancelled.cancel(true), "running job must be cancellable");
+            assertThrows(CancellationException.class, cancelled::join, "cancelled job must not complete");
+            assertTrue(cancelled.getProgress() < 1, "cancelled job must stop between tiles");
+            assertTrue(server.queryNames(pattern, null).isEmpty(), "finished job must be unregistered");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // TC04: a job cancelled through its monitor fails, and the executor's thread gets its priority back
+        ExecutorService shared = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            RayTracerBase slow = new RayTracerBase(new Scene("Test")) {
+                @Override
+                public Color traceRay(Ray ray) {
+                    started.countDown();
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return Color.BLACK;
+                }
+
+                @Override
+                public Color traceRay(Ray ray, GeoPoint intersection) {
+                    return traceRay(ray);
+                }
+            };
+            RenderJob job = builder.setRayTracer(slow).setImageWriter(new ImageWriter("asyncPriority", 40, 40))
+                    .build().renderImageAsync(shared, 1);
+            assertTrue(started.await(10, TimeUnit.SECONDS), "job did not start");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = server.queryNames(new ObjectName("renderer:type=Render,name=\"asyncPriority\",*"), null)
+                    .iterator().next();
+            server.setAttribute(name, new Attribute("Priority", Thread.MIN_PRIORITY));
+            server.invoke(name, "cancel", null, null);
+            assertThrows(CancellationException.class, () -> job.get(10, TimeUnit.SECONDS),
+                    "job cancelled by its monitor must fail");
+            assertEquals(Thread.NORM_PRIORITY, shared.submit(() -> Thread.currentThread().getPriority()).get(),
+                    "the priority of a shared thread must be restored");
+        } finally {
+            shared.shutdownNow();
+        }
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#setExecution(Camera.Execution)} and
+     * {@link renderer.Camera#setMultithreading(int)}.
+     */
+    @Test
+    void testExecutionModes() {
+        Scene scene = new Scene("Test");
+        scene.geometries.add(new Sphere(new Point(0, 0, -50), 20).setEmission(new Color(40, 20, 20))
+                .setMaterial(new Material().setKd(0.5).setKs(0.5).setShininess(30)
+                        .setKr(0.3).setNumRaysReflected(9).setConeAngleReflected(5)));
+        scene.lights.add(new PointLight(new Color(300, 300, 300), new Point(30, 30, 0)));
+        Camera.Builder builder = Camera.getBuilder()
+                .setRayTracer(new SimpleRayTracer(scene))
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), new Vector(0, -1, 0))
+                .setVpDistance(10.0).setVpSize(8.0, 8.0);
+
+        ImageWriter expected = new ImageWriter("Test", 50, 50);
+        builder.setImageWriter(expected).build().renderImage();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: every execution mode renders the same image as a single thread
+        for (Camera.Execution execution : Camera.Execution.values()) {
+            ImageWriter actual = new ImageWriter("Test", 50, 50);
+            builder.setImageWriter(actual).build().setExecution(execution).setMultithreading(3).renderImage();
+            assertImagesEqual(expected, actual, execution + " rendered a different image");
+        }
+
+        // TC02: a calibrated thread count renders the same image as a single thread
+        ImageWriter calibrated = new ImageWriter("Test", 50, 50);
+        builder.setImageWriter(calibrated).build().setMultithreading(-2).renderImage();
+        assertImagesEqual(expected, calibrated, "calibrated render is different");
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#setAntiAliasing(int, double)}.
+     */
+    @Test
+    void testSetAntiAliasing() {
+        Camera camera = cameraBuilder.setImageWriter(new ImageWriter("Test", 4, 4)).setVpSize(8.0, 8.0).build();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a grid of samples refines the pixels
+        assertDoesNotThrow(() -> camera.setAntiAliasing(16, 4), "valid antialiasing");
+        // TC02: a negative tolerance is rejected
+        assertThrows(IllegalArgumentException.class, () -> camera.setAntiAliasing(16, -1), "negative tolerance");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a single sample disables antialiasing
+        assertDoesNotThrow(() -> camera.setAntiAliasing(1, 4), "disabled antialiasing");
+        // TC11: 2 and 3 samples make a 1 x 1 grid, which can't refine a pixel
+        assertThrows(IllegalArgumentException.class, () -> camera.setAntiAliasing(2, 4), "2 samples");
+        assertThrows(IllegalArgumentException.class, () -> camera.setAntiAliasing(3, 4), "3 samples");
+        // TC12: 4 samples make the smallest grid
+        assertDoesNotThrow(() -> camera.setAntiAliasing(4, 4), "a 2 x 2 grid");
+        // TC13: no samples at all
+        assertThrows(IllegalArgumentException.class, () -> camera.setAntiAliasing(0, 4), "no samples");
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#pixelSeed(int, int, int)}.
+     */
+    @Test
+    void testPixelSeed() {
+        Camera camera = cameraBuilder.setImageWriter(new ImageWriter("Test", 4, 4)).setVpSize(8.0, 8.0).build();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: every pixel of a wide image has its own seed
+        assertEquals(7 * 3, pixelSeeds(camera, 7, 3).size(), "pixels of a wide image share a seed");
+        // TC02: every pixel of a tall image has its own seed
+        assertEquals(3 * 7, pixelSeeds(camera, 3, 7).size(), "pixels of a tall image share a seed");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: every pixel of a single column has its own seed
+        assertEquals(5, pixelSeeds(camera, 1, 5).size(), "pixels of a column share a seed");
+    }
+
+    /**
+     * Collects the seeds of all the pixels of an image.
+     *
+     * @param camera the camera
+     * @param nX     the number of pixels in a row
+     * @param nY     the number of pixels in a column
+     * @return the distinct seeds of the pixels
+     */
+    private static Set<Long> pixelSeeds(Camera camera, int nX, int nY) {
+        Set<Long> seeds = new HashSet<>();
+        for (int row = 0; row < nY; ++row)
+            for (int col = 0; col < nX; ++col)
+                seeds.add(camera.pixelSeed(nX, col, row));
+        return seeds;
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#setDiagnostics(boolean)}.
+     */
+    @Test
+    void testDiagnostics() {
+        Scene scene = new Scene("Test");
+        scene.geometries.add(new Sphere(new Point(0, 0, -50), 20).setMaterial(new Material().setKd(0.5)));
+        scene.lights.add(new PointLight(new Color(300, 300, 300), new Point(30, 30, 0)));
+        Camera camera = Camera.getBuilder()
+                .setRayTracer(new SimpleRayTracer(scene))
+                .setImageWriter(new ImageWriter("diagnostics", 20, 20))
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), new Vector(0, -1, 0))
+                .setVpDistance(10.0).setVpSize(8.0, 8.0)
+                .build()
+                .setDiagnostics(true)
+                .renderImage();
+        CostMap costs = camera.getCostMap();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a background pixel traces its primary ray only, tested against the scene and the sphere
+        assertEquals(1, costs.getRays(0, 0), "wrong ray count of a background pixel");
+        assertEquals(2, costs.getIntersectionTests(0, 0), "wrong test count of a background pixel");
+        // TC02: a pixel on the sphere traces a shadow ray as well
+        assertEquals(2, costs.getRays(10, 10), "wrong ray count of a sphere pixel");
+        assertEquals(4, costs.getIntersectionTests(10, 10), "wrong test count of a sphere pixel");
+        assertTrue(costs.getNanos(10, 10) > 0, "pixel time must be measured");
+
+        // TC03: the heatmaps are written alongside the image
+        camera.writeToImage();
+        for (String suffix : new String[]{"_time", "_rays", "_tests"})
+            assertTrue(new File(System.getProperty("user.dir") + "/images/diagnostics" + suffix + ".png").exists(),
+                    "missing heatmap " + suffix);
+
+        // TC04: renders out of diagnostics mode do not measure
+        long tests = geometries.Intersectable.getIntersectionTests();
+        assertNull(camera.setDiagnostics(false).renderImage().getCostMap(), "cost map must be dropped");
+        assertEquals(tests, geometries.Intersectable.getIntersectionTests(), "tests must not be counted");
+    }
+
+    /**
+     * Test method for the flight recorder events of {@link renderer.Camera#renderImage()}.
+     *
+     * @throws java.io.IOException if the recording can't be written
+     */
+    @Test
+    void testFlightRecorderEvents() throws IOException {
+        Camera camera = cameraBuilder.setImageWriter(new ImageWriter("Test", 40, 40)).setVpSize(8.0, 8.0).build()
+                .setExecution(Camera.Execution.VIRTUAL_THREADS);
+        Path file = Files.createTempFile("render", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("raytracer.TileRender");
+            recording.enable("raytracer.PathTrace");
+            recording.start();
+            camera.renderImage();
+            recording.stop();
+            recording.dump(file);
+
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: every tile is recorded with its pixels and rays, and a sample of the pixels is recorded
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            long tilePixels = 0, tileRays = 0;
+            for (RecordedEvent event : events)
+                if (event.getEventType().getName().equals("raytracer.TileRender")) {
+                    tilePixels += event.getInt("pixels");
+                    tileRays += event.getLong("rays");
+                }
+            assertEquals(40 * 40, tilePixels, "tiles must cover the image");
+            assertEquals(40 * 40, tileRays, "every pixel traces a single ray");
+            assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("raytracer.PathTrace")),
+                    "sampled pixels must be recorded");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Test method for the render monitor MBean registered by {@link renderer.Camera#renderImage()}.
+     *
+     * @throws Exception if the MBean server fails or the test is interrupted
+     */
+    @Test
+    void testRenderMonitor() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger traced = new AtomicInteger();
+        RayTracerBase slow = new RayTracerBase(new Scene("Test")) {
+            @Override
+            public Color traceRay(Ray ray) {
+                findClosestIntersection(ray);
+                traced.incrementAndGet();
+                started.countDown();
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Color.BLACK;
+            }
+
+            @Override
+            public Color traceRay(Ray ray, GeoPoint intersection) {
+                return traceRay(ray);
+            }
+        };
+        Camera camera = cameraBuilder.setRayTracer(slow).setImageWriter(new ImageWriter("monitored", 100, 100))
+                .setVpSize(8.0, 8.0).build().setMultithreading(2);
+        CompletableFuture<Camera> render = CompletableFuture.supplyAsync(camera::renderImage);
+        assertTrue(started.await(10, TimeUnit.SECONDS), "render did not start");
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Set<ObjectName> names = server.queryNames(new ObjectName("renderer:type=Render,name=\"monitored\",*"), null);
+        assertEquals(1, names.size(), "active render must be registered");
+        ObjectName name = names.iterator().next();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the metrics of a running render, whose rays are counted outside diagnostics mode too
+        assertEquals(100L * 100, server.getAttribute(name, "PixelsTotal"), "wrong total pixels");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((long) server.getAttribute(name, "PixelsDone") == 0) {
+            assertTrue(System.nanoTime() < deadline, "render must finish a pixel");
+            Thread.onSpinWait();
+        }
+        assertTrue((double) server.getAttribute(name, "CameraRaysPerSecond") > 0, "camera rays must be counted");
+        assertEquals(0.0, server.getAttribute(name, "ShadowRaysPerSecond"), "no shadow rays were traced");
+
+        // TC02: a paused render makes no progress once its threads finished their current pixels
+        server.invoke(name, "pause", null, null);
+        deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((int) server.getAttribute(name, "ActiveThreads") != 0) {
+            assertTrue(System.nanoTime() < deadline, "paused render must have no active threads");
+            Thread.onSpinWait();
+        }
+        long paused = (long) server.getAttribute(name, "PixelsDone");
+        assertEquals(paused, traced.get(), "paused render must have no pixel in progress");
+        assertTrue(paused < 100L * 100, "paused render must not be done");
+        assertFalse(render.isDone(), "paused render must not complete");
+
+        // TC03: a cancelled render throws and is unregistered
+        server.invoke(name, "resume", null, null);
+        server.invoke(name, "cancel", null, null);
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> render.get(10, TimeUnit.SECONDS), "cancelled render must throw");
+        assertInstanceOf(CancellationException.class, exception.getCause(), "wrong failure cause");
+        assertFalse(server.isRegistered(name), "finished render must be unregistered");
+    }
+
+    /**
+     * Asserts that two images have the same pixels
+     *
+     * @param expected the expected image
+     * @param actual   the actual image
+     * @param message  the failure message
+     */
+    private static void assertImagesEqual(ImageWriter expected, ImageWriter actual, String message) {
+        var expectedImage = expected.copyImage();
+        var actualImage = actual.copyImage();
+        for (int y = 0; y < expectedImage.getHeight(); ++y)
+            for (int x = 0; x < expectedImage.getWidth(); ++x)
+                assertEquals(expectedImage.getRGB(x, y), actualImage.getRGB(x, y), message);
+    }
+}
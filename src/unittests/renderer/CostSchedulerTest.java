@@ -0,0 +1,53 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Testing the cost predictive tile scheduler
+ */
+class CostSchedulerTest {
+
+    /**
+     * Test method for {@link renderer.CostScheduler#run()} and {@link renderer.CostScheduler#plan()}.
+     */
+    @Test
+    void testRun() {
+        final int nX = 70, nY = 50;
+        AtomicIntegerArray visits = new AtomicIntegerArray(nX * nY);
+        // the pixels of the block [32, 40) x [32, 40) trace 100 rays each, the others one ray
+        CostScheduler scheduler = new CostScheduler(nX, nY, (row, col) -> {
+            visits.incrementAndGet(row * nX + col);
+            int rays = row >= 32 && row < 40 && col >= 32 && col < 40 ? 100 : 1;
+            for (int i = 0; i < rays; ++i) RayTracerBase.countRay(RayKind.CAMERA);
+        }, 3);
+        scheduler.run();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: every pixel is rendered exactly once, including the probe pixels
+        for (int i = 0; i < nX * nY; ++i)
+            assertEquals(1, visits.get(i), "pixel " + i + " must be rendered once");
+
+        // TC02: the hot block is split off and dispatched first
+        List<Tile> tiles = scheduler.plan();
+        Tile first = tiles.getFirst();
+        assertTrue(first.pixels() < Tile.SIZE * Tile.SIZE, "hot tile must be split");
+        assertTrue(first.row() >= 32 && first.row() < 40 && first.col() >= 32 && first.col() < 40,
+                "hot tile must be first");
+        for (int i = 1; i < tiles.size(); ++i)
+            assertTrue(scheduler.estimate(tiles.get(i - 1)) >= scheduler.estimate(tiles.get(i)),
+                    "tiles must be ordered by their predicted cost");
+
+        // TC03: the tiles cover the image exactly
+        int[] cover = new int[nX * nY];
+        for (Tile tile : tiles)
+            for (int row = tile.row(); row < tile.row() + tile.rows(); ++row)
+                for (int col = tile.col(); col < tile.col() + tile.cols(); ++col)
+                    ++cover[row * nX + col];
+        for (int count : cover) assertEquals(1, count, "tiles must cover every pixel once");
+    }
+}
@@ -4,6 +4,9 @@
 package renderer;
 
 import static java.awt.Color.*;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
 
 import org.junit.jupiter.api.Test;
 
@@ -93,6 +96,96 @@ public class ReflectionRefractionTests {
     }
 
 
+    /**
+     * Produce the glossy two spheres picture with a quarter of the cone rays,
+     * distributed by the low-discrepancy Halton pattern
+     */
+    @Test
+    public void twoSpheresImprovedHalton() {
+        scene.geometries.add(
+                new Sphere(new Point(0, 0, -50), 50d).setEmission(new Color(BLUE))
+                        .setMaterial(new Material().setKd(0.4).setKs(0.3).setShininess(100)
+                                .setKt(0.7)
+                                .setNumRaysReflected(25).setConeAngleReflected(60)
+                                .setNumRaysRefracted(25).setConeAngleRefracted(60)),
+                new Sphere(new Point(0, 0, -50), 25d).setEmission(new Color(RED))
+                        .setMaterial(new Material().setKd(0.5).setKs(0.5).setShininess(100)
+                                .setNumRaysReflected(25).setConeAngleReflected(60)
+                                .setNumRaysRefracted(25).setConeAngleRefracted(60)));
+
+        scene.lights.add(
+                new SpotLight(new Color(1000, 600, 0), new Point(-100, -100, 500), new Vector(-1, -1, -2))
+                        .setKl(0.0004).setKq(0.0000006));
+
+        cameraBuilder.setLocation(new Point(0, 0, 1000)).setVpDistance(1000d)
+                .setVpSize(150d, 150d)
+                .setRayTracer(new SimpleRayTracer(scene).setSamplePattern(TargetArea.SamplePattern.HALTON))
+                .setImageWriter(new ImageWriter("refractionTwoSpheresHalton", 500, 500))
+                .build()
+                .renderImage()
+                .writeToImage();
+    }
+
+    /**
+     * Produce the glossy two spheres picture by adaptive super sampling of the cones
+     */
+    @Test
+    public void twoSpheresImprovedAdaptive() {
+        scene.geometries.add(
+                new Sphere(new Point(0, 0, -50), 50d).setEmission(new Color(BLUE))
+                        .setMaterial(new Material().setKd(0.4).setKs(0.3).setShininess(100)
+                                .setKt(0.7)
+                                .setNumRaysReflected(64).setConeAngleReflected(60)
+                                .setNumRaysRefracted(64).setConeAngleRefracted(60)),
+                new Sphere(new Point(0, 0, -50), 25d).setEmission(new Color(RED))
+                        .setMaterial(new Material().setKd(0.5).setKs(0.5).setShininess(100)
+                                .setNumRaysReflected(64).setConeAngleReflected(60)
+                                .setNumRaysRefracted(64).setConeAngleRefracted(60)));
+
+        scene.lights.add(
+                new SpotLight(new Color(1000, 600, 0), new Point(-100, -100, 500), new Vector(-1, -1, -2))
+                        .setKl(0.0004).setKq(0.0000006));
+
+        cameraBuilder.setLocation(new Point(0, 0, 1000)).setVpDistance(1000d)
+                .setVpSize(150d, 150d)
+                .setRayTracer(new SimpleRayTracer(scene).setAdaptiveSuperSampling(true).setAdaptiveTolerance(4))
+                .setImageWriter(new ImageWriter("refractionTwoSpheresAdaptive", 500, 500))
+                .build()
+                .renderImage()
+                .writeToImage();
+    }
+
+    /**
+     * Produce the glossy two spheres picture progressively, for at most 5 seconds or until the noise
+     * drops to a single color level, writing the image after every pass
+     */
+    @Test
+    public void twoSpheresImprovedProgressive() {
+        scene.geometries.add(
+                new Sphere(new Point(0, 0, -50), 50d).setEmission(new Color(BLUE))
+                        .setMaterial(new Material().setKd(0.4).setKs(0.3).setShininess(100)
+                                .setKt(0.7)
+                                .setNumRaysReflected(4).setConeAngleReflected(60)
+                                .setNumRaysRefracted(4).setConeAngleRefracted(60)),
+                new Sphere(new Point(0, 0, -50), 25d).setEmission(new Color(RED))
+                        .setMaterial(new Material().setKd(0.5).setKs(0.5).setShininess(100)));
+
+        scene.lights.add(
+                new SpotLight(new Color(1000, 600, 0), new Point(-100, -100, 500), new Vector(-1, -1, -2))
+                        .setKl(0.0004).setKq(0.0000006));
+
+        Camera camera = cameraBuilder.setLocation(new Point(0, 0, 1000)).setVpDistance(1000d)
+                .setVpSize(150d, 150d)
+                .setImageWriter(new ImageWriter("refractionTwoSpheresProgressive", 200, 200))
+                .build();
+        int[] passes = {0};
+        camera.renderProgressive(Duration.ofSeconds(5), 1, (pass, noise) -> {
+            passes[0] = pass;
+            camera.writeToImage();
+        });
+        assertTrue(passes[0] > 0, "progressive render must complete at least one pass");
+    }
+
     /**
      * Produce a picture of a sphere lighted by a spotlight
      */
@@ -124,6 +217,39 @@ public class ReflectionRefractionTests {
                 .writeToImage();
     }
 
+    /**
+     * Produce the mirrored spheres picture with Russian roulette terminating the mirror paths
+     * after the second bounce
+     */
+    @Test
+    public void twoSpheresOnMirrorsRoulette() {
+        scene.geometries.add(
+                new Sphere(new Point(-950, -900, -1000), 400d).setEmission(new Color(0, 50, 100))
+                        .setMaterial(new Material().setKd(0.25).setKs(0.25).setShininess(20)
+                                .setKt(new Double3(0.5, 0, 0))),
+                new Sphere(new Point(-950, -900, -1000), 200d).setEmission(new Color(100, 50, 20))
+                        .setMaterial(new Material().setKd(0.25).setKs(0.25).setShininess(20)),
+                new Triangle(new Point(1500, -1500, -1500), new Point(-1500, 1500, -1500),
+                        new Point(670, 670, 3000))
+                        .setEmission(new Color(20, 20, 20))
+                        .setMaterial(new Material().setKr(1)),
+                new Triangle(new Point(1500, -1500, -1500), new Point(-1500, 1500, -1500),
+                        new Point(-1500, -1500, -2000))
+                        .setEmission(new Color(20, 20, 20))
+                        .setMaterial(new Material().setKr(new Double3(0.5, 0, 0.4))));
+        scene.setAmbientLight(new AmbientLight(new Color(255, 255, 255), 0.1));
+        scene.lights.add(new SpotLight(new Color(1020, 400, 400), new Point(-750, -750, -150), new Vector(-1, -1, -4))
+                .setKl(0.00001).setKq(0.000005));
+
+        cameraBuilder.setLocation(new Point(0, 0, 10000)).setVpDistance(10000d)
+                .setVpSize(2500d, 2500d)
+                .setRayTracer(new SimpleRayTracer(scene).setRussianRoulette(2))
+                .setImageWriter(new ImageWriter("reflectionTwoSpheresMirroredRoulette", 500, 500))
+                .build()
+                .renderImage()
+                .writeToImage();
+    }
+
     /**
      * Produce a picture of  two triangles lighted by a spotlight with a
      * partially
@@ -84,6 +84,33 @@ public class RenderTests {
     }
 
 
+    /**
+     * Produce the multi color scene in low resolution with adaptive antialiasing,
+     * refining only the pixels on the edges of the bodies
+     */
+    @Test
+    public void renderAntiAliasingTest() {
+        scene.geometries.add( // center
+                new Sphere(new Point(0, 0, -100), 50),
+                // up left
+                new Triangle(new Point(-100, 0, -100), new Point(0, 100, -100), new Point(-100, 100, -100))
+                        .setEmission(new Color(GREEN)),
+                // down left
+                new Triangle(new Point(-100, 0, -100), new Point(0, -100, -100), new Point(-100, -100, -100))
+                        .setEmission(new Color(RED)),
+                // down right
+                new Triangle(new Point(100, 0, -100), new Point(0, -100, -100), new Point(100, -100, -100))
+                        .setEmission(new Color(BLUE)));
+        scene.setAmbientLight(new AmbientLight(new Color(WHITE), new Double3(0.2, 0.2, 0.2))); //
+
+        camera
+                .setImageWriter(new ImageWriter("antialiasing render test", 200, 200))
+                .build()
+                .setAntiAliasing(16, 4)
+                .renderImage()
+                .writeToImage();
+    }
+
     /** Test for XML based scene - for bonus */
 //   @Test
 //   public void basicRenderXml() {
@@ -0,0 +1,185 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import geometries.Geometries;
+import geometries.Plane;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Testing the path splitting and termination policies of the simple ray tracer
+ */
+class SimpleRayTracerTest {
+    /**
+     * The secondary rays of a path that never splits: one ray for each of the 9 bounces after the primary hit.
+     */
+    private static final int CHAIN = 9;
+    /**
+     * The emission of the mirrors.
+     */
+    private static final Color GLOW = new Color(10, 10, 10);
+    /**
+     * The ray traced between the mirrors.
+     */
+    private static final Ray RAY = new Ray(new Point(0, 0, 5), new Vector(1, 0, -1));
+
+    /**
+     * Builds a scene of two parallel glowing glossy mirrors, so every secondary ray hits a mirror again.
+     *
+     * @param numRays the amount of glossy reflection rays of the mirrors
+     * @return the scene
+     */
+    private static Scene mirrors(int numRays) {
+        Material material = new Material().setKr(0.8).setNumRaysReflected(numRays).setConeAngleReflected(5);
+        return new Scene("Mirrors").setGeometries(new Geometries(
+                new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)).setEmission(GLOW).setMaterial(material),
+                new Plane(new Point(0, 0, 10), new Vector(0, 0, -1)).setEmission(GLOW).setMaterial(material)));
+    }
+
+    /**
+     * Traces a single ray between the mirrors and counts the secondary rays it fans out into.
+     *
+     * @param tracer the ray tracer
+     * @return the amount of the traced secondary rays
+     */
+    private static long secondaryRays(SimpleRayTracer tracer) {
+        RayTracerBase.countRays(true);
+        try {
+            long before = RayTracerBase.getRayCount(RayKind.SECONDARY);
+            tracer.traceRay(RAY);
+            return RayTracerBase.getRayCount(RayKind.SECONDARY) - before;
+        } finally {
+            RayTracerBase.countRays(false);
+        }
+    }
+
+    /**
+     * Test method for {@link renderer.SimpleRayTracer#setSplitLevels(int)},
+     * {@link renderer.SimpleRayTracer#setRayBudget(int)} and {@link renderer.SimpleRayTracer#setMinSplitK(double)}.
+     */
+    @Test
+    void testSplitting() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a split bounce fans out into the 9 cone rays and the mirror ray, which then continue unsplit
+        assertEquals(10 * CHAIN, secondaryRays(new SimpleRayTracer(mirrors(9)).setSplitLevels(1)),
+                "wrong amount of rays for one split level");
+
+        // TC02: the rays of the second split level split again, the deeper bounces don't
+        assertEquals(10 * (1 + 10 * (CHAIN - 1)), secondaryRays(new SimpleRayTracer(mirrors(9)).setSplitLevels(2)),
+                "wrong amount of rays for two split levels");
+
+        // TC03: a throughput below the minimal split coefficient doesn't split
+        assertEquals(CHAIN, secondaryRays(new SimpleRayTracer(mirrors(9)).setSplitLevels(1).setMinSplitK(0.9)),
+                "path under the minimal split coefficient must not split");
+
+        // TC04: the budget bounds the cone rays, leaving room for the mirror ray
+        assertEquals(5 * CHAIN, secondaryRays(new SimpleRayTracer(mirrors(9)).setSplitLevels(1).setRayBudget(5)),
+                "split must stay within the ray budget");
+
+        // TC05: negative or undefined minimal split coefficients are rejected
+        SimpleRayTracer tracer = new SimpleRayTracer(mirrors(9));
+        assertThrows(IllegalArgumentException.class, () -> tracer.setMinSplitK(-0.1),
+                "negative minimal split coefficient must be rejected");
+        assertThrows(IllegalArgumentException.class, () -> tracer.setMinSplitK(Double.NaN),
+                "NaN minimal split coefficient must be rejected");
+
+        // TC06: the reflected and the refracted fans of a glass share the budget, their rays leave the scene
+        Material glass = new Material().setKr(0.4).setKt(0.4).setNumRaysReflected(9).setConeAngleReflected(5)
+                .setNumRaysRefracted(9).setConeAngleRefracted(5);
+        Scene pane = new Scene("Pane").setGeometries(new Geometries(
+                new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)).setMaterial(glass)));
+        assertEquals(10, secondaryRays(new SimpleRayTracer(pane).setSplitLevels(1).setRayBudget(10)),
+                "both fans together must stay within the ray budget");
+        assertEquals(20, secondaryRays(new SimpleRayTracer(pane).setSplitLevels(1)),
+                "both fans must split fully within a large budget");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: no split levels keep a single ray per bounce
+        assertEquals(CHAIN, secondaryRays(new SimpleRayTracer(mirrors(9)).setSplitLevels(0)),
+                "path must not split without split levels");
+
+        // TC11: a zero minimal split coefficient always allows splitting
+        assertEquals(10 * CHAIN, secondaryRays(new SimpleRayTracer(mirrors(9)).setSplitLevels(1).setMinSplitK(0)),
+                "zero minimal split coefficient must allow splitting");
+
+        // TC12: the smallest budget still traces a single ray for each effect
+        assertEquals(2, secondaryRays(new SimpleRayTracer(pane).setSplitLevels(1).setRayBudget(1)),
+                "each effect must keep its single ray");
+    }
+
+    /**
+     * Test method for {@link renderer.SimpleRayTracer#setRussianRoulette(int)}.
+     */
+    @Test
+    void testSetRussianRoulette() {
+        final int depth = 3, paths = 4000;
+        SimpleRayTracer tracer = new SimpleRayTracer(mirrors(1)).setRussianRoulette(depth);
+        double expected = new SimpleRayTracer(mirrors(1)).traceRay(RAY).luminance();
+        long shortest = CHAIN, longest = 0;
+        double sum = 0;
+        for (int i = 0; i < paths; ++i) {
+            Util.seedRandom(i);
+            long rays = secondaryRays(tracer);
+            shortest = Math.min(shortest, rays);
+            longest = Math.max(longest, rays);
+            Util.seedRandom(i);
+            sum += tracer.traceRay(RAY).luminance();
+        }
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: no path is cut before the roulette depth
+        assertEquals(depth, shortest, "paths must reach the roulette depth and may end right after it");
+        // TC02: some paths survive every roulette round
+        assertEquals(CHAIN, longest, "surviving paths must reach the recursion limit");
+        // TC03: the survivors are weighted by 1 / p, so the mean color is the color without the roulette
+        assertEquals(expected, sum / paths, expected * 0.05, "Russian roulette biased the color");
+        // TC04: a fixed seed repeats the same path
+        Util.seedRandom(7);
+        Color first = tracer.traceRay(RAY);
+        Util.seedRandom(7);
+        assertEquals(first.luminance(), tracer.traceRay(RAY).luminance(), "same seed traced a different path");
+
+        // TC05: the survivors that miss the scene are weighted up too, so the roulette doesn't dim the background
+        Scene open = new Scene("Floor").setBackground(new Color(20, 20, 20)).setGeometries(new Geometries(
+                new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)).setEmission(GLOW)
+                        .setMaterial(new Material().setKr(0.8))));
+        SimpleRayTracer roulette = new SimpleRayTracer(open).setRussianRoulette(0);
+        expected = new SimpleRayTracer(open).traceRay(RAY).luminance();
+        sum = 0;
+        for (int i = 0; i < paths; ++i) {
+            Util.seedRandom(i);
+            sum += roulette.traceRay(RAY).luminance();
+        }
+        assertEquals(expected, sum / paths, expected * 0.02, "Russian roulette biased the background");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a roulette depth at the recursion limit cuts no path
+        assertEquals(CHAIN, secondaryRays(new SimpleRayTracer(mirrors(1)).setRussianRoulette(CHAIN)),
+                "roulette at the recursion limit must not cut paths");
+        // TC11: a negative roulette depth is rejected
+        assertThrows(IllegalArgumentException.class, () -> tracer.setRussianRoulette(-1),
+                "negative roulette depth must be rejected");
+    }
+
+    /**
+     * Test method for {@link renderer.SimpleRayTracer#setAdaptiveSuperSampling(boolean)}.
+     */
+    @Test
+    void testAdaptiveSuperSampling() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: 9 allowed rays fit the 9 corners of a 2x2 grid, every corner continues as a single ray
+        assertEquals(9 * CHAIN, secondaryRays(new SimpleRayTracer(mirrors(9)).setSplitLevels(1)
+                .setAdaptiveSuperSampling(true).setAdaptiveTolerance(0)), "wrong amount of rays for 9 samples");
+
+        // TC02: 8 allowed rays don't fit a 2x2 grid, the cone falls back to the 4 corners of a single cell
+        assertEquals(4 * CHAIN, secondaryRays(new SimpleRayTracer(mirrors(8)).setSplitLevels(1)
+                .setAdaptiveSuperSampling(true).setAdaptiveTolerance(0)), "cone traced more rays than allowed");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: fewer than 4 allowed rays collapse the cone to the mirror ray
+        assertEquals(CHAIN, secondaryRays(new SimpleRayTracer(mirrors(3)).setSplitLevels(1)
+                .setAdaptiveSuperSampling(true).setAdaptiveTolerance(0)), "cone must collapse to one ray");
+    }
+}
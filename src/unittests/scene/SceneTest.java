@@ -0,0 +1,88 @@
+package scene;
+
+import geometries.BvhStats;
+import geometries.Geometries;
+import geometries.Intersectable;
+import geometries.Plane;
+import geometries.Sphere;
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the scene.Scene class.
+ */
+class SceneTest {
+    /**
+     * Test method for {@link Scene#compile()}.
+     */
+    @Test
+    void testCompile() {
+        Scene scene = new Scene("compile");
+        Sphere[] spheres = new Sphere[10];
+        Geometries group = new Geometries();
+        for (int i = 0; i < spheres.length; ++i) {
+            spheres[i] = new Sphere(new Point(3 * i, 0, 0), 1);
+            group.add(spheres[i]);
+        }
+        scene.geometries.add(group);
+        scene.geometries.buildHierarchy();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: an unchanged scene is compiled once
+        Intersectable compiled = scene.compile().getRenderGeometries();
+        assertNotSame(scene.geometries, compiled, "the scene must render a compiled copy");
+        assertSame(compiled, scene.compile().getRenderGeometries(), "an unchanged scene must not be compiled again");
+
+        // TC02: a refit is passed to the compiled copy instead of compiling again
+        spheres[0].setCenter(new Point(0, 50, 0));
+        scene.geometries.refitHierarchy();
+        assertSame(compiled, scene.compile().getRenderGeometries(), "a refit must not compile again");
+        assertNotNull(compiled.findGeoIntersections(new Ray(new Point(0, 50, 10), new Vector(0, 0, -1))),
+                "the compiled hierarchy must be refit");
+
+        // TC03: a change of a nested collection compiles the scene again
+        group.add(new Sphere(new Point(0, -50, 0), 1));
+        Intersectable recompiled = scene.compile().getRenderGeometries();
+        assertNotSame(compiled, recompiled, "a changed scene must be compiled again");
+        assertNotNull(recompiled.findGeoIntersections(new Ray(new Point(0, -50, 10), new Vector(0, 0, -1))),
+                "the added sphere must be rendered");
+
+        // TC04: a refit of a collection that is not accelerated refits the accelerated collections it nests
+        Sphere moved = new Sphere(new Point(0, 0, 0), 1);
+        Geometries nested = new Geometries(moved, new Sphere(new Point(3, 0, 0), 1), new Sphere(new Point(6, 0, 0), 1));
+        nested.buildHierarchy();
+        scene.setGeometries(new Geometries(nested, new Plane(new Point(0, 0, -5), new Vector(0, 0, 1))));
+        compiled = scene.compile().getRenderGeometries();
+        moved.setCenter(new Point(0, 50, 0));
+        scene.geometries.refitHierarchy();
+        assertSame(compiled, scene.compile().getRenderGeometries(), "a refit must not compile again");
+        assertEquals(3, compiled.findGeoIntersections(new Ray(new Point(0, 50, 10), new Vector(0, 0, -1))).size(),
+                "the nested hierarchy must be refit");
+
+        // TC05: refitting a compiled hierarchy over a shared nested hierarchy is not a change of the scene
+        scene.setGeometries(new Geometries(nested, new Sphere(new Point(0, -50, 0), 1),
+                new Sphere(new Point(0, 100, 0), 1)));
+        scene.geometries.buildHierarchy();
+        compiled = scene.compile().getRenderGeometries();
+        moved.setCenter(new Point(0, 70, 0));
+        scene.geometries.refitHierarchy();
+        scene.compile();
+        long refits = scene.geometries.getRefitCount();
+        BvhStats stats = nested.getHierarchyStats();
+        scene.compile();
+        assertEquals(refits, scene.geometries.getRefitCount(), "compiling must not request refits");
+        assertSame(stats, nested.getHierarchyStats(), "an unchanged scene must not be refit again");
+        assertSame(compiled, scene.getRenderGeometries(), "a refit must not compile again");
+        assertEquals(2, compiled.findGeoIntersections(new Ray(new Point(0, 70, 10), new Vector(0, 0, -1))).size(),
+                "the shared hierarchy must be refit");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: replaced geometries are rendered as they are until compiled
+        scene.setGeometries(new Geometries(new Sphere(new Point(0, 0, 0), 1)));
+        assertSame(scene.geometries, scene.getRenderGeometries(), "stale compiled geometries must not be rendered");
+    }
+}